@@ -0,0 +1,63 @@
+// k6 load test for the SMS task and wallet endpoints.
+// Compares p99 latency between the default (platform thread) and virtual-threads profiles;
+// see "Virtual Threads" in PHASE3_README.md for the procedure.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=5000 -e USERS=500 loadtest/sms-tasks-load.js
+
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const USERS = parseInt(__ENV.USERS || '500');
+
+export const options = {
+    setupTimeout: '10m',
+    scenarios: {
+        clients: {
+            executor: 'constant-vus',
+            vus: parseInt(__ENV.VUS || '5000'),
+            duration: __ENV.DURATION || '5m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+// Registers the test users once; each virtual client acts as one of them
+export function setup() {
+    const run = Date.now();
+    const tokens = [];
+    for (let i = 0; i < USERS; i++) {
+        const res = http.post(`${BASE_URL}/auth/register`, JSON.stringify({
+            username: `load${run}_${i}`,
+            email: `load${run}_${i}@example.com`,
+            password: 'LoadTest123!',
+            phoneNumber: `+1${String(run).slice(-5)}${String(i).padStart(5, '0')}`,
+        }), { headers: { 'Content-Type': 'application/json' } });
+        check(res, { registered: (r) => r.status === 201 });
+        tokens.push(res.json('token'));
+    }
+    return { tokens };
+}
+
+export default function (data) {
+    const token = data.tokens[__VU % data.tokens.length];
+    const headers = {
+        'Authorization': `Bearer ${token}`,
+        'Content-Type': 'application/json',
+        // The claim rate limit is keyed per client address; give each virtual client its own
+        'X-Forwarded-For': `10.${(__VU >> 16) & 255}.${(__VU >> 8) & 255}.${__VU & 255}`,
+    };
+
+    const balance = http.get(`${BASE_URL}/api/wallet/balance`, { headers, tags: { name: 'balance' } });
+    check(balance, { 'balance 200': (r) => r.status === 200 });
+
+    const claim = http.post(`${BASE_URL}/api/sms-tasks/claim`, null, { headers, tags: { name: 'claim' } });
+    check(claim, { 'claim 200/409/429': (r) => [200, 409, 429].includes(r.status) });
+    if (claim.status === 200) {
+        const complete = http.post(`${BASE_URL}/api/sms-tasks/complete`,
+            JSON.stringify({ jobId: claim.json('jobId') }), { headers, tags: { name: 'complete' } });
+        check(complete, { 'complete 200': (r) => r.status === 200 });
+    }
+
+    sleep(1);
+}
@@ -1,25 +1,36 @@
 package com.win777.backend.config;
 
+import com.win777.backend.interceptor.InternalApiTokenInterceptor;
 import com.win777.backend.interceptor.RateLimitInterceptor;
+import com.win777.backend.interceptor.RequestBulkheadInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
  * Web configuration for the application.
- * Registers interceptors for rate limiting.
+ * Registers interceptors for rate limiting, internal API authentication and the request bulkhead.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     private final RateLimitInterceptor rateLimitInterceptor;
+    private final InternalApiTokenInterceptor internalApiTokenInterceptor;
+    private final RequestBulkheadInterceptor requestBulkheadInterceptor;
 
-    public WebConfig(RateLimitInterceptor rateLimitInterceptor) {
+    public WebConfig(RateLimitInterceptor rateLimitInterceptor,
+                     InternalApiTokenInterceptor internalApiTokenInterceptor,
+                     RequestBulkheadInterceptor requestBulkheadInterceptor) {
         this.rateLimitInterceptor = rateLimitInterceptor;
+        this.internalApiTokenInterceptor = internalApiTokenInterceptor;
+        this.requestBulkheadInterceptor = requestBulkheadInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // Rejected requests should not cost a bulkhead permit, so rate limiting runs first
         registry.addInterceptor(rateLimitInterceptor);
+        registry.addInterceptor(internalApiTokenInterceptor).addPathPatterns("/internal/**");
+        registry.addInterceptor(requestBulkheadInterceptor);
     }
 }
@@ -0,0 +1,46 @@
+package com.win777.backend.controller;
+
+import com.win777.backend.dto.IngestionResponse;
+import com.win777.backend.service.SmsJobIngestionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/**
+ * Controller for internal SMS job operations.
+ * Called by upstream systems with the internal API token, not by end users.
+ */
+@RestController
+@RequestMapping("/internal/sms-jobs")
+public class InternalSmsJobController {
+
+    private final SmsJobIngestionService smsJobIngestionService;
+
+    public InternalSmsJobController(SmsJobIngestionService smsJobIngestionService) {
+        this.smsJobIngestionService = smsJobIngestionService;
+    }
+
+    /**
+     * Bulk-ingests PENDING SMS jobs from an NDJSON or CSV request body.
+     * The body is streamed, so uploads of any size are accepted.
+     * 
+     * @param contentType application/x-ndjson or text/csv
+     * @param body the request body stream
+     * @return rows ingested and throughput
+     */
+    @PostMapping(value = "/ingest", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<IngestionResponse> ingest(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                    InputStream body) {
+        SmsJobIngestionService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? SmsJobIngestionService.Format.CSV
+                : SmsJobIngestionService.Format.NDJSON;
+
+        return ResponseEntity.ok(smsJobIngestionService.ingest(body, format));
+    }
+}
@@ -0,0 +1,80 @@
+package com.win777.backend.controller;
+
+import com.win777.backend.dto.ReconciliationReport;
+import com.win777.backend.service.LedgerReconciliationService;
+import com.win777.backend.service.WalletLedgerExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Controller for internal wallet operations.
+ * Called by finance and support tooling with the internal API token, not by end users.
+ */
+@RestController
+@RequestMapping("/internal/wallet")
+public class InternalWalletController {
+
+    private final WalletLedgerExportService walletLedgerExportService;
+    private final LedgerReconciliationService ledgerReconciliationService;
+
+    public InternalWalletController(WalletLedgerExportService walletLedgerExportService,
+                                    LedgerReconciliationService ledgerReconciliationService) {
+        this.walletLedgerExportService = walletLedgerExportService;
+        this.ledgerReconciliationService = ledgerReconciliationService;
+    }
+
+    /**
+     * Streams wallet ledger rows as NDJSON or CSV, oldest first.
+     * Written synchronously to the response, so exports are not cut off by the async request timeout.
+     * 
+     * @param userId the user to export (optional; all users if omitted)
+     * @param from inclusive lower bound on created_at (optional, ISO date-time)
+     * @param to exclusive upper bound on created_at (optional, ISO date-time)
+     * @param format ndjson (default) or csv
+     * @param response the response to stream into
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/ledger/export")
+    public void exportLedger(@RequestParam(required = false) UUID userId,
+                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                             @RequestParam(defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        WalletLedgerExportService.Format exportFormat;
+        try {
+            exportFormat = WalletLedgerExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+
+        boolean csv = exportFormat == WalletLedgerExportService.Format.CSV;
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"wallet-ledger." + (csv ? "csv" : "ndjson") + "\"");
+
+        walletLedgerExportService.export(userId, from, to, exportFormat, response.getOutputStream());
+    }
+
+    /**
+     * Reconciles the ledger against SMS jobs, withdrawals and balances, and returns the report.
+     * Runs synchronously; only one reconciliation runs at a time.
+     * 
+     * @return the reconciliation report
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<ReconciliationReport> reconcile() {
+        return ResponseEntity.ok(ledgerReconciliationService.reconcile());
+    }
+}
@@ -0,0 +1,41 @@
+package com.win777.backend.controller;
+
+import com.win777.backend.dto.DownlineLevelDto;
+import com.win777.backend.service.ReferralDownlineService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Controller for referral operations.
+ * Provides read-only access to the authenticated user's downline.
+ */
+@RestController
+@RequestMapping("/api/referrals")
+public class ReferralController {
+
+    private final ReferralDownlineService referralDownlineService;
+
+    public ReferralController(ReferralDownlineService referralDownlineService) {
+        this.referralDownlineService = referralDownlineService;
+    }
+
+    /**
+     * Gets the authenticated user's downline: members and referral earnings per level.
+     * 
+     * @param authentication the authentication object containing userId
+     * @return the downline levels, nearest first
+     */
+    @GetMapping("/downline")
+    public ResponseEntity<List<DownlineLevelDto>> getDownline(Authentication authentication) {
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        return ResponseEntity.ok(referralDownlineService.getDownline(userId));
+    }
+}
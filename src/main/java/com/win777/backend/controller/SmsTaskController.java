@@ -1,18 +1,25 @@
 package com.win777.backend.controller;
 
 import com.win777.backend.dto.ClaimJobResponse;
+import com.win777.backend.dto.CompleteBatchRequest;
 import com.win777.backend.dto.CompleteJobRequest;
 import com.win777.backend.entity.SMSJob;
 import com.win777.backend.service.SMSJobService;
+import com.win777.backend.service.SmsCompletionPipeline;
+import com.win777.backend.service.SmsJobLongPollService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for SMS task operations.
@@ -22,10 +29,19 @@ import java.util.UUID;
 @RequestMapping("/api/sms-tasks")
 public class SmsTaskController {
 
+    private static final int MAX_BATCH_CLAIM = 100;
+    private static final int MAX_CLAIM_WAIT_SECONDS = 30;
+
     private final SMSJobService smsJobService;
+    private final SmsJobLongPollService smsJobLongPollService;
+    private final SmsCompletionPipeline smsCompletionPipeline;
 
-    public SmsTaskController(SMSJobService smsJobService) {
+    public SmsTaskController(SMSJobService smsJobService,
+                             SmsJobLongPollService smsJobLongPollService,
+                             SmsCompletionPipeline smsCompletionPipeline) {
         this.smsJobService = smsJobService;
+        this.smsJobLongPollService = smsJobLongPollService;
+        this.smsCompletionPipeline = smsCompletionPipeline;
     }
 
     /**
@@ -42,34 +58,109 @@ public class SmsTaskController {
         // Claim job
         SMSJob job = smsJobService.claimSmsJob(userId);
 
-        // Create response
-        ClaimJobResponse response = new ClaimJobResponse(
-            job.getId(),
-            job.getRecipientNumber(),
-            job.getMessageContent(),
-            job.getClaimedAt()
-        );
+        return ResponseEntity.ok(toClaimJobResponse(job));
+    }
+
+    /**
+     * Claims the next available SMS job, waiting for one to arrive if the queue is empty.
+     * The request is parked asynchronously, holding no servlet thread or database connection.
+     * 
+     * @param authentication the authentication object containing userId
+     * @param waitSeconds how long to wait for a job (max: 30)
+     * @return the claimed job details, or 204 No Content if none arrived in time
+     */
+    @PostMapping(value = "/claim", params = "wait")
+    public CompletableFuture<ResponseEntity<ClaimJobResponse>> claimJobOrWait(Authentication authentication,
+                                                                             @RequestParam("wait") int waitSeconds) {
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        // Enforce maximum wait
+        if (waitSeconds > MAX_CLAIM_WAIT_SECONDS) {
+            waitSeconds = MAX_CLAIM_WAIT_SECONDS;
+        }
+        if (waitSeconds < 0) {
+            waitSeconds = 0;
+        }
+
+        // Claim job, or wait for one
+        return smsJobLongPollService.claimOrWait(userId, Duration.ofSeconds(waitSeconds))
+                .thenApply(job -> job
+                        .map(claimed -> ResponseEntity.ok(toClaimJobResponse(claimed)))
+                        .orElseGet(() -> ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Claims a batch of SMS jobs for the authenticated user in one request.
+     * The batch is capped by the user's remaining daily SMS limit.
+     * 
+     * @param authentication the authentication object containing userId
+     * @param count the number of jobs to claim (default: 10, min: 1, max: 100)
+     * @return the claimed jobs
+     */
+    @PostMapping("/claim-batch")
+    public ResponseEntity<List<ClaimJobResponse>> claimJobs(Authentication authentication,
+                                                            @RequestParam(defaultValue = "10") int count) {
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
 
-        return ResponseEntity.ok(response);
+        // Enforce batch size bounds
+        if (count > MAX_BATCH_CLAIM) {
+            count = MAX_BATCH_CLAIM;
+        }
+        if (count < 1) {
+            count = 1;
+        }
+
+        // Claim jobs
+        List<SMSJob> jobs = smsJobService.claimSmsJobs(userId, count);
+
+        return ResponseEntity.ok(jobs.stream().map(this::toClaimJobResponse).toList());
     }
 
     /**
      * Completes an SMS job for the authenticated user.
+     * With group commit enabled, the response is sent once the job's group has committed.
      * 
      * @param request the complete job request
      * @param authentication the authentication object containing userId
      * @return success message
      */
     @PostMapping("/complete")
-    public ResponseEntity<String> completeJob(@Valid @RequestBody CompleteJobRequest request, 
-                                              Authentication authentication) {
+    public CompletableFuture<ResponseEntity<String>> completeJob(@Valid @RequestBody CompleteJobRequest request, 
+                                                                 Authentication authentication) {
         // Extract userId from JWT token
         UUID userId = (UUID) authentication.getPrincipal();
 
+        // Queue for group commit when enabled
+        if (smsCompletionPipeline.isEnabled()) {
+            return smsCompletionPipeline.submit(userId, request.getJobId())
+                    .thenApply(done -> ResponseEntity.ok("Job completed successfully"));
+        }
+
         // Complete job
         smsJobService.completeSmsJob(userId, request.getJobId());
 
-        return ResponseEntity.ok("Job completed successfully");
+        return CompletableFuture.completedFuture(ResponseEntity.ok("Job completed successfully"));
+    }
+
+    /**
+     * Completes a batch of SMS jobs for the authenticated user in one transaction.
+     * 
+     * @param request the batch complete request
+     * @param authentication the authentication object containing userId
+     * @return success message
+     */
+    @PostMapping("/complete-batch")
+    public ResponseEntity<String> completeJobs(@Valid @RequestBody CompleteBatchRequest request,
+                                               Authentication authentication) {
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        // Complete jobs
+        int completed = smsJobService.completeSmsJobs(userId, request.getJobIds());
+
+        return ResponseEntity.ok(completed + " jobs completed successfully");
     }
 
     /**
@@ -91,4 +182,19 @@ public class SmsTaskController {
 
         return ResponseEntity.ok("Job marked as failed");
     }
+
+    /**
+     * Maps a claimed job to its response DTO.
+     * 
+     * @param job the claimed job
+     * @return the claim job response
+     */
+    private ClaimJobResponse toClaimJobResponse(SMSJob job) {
+        return new ClaimJobResponse(
+            job.getId(),
+            job.getRecipientNumber(),
+            job.getMessageContent(),
+            job.getClaimedAt()
+        );
+    }
 }
@@ -1,5 +1,6 @@
 package com.win777.backend.controller;
 
+import com.win777.backend.dto.TransactionCursorPage;
 import com.win777.backend.dto.TransactionDto;
 import com.win777.backend.dto.WalletBalanceResponse;
 import com.win777.backend.entity.WalletLedger;
@@ -7,6 +8,7 @@ import com.win777.backend.service.WalletService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +27,9 @@ import java.util.UUID;
 @RequestMapping("/api/wallet")
 public class WalletController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_SLICE_PAGE_SIZE = 100;
+
     private final WalletService walletService;
 
     public WalletController(WalletService walletService) {
@@ -70,15 +75,77 @@ public class WalletController {
         Page<WalletLedger> ledgerPage = walletService.getTransactionHistory(userId, pageable);
 
         // Convert to DTOs
-        Page<TransactionDto> transactionPage = ledgerPage.map(ledger -> new TransactionDto(
+        Page<TransactionDto> transactionPage = ledgerPage.map(this::toTransactionDto);
+
+        return ResponseEntity.ok(transactionPage);
+    }
+
+    /**
+     * Gets the transaction history for the authenticated user as a slice.
+     * Same ordering as the paged endpoint, but without totalElements/totalPages: no count
+     * query runs and rows are read straight into DTOs.
+     * 
+     * @param authentication the authentication object containing userId
+     * @param page the page number (default: 0)
+     * @param size the page size (default: 20, max: 100)
+     * @return slice of transaction history
+     */
+    @GetMapping("/transactions/slice")
+    public ResponseEntity<Slice<TransactionDto>> getTransactionHistorySlice(
+            Authentication authentication,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        // Enforce page bounds
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_SLICE_PAGE_SIZE)));
+
+        return ResponseEntity.ok(walletService.getTransactionSlice(userId, pageable));
+    }
+
+    /**
+     * Gets the transaction history for the authenticated user by cursor.
+     * Pass an empty cursor for the first page, then the returned nextCursor until it is null.
+     * No total count is computed, so deep pages stay as fast as the first.
+     * 
+     * @param authentication the authentication object containing userId
+     * @param cursor the cursor from the previous page (empty for the first page)
+     * @param size the page size (default: 20, max: 100)
+     * @return the page of transaction history and the next cursor
+     */
+    @GetMapping(value = "/transactions", params = "cursor")
+    public ResponseEntity<TransactionCursorPage> getTransactionHistoryByCursor(
+            Authentication authentication,
+            @RequestParam("cursor") String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        // Enforce page size bounds
+        size = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        // Get transaction history
+        WalletService.TransactionSlice slice = walletService.getTransactionHistory(userId, cursor, size);
+
+        return ResponseEntity.ok(new TransactionCursorPage(
+                slice.entries().stream().map(this::toTransactionDto).toList(),
+                slice.nextCursor()));
+    }
+
+    /**
+     * Converts a ledger entry to its transaction DTO.
+     */
+    private TransactionDto toTransactionDto(WalletLedger ledger) {
+        return new TransactionDto(
             ledger.getId(),
             ledger.getAmount(),
             ledger.getLedgerType(),
             ledger.getDescription(),
             ledger.getReferenceId(),
             ledger.getCreatedAt()
-        ));
-
-        return ResponseEntity.ok(transactionPage);
+        );
     }
 }
@@ -8,6 +8,7 @@ import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -23,6 +24,8 @@ import java.util.UUID;
 @RequestMapping("/api/withdrawals")
 public class WithdrawalController {
 
+    private static final int MAX_SLICE_PAGE_SIZE = 100;
+
     private final WithdrawalService withdrawalService;
 
     public WithdrawalController(WithdrawalService withdrawalService) {
@@ -100,4 +103,29 @@ public class WithdrawalController {
 
         return ResponseEntity.ok(responsePage);
     }
+
+    /**
+     * Gets withdrawals for the authenticated user as a slice.
+     * Same ordering as the paged endpoint, but without totalElements/totalPages: no count
+     * query runs and rows are read straight into response DTOs.
+     * 
+     * @param authentication the authentication object containing userId
+     * @param page the page number (default: 0)
+     * @param size the page size (default: 20, max: 100)
+     * @return slice of withdrawals
+     */
+    @GetMapping("/slice")
+    public ResponseEntity<Slice<WithdrawalResponse>> getWithdrawalSlice(
+            Authentication authentication,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        // Extract userId from JWT token
+        UUID userId = (UUID) authentication.getPrincipal();
+
+        // Enforce page bounds
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_SLICE_PAGE_SIZE)));
+
+        return ResponseEntity.ok(withdrawalService.getWithdrawalSlice(userId, pageable));
+    }
 }
@@ -0,0 +1,29 @@
+package com.win777.backend.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO for batch complete job request.
+ */
+public class CompleteBatchRequest {
+
+    @NotEmpty(message = "Job IDs are required")
+    @Size(max = 100, message = "At most 100 jobs can be completed per request")
+    private List<@NotNull(message = "Job ID is required") UUID> jobIds;
+
+    public CompleteBatchRequest() {
+    }
+
+    public List<UUID> getJobIds() {
+        return jobIds;
+    }
+
+    public void setJobIds(List<UUID> jobIds) {
+        this.jobIds = jobIds;
+    }
+}
@@ -0,0 +1,46 @@
+package com.win777.backend.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO for one level of a user's referral downline.
+ */
+public class DownlineLevelDto {
+
+    private int level;
+    private long members;
+    private BigDecimal earnings;
+
+    public DownlineLevelDto() {
+    }
+
+    public DownlineLevelDto(int level, long members, BigDecimal earnings) {
+        this.level = level;
+        this.members = members;
+        this.earnings = earnings;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public long getMembers() {
+        return members;
+    }
+
+    public void setMembers(long members) {
+        this.members = members;
+    }
+
+    public BigDecimal getEarnings() {
+        return earnings;
+    }
+
+    public void setEarnings(BigDecimal earnings) {
+        this.earnings = earnings;
+    }
+}
@@ -0,0 +1,54 @@
+package com.win777.backend.dto;
+
+/**
+ * DTO for bulk SMS job ingestion response.
+ */
+public class IngestionResponse {
+
+    private long rowsIngested;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private String writeMethod;
+
+    public IngestionResponse() {
+    }
+
+    public IngestionResponse(long rowsIngested, long elapsedMillis, long rowsPerSecond, String writeMethod) {
+        this.rowsIngested = rowsIngested;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = rowsPerSecond;
+        this.writeMethod = writeMethod;
+    }
+
+    public long getRowsIngested() {
+        return rowsIngested;
+    }
+
+    public void setRowsIngested(long rowsIngested) {
+        this.rowsIngested = rowsIngested;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public String getWriteMethod() {
+        return writeMethod;
+    }
+
+    public void setWriteMethod(String writeMethod) {
+        this.writeMethod = writeMethod;
+    }
+}
@@ -0,0 +1,56 @@
+package com.win777.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * DTO for a single discrepancy found by ledger reconciliation.
+ */
+public class ReconciliationDiscrepancy {
+
+    private String type;
+    private UUID userId;
+    private UUID referenceId;
+    private String detail;
+
+    public ReconciliationDiscrepancy() {
+    }
+
+    public ReconciliationDiscrepancy(String type, UUID userId, UUID referenceId, String detail) {
+        this.type = type;
+        this.userId = userId;
+        this.referenceId = referenceId;
+        this.detail = detail;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public UUID getReferenceId() {
+        return referenceId;
+    }
+
+    public void setReferenceId(UUID referenceId) {
+        this.referenceId = referenceId;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+}
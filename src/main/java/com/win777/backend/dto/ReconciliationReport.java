@@ -0,0 +1,105 @@
+package com.win777.backend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO for the outcome of a ledger reconciliation run.
+ * Counts cover every discrepancy found; samples are capped.
+ */
+public class ReconciliationReport {
+
+    private int ranges;
+    private int parallelism;
+    private long ledgerRowsScanned;
+    private long jobsScanned;
+    private long withdrawalsScanned;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private long totalDiscrepancies;
+    private Map<String, Long> discrepancyCounts;
+    private List<ReconciliationDiscrepancy> samples;
+
+    public ReconciliationReport() {
+    }
+
+    public int getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(int ranges) {
+        this.ranges = ranges;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getLedgerRowsScanned() {
+        return ledgerRowsScanned;
+    }
+
+    public void setLedgerRowsScanned(long ledgerRowsScanned) {
+        this.ledgerRowsScanned = ledgerRowsScanned;
+    }
+
+    public long getJobsScanned() {
+        return jobsScanned;
+    }
+
+    public void setJobsScanned(long jobsScanned) {
+        this.jobsScanned = jobsScanned;
+    }
+
+    public long getWithdrawalsScanned() {
+        return withdrawalsScanned;
+    }
+
+    public void setWithdrawalsScanned(long withdrawalsScanned) {
+        this.withdrawalsScanned = withdrawalsScanned;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public long getTotalDiscrepancies() {
+        return totalDiscrepancies;
+    }
+
+    public void setTotalDiscrepancies(long totalDiscrepancies) {
+        this.totalDiscrepancies = totalDiscrepancies;
+    }
+
+    public Map<String, Long> getDiscrepancyCounts() {
+        return discrepancyCounts;
+    }
+
+    public void setDiscrepancyCounts(Map<String, Long> discrepancyCounts) {
+        this.discrepancyCounts = discrepancyCounts;
+    }
+
+    public List<ReconciliationDiscrepancy> getSamples() {
+        return samples;
+    }
+
+    public void setSamples(List<ReconciliationDiscrepancy> samples) {
+        this.samples = samples;
+    }
+}
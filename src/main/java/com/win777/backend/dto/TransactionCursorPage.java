@@ -0,0 +1,37 @@
+package com.win777.backend.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a cursor-paginated page of transaction history.
+ * Carries no total count; {@code nextCursor} is null on the last page.
+ */
+public class TransactionCursorPage {
+
+    private List<TransactionDto> content;
+    private String nextCursor;
+
+    public TransactionCursorPage() {
+    }
+
+    public TransactionCursorPage(List<TransactionDto> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransactionDto> getContent() {
+        return content;
+    }
+
+    public void setContent(List<TransactionDto> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
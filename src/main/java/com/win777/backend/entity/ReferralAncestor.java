@@ -0,0 +1,95 @@
+package com.win777.backend.entity;
+
+import com.win777.backend.enums.LedgerType;
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Closure of the referral tree: one row per user and each referrer above them, up to {@link #MAX_DEPTH}.
+ * Depth 1 is the direct referrer. Written when a referred user registers,
+ * so a completion resolves its whole reward chain with one indexed query.
+ */
+@Entity
+@Table(name = "referral_ancestors")
+@IdClass(ReferralAncestor.Key.class)
+public class ReferralAncestor {
+
+    /** Deepest ancestor stored; matches the deepest referral level that has a ledger type */
+    public static final int MAX_DEPTH = LedgerType.MAX_REFERRAL_LEVEL;
+
+    @Id
+    @Column(name = "descendant_id", updatable = false, nullable = false)
+    private UUID descendantId;
+
+    @Id
+    @Column(name = "ancestor_id", updatable = false, nullable = false)
+    private UUID ancestorId;
+
+    @Column(name = "depth", nullable = false, updatable = false)
+    private int depth;
+
+    // Constructors
+    public ReferralAncestor() {
+    }
+
+    // Getters and Setters
+    public UUID getDescendantId() {
+        return descendantId;
+    }
+
+    public void setDescendantId(UUID descendantId) {
+        this.descendantId = descendantId;
+    }
+
+    public UUID getAncestorId() {
+        return ancestorId;
+    }
+
+    public void setAncestorId(UUID ancestorId) {
+        this.ancestorId = ancestorId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Composite primary key: a user appears at most once above another.
+     */
+    public static class Key implements Serializable {
+
+        private UUID descendantId;
+        private UUID ancestorId;
+
+        public Key() {
+        }
+
+        public Key(UUID descendantId, UUID ancestorId) {
+            this.descendantId = descendantId;
+            this.ancestorId = ancestorId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(descendantId, key.descendantId) && Objects.equals(ancestorId, key.ancestorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(descendantId, ancestorId);
+        }
+    }
+}
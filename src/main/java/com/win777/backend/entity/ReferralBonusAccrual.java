@@ -0,0 +1,125 @@
+package com.win777.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Referral bonuses owed to a referrer at one level since the last settlement.
+ * Used when settlement is deferred: completions add to these rows instead of appending
+ * a ledger row per bonus, and ReferralBonusSettler turns each into one ledger row per period.
+ */
+@Entity
+@Table(name = "referral_bonus_accruals")
+@IdClass(ReferralBonusAccrual.Key.class)
+public class ReferralBonusAccrual {
+
+    @Id
+    @Column(name = "referrer_id", updatable = false, nullable = false)
+    private UUID referrerId;
+
+    @Id
+    @Column(name = "reward_level", updatable = false, nullable = false)
+    private int level;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public ReferralBonusAccrual() {
+    }
+
+    // Getters and Setters
+    public UUID getReferrerId() {
+        return referrerId;
+    }
+
+    public void setReferrerId(UUID referrerId) {
+        this.referrerId = referrerId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Composite primary key: one accumulator per referrer and level.
+     * Ordered by referrer, then level, as the database sorts them; rows are locked in this order.
+     */
+    public static class Key implements Serializable, Comparable<Key> {
+
+        private UUID referrerId;
+        private int level;
+
+        public Key() {
+        }
+
+        public Key(UUID referrerId, int level) {
+            this.referrerId = referrerId;
+            this.level = level;
+        }
+
+        public UUID getReferrerId() {
+            return referrerId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            // Unsigned, as the database orders UUIDs; UUID.compareTo compares signed halves
+            int byReferrer = Long.compareUnsigned(referrerId.getMostSignificantBits(), other.referrerId.getMostSignificantBits());
+            if (byReferrer == 0) {
+                byReferrer = Long.compareUnsigned(referrerId.getLeastSignificantBits(), other.referrerId.getLeastSignificantBits());
+            }
+            return byReferrer != 0 ? byReferrer : Integer.compare(level, other.level);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return level == key.level && Objects.equals(referrerId, key.referrerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(referrerId, level);
+        }
+    }
+}
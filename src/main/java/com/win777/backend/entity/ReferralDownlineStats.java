@@ -0,0 +1,136 @@
+package com.win777.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A user's downline at one level: how many users they referred at that depth and
+ * the referral bonuses those users have paid them.
+ * Maintained incrementally at registration and ledger append by ReferralDownlineService.
+ */
+@Entity
+@Table(name = "referral_downline_stats")
+@IdClass(ReferralDownlineStats.Key.class)
+public class ReferralDownlineStats {
+
+    @Id
+    @Column(name = "user_id", updatable = false, nullable = false)
+    private UUID userId;
+
+    @Id
+    @Column(name = "reward_level", updatable = false, nullable = false)
+    private int level;
+
+    @Column(name = "member_count", nullable = false)
+    private long memberCount;
+
+    @Column(name = "earnings", nullable = false, precision = 19, scale = 2)
+    private BigDecimal earnings = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public ReferralDownlineStats() {
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public long getMemberCount() {
+        return memberCount;
+    }
+
+    public void setMemberCount(long memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public BigDecimal getEarnings() {
+        return earnings;
+    }
+
+    public void setEarnings(BigDecimal earnings) {
+        this.earnings = earnings;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Composite primary key: one row per user and level.
+     * Ordered by user, then level, as the database sorts them; rows are locked in this order.
+     */
+    public static class Key implements Serializable, Comparable<Key> {
+
+        private UUID userId;
+        private int level;
+
+        public Key() {
+        }
+
+        public Key(UUID userId, int level) {
+            this.userId = userId;
+            this.level = level;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            // Unsigned, as the database orders UUIDs; UUID.compareTo compares signed halves
+            int byUser = Long.compareUnsigned(userId.getMostSignificantBits(), other.userId.getMostSignificantBits());
+            if (byUser == 0) {
+                byUser = Long.compareUnsigned(userId.getLeastSignificantBits(), other.userId.getLeastSignificantBits());
+            }
+            return byUser != 0 ? byUser : Integer.compare(level, other.level);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return level == key.level && Objects.equals(userId, key.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, level);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.win777.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Referral bonus paid to the referrer at one level above the completing user, as a fraction of the SMS earning.
+ * The configured levels set the reward depth; with no rows, the built-in 10% / 2% / 1% levels apply.
+ */
+@Entity
+@Table(name = "referral_reward_levels")
+public class ReferralRewardLevel {
+
+    // 1 is the direct referrer
+    @Id
+    @Column(name = "reward_level", updatable = false, nullable = false)
+    private Integer level;
+
+    // Fraction of the earning, e.g. 0.1000 for 10%
+    @Column(name = "percentage", nullable = false, precision = 5, scale = 4)
+    private BigDecimal percentage;
+
+    @Column(name = "description", length = 500)
+    private String description;
+
+    // Auditing fields
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public ReferralRewardLevel() {
+    }
+
+    public ReferralRewardLevel(Integer level, BigDecimal percentage) {
+        this.level = level;
+        this.percentage = percentage;
+    }
+
+    // Getters and Setters
+    public Integer getLevel() {
+        return level;
+    }
+
+    public void setLevel(Integer level) {
+        this.level = level;
+    }
+
+    public BigDecimal getPercentage() {
+        return percentage;
+    }
+
+    public void setPercentage(BigDecimal percentage) {
+        this.percentage = percentage;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
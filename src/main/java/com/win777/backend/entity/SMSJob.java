@@ -1,6 +1,7 @@
 package com.win777.backend.entity;
 
 import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.util.UuidV7Id;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -9,11 +10,14 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "sms_jobs")
+@Table(name = "sms_jobs", indexes = {
+    @Index(name = "idx_sms_jobs_partition_status_created", columnList = "queue_partition, status, created_at"),
+    @Index(name = "idx_sms_jobs_user_status", columnList = "user_id, status")
+})
 public class SMSJob {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     @Column(name = "id", updatable = false, nullable = false)
     private UUID id;
 
@@ -32,6 +36,14 @@ public class SMSJob {
     @Column(name = "status", nullable = false)
     private SMSJobStatus status = SMSJobStatus.PENDING;
 
+    // Queue partition assigned at ingest; claimers start on their own partition to spread contention
+    @Column(name = "queue_partition", nullable = false, columnDefinition = "integer default 0")
+    private int queuePartition;
+
+    // Set while the job sits in a node's dispatch buffer; expired leases return to PENDING
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
     @Column(name = "claimed_at")
     private LocalDateTime claimedAt;
 
@@ -98,6 +110,22 @@ public class SMSJob {
         this.status = status;
     }
 
+    public int getQueuePartition() {
+        return queuePartition;
+    }
+
+    public void setQueuePartition(int queuePartition) {
+        this.queuePartition = queuePartition;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
     public LocalDateTime getClaimedAt() {
         return claimedAt;
     }
@@ -0,0 +1,93 @@
+package com.win777.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * SMS earnings credited to a user on one day.
+ * Updated in the completion transaction so the daily earnings cap is checked
+ * with a single-row conditional update instead of a SUM over the day's ledger.
+ */
+@Entity
+@Table(name = "user_daily_earnings")
+@IdClass(UserDailyEarnings.Key.class)
+public class UserDailyEarnings {
+
+    @Id
+    @Column(name = "user_id", updatable = false, nullable = false)
+    private UUID userId;
+
+    @Id
+    @Column(name = "earning_date", updatable = false, nullable = false)
+    private LocalDate earningDate;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    // Constructors
+    public UserDailyEarnings() {
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public LocalDate getEarningDate() {
+        return earningDate;
+    }
+
+    public void setEarningDate(LocalDate earningDate) {
+        this.earningDate = earningDate;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * Composite primary key: one row per user and day.
+     */
+    public static class Key implements Serializable {
+
+        private UUID userId;
+        private LocalDate earningDate;
+
+        public Key() {
+        }
+
+        public Key(UUID userId, LocalDate earningDate) {
+            this.userId = userId;
+            this.earningDate = earningDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(userId, key.userId) && Objects.equals(earningDate, key.earningDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, earningDate);
+        }
+    }
+}
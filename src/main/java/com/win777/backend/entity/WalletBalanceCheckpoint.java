@@ -0,0 +1,68 @@
+package com.win777.backend.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Periodic wallet balance checkpoint, one row per user.
+ * Holds the sum of the user's ledger entries created before {@code coveredUntil};
+ * the balance is this plus the sum of the entries created since.
+ */
+@Entity
+@Table(name = "wallet_balance_checkpoints")
+public class WalletBalanceCheckpoint {
+
+    @Id
+    @Column(name = "user_id", updatable = false, nullable = false)
+    private UUID userId;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    // Exclusive upper bound on the created_at of the ledger entries included in balance
+    @Column(name = "covered_until", nullable = false)
+    private LocalDateTime coveredUntil;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public WalletBalanceCheckpoint() {
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public LocalDateTime getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    public void setCoveredUntil(LocalDateTime coveredUntil) {
+        this.coveredUntil = coveredUntil;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,19 +1,27 @@
 package com.win777.backend.entity;
 
 import com.win777.backend.enums.LedgerType;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.util.UuidV7Id;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.DomainEvents;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "wallet_ledger")
+@Table(name = "wallet_ledger", indexes = {
+    @Index(name = "idx_wallet_ledger_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_wallet_ledger_created", columnList = "created_at")
+})
 public class WalletLedger {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     @Column(name = "id", updatable = false, nullable = false)
     private UUID id;
 
@@ -53,6 +61,13 @@ public class WalletLedger {
         }
     }
 
+    // Published by the repository on save(); the ledger is append-only, so every save is an append.
+    // saveAll() would publish one event per entity, so multi-entry appends go through insertAll()
+    @DomainEvents
+    Collection<Object> domainEvents() {
+        return List.of(new WalletLedgerAppendedEvent(List.of(this)));
+    }
+
     // Getters and Setters (no setters for immutable fields after creation)
     public UUID getId() {
         return id;
@@ -1,6 +1,7 @@
 package com.win777.backend.entity;
 
 import com.win777.backend.enums.WithdrawalStatus;
+import com.win777.backend.util.UuidV7Id;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -10,11 +11,13 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "withdrawals")
+@Table(name = "withdrawals", indexes = {
+    @Index(name = "idx_withdrawals_user", columnList = "user_id")
+})
 public class Withdrawal {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     @Column(name = "id", updatable = false, nullable = false)
     private UUID id;
 
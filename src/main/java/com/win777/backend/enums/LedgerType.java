@@ -5,7 +5,41 @@ public enum LedgerType {
     REFERRAL_LEVEL_1,
     REFERRAL_LEVEL_2,
     REFERRAL_LEVEL_3,
+    REFERRAL_LEVEL_4,
+    REFERRAL_LEVEL_5,
+    REFERRAL_LEVEL_6,
+    REFERRAL_LEVEL_7,
+    REFERRAL_LEVEL_8,
+    REFERRAL_LEVEL_9,
+    REFERRAL_LEVEL_10,
     WITHDRAWAL,
     ADMIN_CREDIT,
-    ADMIN_DEBIT
+    ADMIN_DEBIT;
+
+    /** Deepest referral level with its own ledger type */
+    public static final int MAX_REFERRAL_LEVEL = 10;
+
+    /**
+     * Gets the ledger type for a referral bonus paid at the given level.
+     * 
+     * @param level the referral level, 1 for the direct referrer
+     * @return the REFERRAL_LEVEL_n type
+     * @throws IllegalArgumentException if the level is outside 1..MAX_REFERRAL_LEVEL
+     */
+    public static LedgerType referralLevel(int level) {
+        if (level < 1 || level > MAX_REFERRAL_LEVEL) {
+            throw new IllegalArgumentException("Referral level must be between 1 and " + MAX_REFERRAL_LEVEL + ": " + level);
+        }
+        return values()[REFERRAL_LEVEL_1.ordinal() + level - 1];
+    }
+
+    /**
+     * Gets the referral level this type pays.
+     * 
+     * @return the level for REFERRAL_LEVEL_n, or 0 for other types
+     */
+    public int getReferralLevel() {
+        int level = ordinal() - REFERRAL_LEVEL_1.ordinal() + 1;
+        return level >= 1 && level <= MAX_REFERRAL_LEVEL ? level : 0;
+    }
 }
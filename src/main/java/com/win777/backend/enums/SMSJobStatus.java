@@ -2,6 +2,7 @@ package com.win777.backend.enums;
 
 public enum SMSJobStatus {
     PENDING,
+    LEASED,
     CLAIMED,
     COMPLETED,
     FAILED
@@ -0,0 +1,12 @@
+package com.win777.backend.event;
+
+import java.util.UUID;
+
+/**
+ * Published inside the registration transaction when a user is created.
+ *
+ * @param userId the new user's ID
+ * @param referrerId the referrer's ID, or null if the user was not referred
+ */
+public record UserRegisteredEvent(UUID userId, UUID referrerId) {
+}
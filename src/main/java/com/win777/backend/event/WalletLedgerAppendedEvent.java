@@ -0,0 +1,14 @@
+package com.win777.backend.event;
+
+import com.win777.backend.entity.WalletLedger;
+
+import java.util.List;
+
+/**
+ * Published synchronously, inside the writing transaction, whenever entries are
+ * appended to the wallet ledger.
+ *
+ * @param entries the appended ledger entries
+ */
+public record WalletLedgerAppendedEvent(List<WalletLedger> entries) {
+}
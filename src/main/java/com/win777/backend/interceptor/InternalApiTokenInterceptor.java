@@ -0,0 +1,44 @@
+package com.win777.backend.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Interceptor guarding internal endpoints.
+ * Requires the configured internal API token in the X-Internal-Token header;
+ * all internal requests are rejected while no token is configured.
+ */
+@Component
+public class InternalApiTokenInterceptor implements HandlerInterceptor {
+
+    public static final String TOKEN_HEADER = "X-Internal-Token";
+
+    private final byte[] expectedToken;
+
+    public InternalApiTokenInterceptor(@Value("${internal.api-token:}") String apiToken) {
+        this.expectedToken = apiToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+
+        String token = request.getHeader(TOKEN_HEADER);
+        if (expectedToken.length == 0 || token == null
+                || !MessageDigest.isEqual(expectedToken, token.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType("application/json");
+            response.getWriter().write("{\"message\":\"Invalid internal API token\"}");
+            return false;
+        }
+
+        return true;
+    }
+}
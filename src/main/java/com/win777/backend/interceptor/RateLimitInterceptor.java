@@ -1,6 +1,7 @@
 package com.win777.backend.interceptor;
 
 import com.win777.backend.service.RateLimitService;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
@@ -26,6 +27,11 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         
         String requestPath = request.getRequestURI();
         
+        // The async dispatch that completes a long-poll claim was counted on the original request
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        
         // Apply rate limiting to sensitive endpoints
         if (shouldRateLimit(requestPath)) {
             String key = getClientKey(request);
@@ -48,11 +54,14 @@ public class RateLimitInterceptor implements HandlerInterceptor {
      * @return true if path should be rate limited
      */
     private boolean shouldRateLimit(String path) {
-        return path.equals("/auth/login") || path.equals("/api/sms-tasks/claim");
+        return path.equals("/auth/login")
+                || path.equals("/api/sms-tasks/claim")
+                || path.equals("/api/sms-tasks/claim-batch");
     }
 
     /**
-     * Gets a unique key for the client (IP address).
+     * Gets a unique key for the client (IP address) and rate-limited operation.
+     * Single and batch claims share one key, so batching cannot add to the claim rate.
      * In production, this could also use userId for authenticated requests.
      * 
      * @param request the HTTP request
@@ -63,6 +72,10 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         if (ipAddress == null || ipAddress.isEmpty()) {
             ipAddress = request.getRemoteAddr();
         }
-        return ipAddress + ":" + request.getRequestURI();
+        String path = request.getRequestURI();
+        if (path.equals("/api/sms-tasks/claim-batch")) {
+            path = "/api/sms-tasks/claim";
+        }
+        return ipAddress + ":" + path;
     }
 }
@@ -0,0 +1,86 @@
+package com.win777.backend.interceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor bounding how many requests run their handler at once.
+ * With virtual threads the container no longer caps concurrency, so without this every client
+ * would queue inside the connection pool and time out there. Requests over the limit wait briefly
+ * for a permit and are then rejected with 503. Long-poll requests give their permit back when
+ * they are parked.
+ */
+@Component
+public class RequestBulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = RequestBulkheadInterceptor.class.getName() + ".permit";
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final Duration maxWait;
+
+    public RequestBulkheadInterceptor(@Value("${web.bulkhead.enabled:false}") boolean enabled,
+                                      @Value("${web.bulkhead.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentRequests,
+                                      @Value("${web.bulkhead.max-wait:2s}") Duration maxWait) {
+        this.enabled = enabled;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+
+        // Async dispatches only write out a result that is already computed
+        if (!enabled || request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+
+        if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType("application/json");
+            response.getWriter().write("{\"message\":\"Server is busy. Please try again later.\"}");
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        release(request);
+    }
+
+    /**
+     * Gets the number of requests that can start right now.
+     *
+     * @return the free permits
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private void release(HttpServletRequest request) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralAncestor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository interface for ReferralAncestor entity.
+ * Rows are only inserted: referrers never change once a user has registered.
+ */
+@Repository
+public interface ReferralAncestorRepository extends JpaRepository<ReferralAncestor, ReferralAncestor.Key> {
+
+    /**
+     * Finds a user's referrers, nearest first, from the primary key index.
+     * 
+     * @param descendantId the user ID
+     * @param maxDepth the deepest level to return
+     * @return the ancestor user IDs ordered by depth
+     */
+    @Query("SELECT a.ancestorId FROM ReferralAncestor a WHERE a.descendantId = :descendantId AND a.depth <= :maxDepth " +
+           "ORDER BY a.depth")
+    List<UUID> findAncestorIds(@Param("descendantId") UUID descendantId, @Param("maxDepth") int maxDepth);
+
+    /**
+     * Inserts a new user's ancestors: the referrer at depth 1, then the referrer's own ancestors one level deeper.
+     * 
+     * @param descendantId the new user's ID
+     * @param referrerId the referrer's ID
+     * @param maxDepth the deepest level to store
+     * @return the number of rows inserted
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO referral_ancestors (descendant_id, ancestor_id, depth) " +
+           "SELECT CAST(:descendantId AS uuid), CAST(:referrerId AS uuid), 1 " +
+           "UNION ALL " +
+           "SELECT CAST(:descendantId AS uuid), a.ancestor_id, a.depth + 1 FROM referral_ancestors a " +
+           "WHERE a.descendant_id = :referrerId AND a.depth < :maxDepth", nativeQuery = true)
+    int insertAncestors(@Param("descendantId") UUID descendantId, @Param("referrerId") UUID referrerId,
+                        @Param("maxDepth") int maxDepth);
+
+    /**
+     * Inserts depth-1 rows from users.referrer_id for users that have none yet.
+     * 
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @Query(value = "INSERT INTO referral_ancestors (descendant_id, ancestor_id, depth) " +
+           "SELECT u.id, u.referrer_id, 1 FROM users u WHERE u.referrer_id IS NOT NULL " +
+           "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int backfillDirectReferrers();
+
+    /**
+     * Inserts the rows one level below {@code depth} by following users.referrer_id from each ancestor at that depth.
+     * 
+     * @param depth the depth to extend from
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @Query(value = "INSERT INTO referral_ancestors (descendant_id, ancestor_id, depth) " +
+           "SELECT a.descendant_id, u.referrer_id, a.depth + 1 FROM referral_ancestors a " +
+           "JOIN users u ON u.id = a.ancestor_id " +
+           "WHERE a.depth = :depth AND u.referrer_id IS NOT NULL " +
+           "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int backfillDepth(@Param("depth") int depth);
+}
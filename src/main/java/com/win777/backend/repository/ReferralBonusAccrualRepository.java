@@ -0,0 +1,36 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralBonusAccrual;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository interface for ReferralBonusAccrual entity.
+ * Completions add to accruals through {@link ReferralBonusAccrualRepositoryCustom#accrueAll};
+ * the settler locks, settles and zeroes them.
+ */
+@Repository
+public interface ReferralBonusAccrualRepository extends JpaRepository<ReferralBonusAccrual, ReferralBonusAccrual.Key>,
+        ReferralBonusAccrualRepositoryCustom {
+
+    /**
+     * Finds and locks accruals with an unsettled amount after the given key, in the order completions lock them.
+     * Keyset pagination, so one settlement run visits each accrual at most once.
+     * 
+     * @param afterReferrerId the referrer of the last accrual already visited
+     * @param afterLevel the level of the last accrual already visited
+     * @param limit the number of accruals to lock
+     * @return the accruals ordered by referrer, then level
+     */
+    @Query(value = "SELECT * FROM referral_bonus_accruals WHERE amount > 0 " +
+           "AND (referrer_id > :afterReferrerId OR (referrer_id = :afterReferrerId AND reward_level > :afterLevel)) " +
+           "ORDER BY referrer_id, reward_level LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<ReferralBonusAccrual> findUnsettledAfterForUpdate(@Param("afterReferrerId") UUID afterReferrerId,
+                                                          @Param("afterLevel") int afterLevel,
+                                                          @Param("limit") int limit);
+}
@@ -0,0 +1,20 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralBonusAccrual;
+
+import java.math.BigDecimal;
+import java.util.SortedMap;
+
+/**
+ * Custom bulk operations for referral bonus accruals.
+ */
+public interface ReferralBonusAccrualRepositoryCustom {
+
+    /**
+     * Adds amounts to referrers' accruals as JDBC batches, creating missing rows.
+     * Rows are locked in key order, the order the settler locks them in, so concurrent writers cannot deadlock.
+     * 
+     * @param amounts the amount to add per referrer and level
+     */
+    void accrueAll(SortedMap<ReferralBonusAccrual.Key, BigDecimal> amounts);
+}
@@ -0,0 +1,74 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.dto.DownlineLevelDto;
+import com.win777.backend.entity.ReferralDownlineStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository interface for ReferralDownlineStats entity.
+ * Member counts grow from a new user's referral_ancestors rows; earnings through
+ * {@link ReferralDownlineStatsRepositoryCustom#addEarningsAll}.
+ */
+@Repository
+public interface ReferralDownlineStatsRepository extends JpaRepository<ReferralDownlineStats, ReferralDownlineStats.Key>,
+        ReferralDownlineStatsRepositoryCustom {
+
+    /**
+     * Finds a user's downline levels projected straight into DTOs, from the primary key index.
+     * 
+     * @param userId the user ID
+     * @return the levels the user has a downline or earnings at, nearest first
+     */
+    @Query("SELECT new com.win777.backend.dto.DownlineLevelDto(s.level, s.memberCount, s.earnings) " +
+           "FROM ReferralDownlineStats s WHERE s.userId = :userId ORDER BY s.level")
+    List<DownlineLevelDto> findLevelsByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Creates the missing rows for each of a new user's ancestors at the new user's depth below them.
+     * 
+     * @param descendantId the new user's ID
+     * @param now the update timestamp
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @Query(value = "INSERT INTO referral_downline_stats (user_id, reward_level, member_count, earnings, updated_at) " +
+           "SELECT a.ancestor_id, a.depth, 0, 0, :now FROM referral_ancestors a WHERE a.descendant_id = :descendantId " +
+           "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertMissingForDescendant(@Param("descendantId") UUID descendantId, @Param("now") LocalDateTime now);
+
+    /**
+     * Locks each of a new user's ancestors' rows at the new user's depth below them, in key order.
+     * An UPDATE locks rows in whatever order its plan visits them; taking the locks here first keeps
+     * registrations in line with earnings, which also lock by (user_id, reward_level).
+     * 
+     * @param descendantId the new user's ID
+     * @return the locked rows' levels, in lock order
+     */
+    @Query(value = "SELECT s.reward_level FROM referral_downline_stats s " +
+           "WHERE EXISTS (SELECT 1 FROM referral_ancestors a WHERE a.descendant_id = :descendantId " +
+           "AND a.ancestor_id = s.user_id AND a.depth = s.reward_level) " +
+           "ORDER BY s.user_id, s.reward_level FOR UPDATE", nativeQuery = true)
+    List<Integer> lockForDescendant(@Param("descendantId") UUID descendantId);
+
+    /**
+     * Counts a new user once in each ancestor's downline, at the new user's depth below them.
+     * Callers lock the rows first with {@link #lockForDescendant}.
+     * 
+     * @param descendantId the new user's ID
+     * @param now the update timestamp
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Query(value = "UPDATE referral_downline_stats s SET member_count = s.member_count + 1, updated_at = :now " +
+           "WHERE EXISTS (SELECT 1 FROM referral_ancestors a WHERE a.descendant_id = :descendantId " +
+           "AND a.ancestor_id = s.user_id AND a.depth = s.reward_level)", nativeQuery = true)
+    int addMemberForDescendant(@Param("descendantId") UUID descendantId, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,20 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralDownlineStats;
+
+import java.math.BigDecimal;
+import java.util.SortedMap;
+
+/**
+ * Custom bulk operations for referral downline statistics.
+ */
+public interface ReferralDownlineStatsRepositoryCustom {
+
+    /**
+     * Adds referral bonuses to users' per-level earnings as JDBC batches, creating missing rows.
+     * Rows are locked in key order, so concurrent writers cannot deadlock.
+     * 
+     * @param amounts the amount to add per user and level
+     */
+    void addEarningsAll(SortedMap<ReferralDownlineStats.Key, BigDecimal> amounts);
+}
@@ -0,0 +1,70 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralDownlineStats;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * JDBC implementation of the custom referral downline statistics operations.
+ */
+public class ReferralDownlineStatsRepositoryImpl implements ReferralDownlineStatsRepositoryCustom {
+
+    private static final String ADD_SQL =
+            "UPDATE referral_downline_stats SET earnings = earnings + ?, updated_at = ? WHERE user_id = ? AND reward_level = ?";
+
+    private static final String INSERT_IF_ABSENT_SQL =
+            "INSERT INTO referral_downline_stats (user_id, reward_level, member_count, earnings, updated_at) " +
+            "VALUES (?, ?, 0, 0, ?) ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReferralDownlineStatsRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addEarningsAll(SortedMap<ReferralDownlineStats.Key, BigDecimal> amounts) {
+        if (amounts.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // 1. Add to existing rows
+        List<Map.Entry<ReferralDownlineStats.Key, BigDecimal>> entries = new ArrayList<>(amounts.entrySet());
+        int[] updated = add(entries, now);
+
+        // 2. Create the rows that did not exist, then add to them
+        List<Map.Entry<ReferralDownlineStats.Key, BigDecimal>> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(entries.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_IF_ABSENT_SQL, missing, missing.size(), (ps, entry) -> {
+            ps.setObject(1, entry.getKey().getUserId());
+            ps.setInt(2, entry.getKey().getLevel());
+            ps.setTimestamp(3, now);
+        });
+        add(missing, now);
+    }
+
+    private int[] add(List<Map.Entry<ReferralDownlineStats.Key, BigDecimal>> entries, Timestamp now) {
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setBigDecimal(1, entry.getValue());
+            ps.setTimestamp(2, now);
+            ps.setObject(3, entry.getKey().getUserId());
+            ps.setInt(4, entry.getKey().getLevel());
+        });
+        return counts[0];
+    }
+}
@@ -0,0 +1,22 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.ReferralRewardLevel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for ReferralRewardLevel entity.
+ * Provides standard CRUD operations through JpaRepository.
+ */
+@Repository
+public interface ReferralRewardLevelRepository extends JpaRepository<ReferralRewardLevel, Integer> {
+
+    /**
+     * Finds every configured reward level.
+     * 
+     * @return the levels, direct referrer first
+     */
+    List<ReferralRewardLevel> findAllByOrderByLevelAsc();
+}
@@ -3,14 +3,19 @@ package com.win777.backend.repository;
 import com.win777.backend.entity.SMSJob;
 import com.win777.backend.enums.SMSJobStatus;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,6 +27,11 @@ import java.util.UUID;
 @Repository
 public interface SMSJobRepository extends JpaRepository<SMSJob, UUID> {
     
+    /**
+     * Lock timeout hint value that Hibernate renders as SKIP LOCKED (LockOptions.SKIP_LOCKED).
+     */
+    String SKIP_LOCKED = "-2";
+    
     /**
      * Finds the first PENDING job with database-level locking (FOR UPDATE).
      * This ensures atomicity when claiming jobs in a concurrent environment.
@@ -45,6 +55,44 @@ public interface SMSJobRepository extends JpaRepository<SMSJob, UUID> {
         return jobs.isEmpty() ? Optional.empty() : Optional.of(jobs.get(0));
     }
     
+    /**
+     * Finds PENDING jobs with FOR UPDATE SKIP LOCKED.
+     * Rows already locked by another claimer are skipped instead of waited on,
+     * so concurrent claimers each take the next unlocked row rather than
+     * queueing behind the oldest one.
+     * 
+     * @param status the job status to filter by (PENDING)
+     * @param pageable pagination to limit the number of rows locked
+     * @return list of locked pending jobs, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("SELECT j FROM SMSJob j WHERE j.status = :status ORDER BY j.createdAt ASC")
+    List<SMSJob> findByStatusSkipLocked(SMSJobStatus status, PageRequest pageable);
+    
+    /**
+     * Convenience method to find the first unlocked PENDING job with FOR UPDATE SKIP LOCKED.
+     * 
+     * @return Optional containing the first unlocked pending job, or empty if none available
+     */
+    default Optional<SMSJob> findFirstPendingJobSkipLocked() {
+        List<SMSJob> jobs = findByStatusSkipLocked(SMSJobStatus.PENDING, PageRequest.of(0, 1));
+        return jobs.isEmpty() ? Optional.empty() : Optional.of(jobs.get(0));
+    }
+    
+    /**
+     * Finds PENDING jobs in one queue partition with FOR UPDATE SKIP LOCKED.
+     * 
+     * @param partition the queue partition
+     * @param status the job status to filter by (PENDING)
+     * @param pageable pagination to limit the number of rows locked
+     * @return list of locked pending jobs in the partition, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("SELECT j FROM SMSJob j WHERE j.queuePartition = :partition AND j.status = :status ORDER BY j.createdAt ASC")
+    List<SMSJob> findByPartitionSkipLocked(int partition, SMSJobStatus status, PageRequest pageable);
+    
     /**
      * Finds an SMS job by ID and user with pessimistic write locking.
      * This ensures exclusive access when completing jobs in a concurrent environment.
@@ -57,6 +105,16 @@ public interface SMSJobRepository extends JpaRepository<SMSJob, UUID> {
     @Query("SELECT j FROM SMSJob j WHERE j.id = :id AND j.user.id = :userId")
     Optional<SMSJob> findByIdAndUserIdWithLock(UUID id, UUID userId);
     
+    /**
+     * Finds SMS jobs by ID with pessimistic write locking, in ID order so concurrent groups lock rows consistently.
+     * 
+     * @param ids the job IDs
+     * @return the locked jobs that exist
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM SMSJob j WHERE j.id IN :ids ORDER BY j.id")
+    List<SMSJob> findAllByIdWithLock(Collection<UUID> ids);
+    
     /**
      * Finds all SMS jobs for a user, ordered by creation date descending.
      * 
@@ -65,4 +123,108 @@ public interface SMSJobRepository extends JpaRepository<SMSJob, UUID> {
      * @return page of SMS jobs
      */
     Page<SMSJob> findByUserIdOrderByCreatedAtDesc(UUID userId, Pageable pageable);
+    
+    /**
+     * Moves jobs into LEASED status for a node's dispatch buffer.
+     * 
+     * @param ids the job IDs to lease
+     * @param leaseExpiresAt when the lease lapses
+     * @return the number of jobs leased
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.LEASED, " +
+           "j.leaseExpiresAt = :leaseExpiresAt WHERE j.id IN :ids")
+    int leaseJobs(Collection<UUID> ids, LocalDateTime leaseExpiresAt);
+    
+    /**
+     * Returns leased jobs to the PENDING pool.
+     * Jobs that were claimed in the meantime are left untouched.
+     * 
+     * @param ids the leased job IDs to release
+     * @return the number of jobs released
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.PENDING, j.leaseExpiresAt = null " +
+           "WHERE j.id IN :ids AND j.status = com.win777.backend.enums.SMSJobStatus.LEASED")
+    int releaseLeases(Collection<UUID> ids);
+    
+    /**
+     * Returns every job whose lease has lapsed to the PENDING pool.
+     * Covers leases held by nodes that died before handing their jobs out.
+     * 
+     * @param now the current time
+     * @return the number of jobs released
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.PENDING, j.leaseExpiresAt = null " +
+           "WHERE j.status = com.win777.backend.enums.SMSJobStatus.LEASED AND j.leaseExpiresAt < :now")
+    int releaseExpiredLeases(LocalDateTime now);
+    
+    /**
+     * Marks a set of CLAIMED jobs owned by a user as COMPLETED in one statement.
+     * Jobs not owned by the user or not in CLAIMED status are left untouched.
+     * 
+     * @param ids the job IDs
+     * @param userId the owning user ID
+     * @param completedAt the completion time
+     * @return the number of jobs completed
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.COMPLETED, " +
+           "j.completedAt = :completedAt, j.updatedAt = :completedAt " +
+           "WHERE j.id IN :ids AND j.user.id = :userId AND j.status = com.win777.backend.enums.SMSJobStatus.CLAIMED")
+    int completeClaimedJobs(Collection<UUID> ids, UUID userId, LocalDateTime completedAt);
+    
+    /**
+     * Finds the first page of CLAIMED jobs claimed before the cutoff, in ID order.
+     * 
+     * @param cutoff jobs claimed before this time are stale
+     * @param pageable the chunk size
+     * @return IDs of stale claimed jobs
+     */
+    @Query("SELECT j.id FROM SMSJob j WHERE j.status = com.win777.backend.enums.SMSJobStatus.CLAIMED " +
+           "AND j.claimedAt < :cutoff ORDER BY j.id")
+    List<UUID> findStaleClaimIds(LocalDateTime cutoff, Pageable pageable);
+    
+    /**
+     * Finds the next page of CLAIMED jobs claimed before the cutoff, keyed on the last ID seen.
+     * 
+     * @param cutoff jobs claimed before this time are stale
+     * @param afterId the last ID of the previous page
+     * @param pageable the chunk size
+     * @return IDs of stale claimed jobs
+     */
+    @Query("SELECT j.id FROM SMSJob j WHERE j.status = com.win777.backend.enums.SMSJobStatus.CLAIMED " +
+           "AND j.claimedAt < :cutoff AND j.id > :afterId ORDER BY j.id")
+    List<UUID> findStaleClaimIdsAfter(LocalDateTime cutoff, UUID afterId, Pageable pageable);
+    
+    /**
+     * Returns stale CLAIMED jobs to the PENDING pool.
+     * Status and claim time are re-checked so a job completed or failed in the meantime is left alone.
+     * 
+     * @param ids the job IDs
+     * @param cutoff jobs claimed before this time are stale
+     * @param now the update time
+     * @return the number of jobs returned to the pool
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.PENDING, j.user = null, " +
+           "j.claimedAt = null, j.updatedAt = :now " +
+           "WHERE j.id IN :ids AND j.status = com.win777.backend.enums.SMSJobStatus.CLAIMED AND j.claimedAt < :cutoff")
+    int reclaimStaleJobs(Collection<UUID> ids, LocalDateTime cutoff, LocalDateTime now);
+
+    /**
+     * Returns a job the user claimed but never received to the PENDING pool.
+     * Status and owner are re-checked so a job completed, failed or reclaimed in the meantime is left alone.
+     * 
+     * @param id the job ID
+     * @param userId the ID of the user who claimed the job
+     * @param now the update time
+     * @return 1 if the job was returned to the pool, otherwise 0
+     */
+    @Modifying
+    @Query("UPDATE SMSJob j SET j.status = com.win777.backend.enums.SMSJobStatus.PENDING, j.user = null, " +
+           "j.claimedAt = null, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.user.id = :userId AND j.status = com.win777.backend.enums.SMSJobStatus.CLAIMED")
+    int releaseClaim(UUID id, UUID userId, LocalDateTime now);
 }
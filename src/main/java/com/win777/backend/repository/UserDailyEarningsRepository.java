@@ -0,0 +1,74 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.UserDailyEarnings;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository interface for UserDailyEarnings entity.
+ * Accumulators change only through the single-row updates below, which hold the
+ * row lock until commit, so concurrent completions for one user cannot both pass the cap.
+ */
+@Repository
+public interface UserDailyEarningsRepository extends JpaRepository<UserDailyEarnings, UserDailyEarnings.Key> {
+
+    /**
+     * Reads a user's earnings for a day.
+     * 
+     * @param userId the user ID
+     * @param day the day
+     * @return the day's earnings, or empty if the user has earned nothing that day
+     */
+    @Query("SELECT e.amount FROM UserDailyEarnings e WHERE e.userId = :userId AND e.earningDate = :day")
+    Optional<BigDecimal> findAmount(@Param("userId") UUID userId, @Param("day") LocalDate day);
+
+    /**
+     * Creates a zero accumulator for a user and day if it does not exist yet.
+     * A concurrent creator makes this block, then return 0.
+     * 
+     * @param userId the user ID
+     * @param day the day
+     * @return 1 if the row was created, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_daily_earnings (user_id, earning_date, amount) VALUES (:userId, :day, 0) " +
+           "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") UUID userId, @Param("day") LocalDate day);
+
+    /**
+     * Adds to a user's earnings for a day.
+     * 
+     * @param userId the user ID
+     * @param day the day
+     * @param amount the amount to add
+     * @return 1 if added, 0 if the user has no accumulator for the day
+     */
+    @Modifying
+    @Query("UPDATE UserDailyEarnings e SET e.amount = e.amount + :amount " +
+           "WHERE e.userId = :userId AND e.earningDate = :day")
+    int addEarnings(@Param("userId") UUID userId, @Param("day") LocalDate day,
+                    @Param("amount") BigDecimal amount);
+
+    /**
+     * Adds to a user's earnings for a day unless the total would exceed the cap.
+     * 
+     * @param userId the user ID
+     * @param day the day
+     * @param amount the amount to add
+     * @param cap the maximum daily earnings
+     * @return 1 if added, 0 if the cap would be exceeded or the user has no accumulator for the day
+     */
+    @Modifying
+    @Query("UPDATE UserDailyEarnings e SET e.amount = e.amount + :amount " +
+           "WHERE e.userId = :userId AND e.earningDate = :day AND e.amount + :amount <= :cap")
+    int addEarningsWithinCap(@Param("userId") UUID userId, @Param("day") LocalDate day,
+                             @Param("amount") BigDecimal amount, @Param("cap") BigDecimal cap);
+}
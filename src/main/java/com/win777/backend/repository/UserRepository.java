@@ -1,13 +1,18 @@
 package com.win777.backend.repository;
 
 import com.win777.backend.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,6 +37,46 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     
     boolean existsByPhoneNumber(String phoneNumber);
     
+    /**
+     * Finds a user and locks the row until the transaction ends.
+     * 
+     * @param id the user ID
+     * @return the locked user
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findByIdForUpdate(@Param("id") UUID id);
+    
+    /**
+     * Finds users and locks their rows until the transaction ends.
+     * Rows are locked in ID order, so concurrent callers with overlapping users cannot deadlock.
+     * 
+     * @param ids the user IDs
+     * @return the locked users, in ID order
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id IN :ids ORDER BY u.id")
+    List<User> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+    
+    /**
+     * Finds the first page of user IDs in ID order, for keyset-paginated scans.
+     * 
+     * @param pageable page size
+     * @return user IDs
+     */
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<UUID> findIdsOrderById(Pageable pageable);
+    
+    /**
+     * Finds user IDs after the given ID in ID order, for keyset-paginated scans.
+     * 
+     * @param afterId the last ID of the previous page
+     * @param pageable page size
+     * @return user IDs
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UUID> findIdsAfter(@Param("afterId") UUID afterId, Pageable pageable);
+    
     /**
      * Resets daily SMS count for all users and updates last reset date.
      * 
@@ -0,0 +1,96 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.WalletBalanceCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository interface for WalletBalanceCheckpoint entity.
+ * Checkpoints only move forward, through {@link #advance} and {@link #insertIfAbsent}.
+ */
+@Repository
+public interface WalletBalanceCheckpointRepository extends JpaRepository<WalletBalanceCheckpoint, UUID> {
+
+    /**
+     * Calculates a user's balance as checkpoint plus the ledger entries created since it.
+     * One statement, so a concurrent checkpoint roll cannot be counted twice or missed.
+     * Users without a checkpoint sum their whole ledger.
+     * 
+     * @param userId the user ID
+     * @return the wallet balance
+     */
+    @Query(value = "SELECT COALESCE((SELECT c.balance FROM wallet_balance_checkpoints c WHERE c.user_id = :userId), 0) + " +
+           "COALESCE((SELECT SUM(l.amount) FROM wallet_ledger l WHERE l.user_id = :userId AND l.created_at >= " +
+           "COALESCE((SELECT c.covered_until FROM wallet_balance_checkpoints c WHERE c.user_id = :userId), " +
+           "TIMESTAMP '1970-01-01 00:00:00')), 0)", nativeQuery = true)
+    BigDecimal calculateBalance(@Param("userId") UUID userId);
+
+    /**
+     * Finds the existing checkpoints of the given users.
+     * 
+     * @param userIds the user IDs
+     * @return checkpoints; users without one are absent
+     */
+    @Query("SELECT c FROM WalletBalanceCheckpoint c WHERE c.userId IN :userIds")
+    List<WalletBalanceCheckpoint> findByUserIds(@Param("userIds") Collection<UUID> userIds);
+
+    /**
+     * Sums, per user, the ledger entries created after the user's checkpoint and before the horizon.
+     * 
+     * @param userIds the user IDs
+     * @param horizon exclusive upper bound on created_at
+     * @return rows of [user_id, sum]; users without such entries are absent
+     */
+    @Query("SELECT w.user.id, SUM(w.amount) FROM WalletLedger w " +
+           "LEFT JOIN WalletBalanceCheckpoint c ON c.userId = w.user.id " +
+           "WHERE w.user.id IN :userIds AND w.createdAt < :horizon " +
+           "AND (c.coveredUntil IS NULL OR w.createdAt >= c.coveredUntil) " +
+           "GROUP BY w.user.id")
+    List<Object[]> sumLedgerBeforeHorizon(@Param("userIds") Collection<UUID> userIds,
+                                          @Param("horizon") LocalDateTime horizon);
+
+    /**
+     * Rolls a checkpoint forward, provided nobody else moved it since it was read.
+     * 
+     * @param userId the user ID
+     * @param delta the sum of the entries between the old and new horizon
+     * @param expectedCoveredUntil the horizon the delta was computed from
+     * @param horizon the new horizon
+     * @param now the update timestamp
+     * @return 1 if advanced, 0 if the checkpoint moved concurrently
+     */
+    @Modifying
+    @Query("UPDATE WalletBalanceCheckpoint c SET c.balance = c.balance + :delta, c.coveredUntil = :horizon, " +
+           "c.updatedAt = :now WHERE c.userId = :userId AND c.coveredUntil = :expectedCoveredUntil")
+    int advance(@Param("userId") UUID userId,
+                @Param("delta") BigDecimal delta,
+                @Param("expectedCoveredUntil") LocalDateTime expectedCoveredUntil,
+                @Param("horizon") LocalDateTime horizon,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Creates a user's first checkpoint unless one was created concurrently.
+     * 
+     * @param userId the user ID
+     * @param balance the sum of the entries before the horizon
+     * @param horizon the horizon
+     * @param now the update timestamp
+     * @return 1 if created, 0 if a checkpoint already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO wallet_balance_checkpoints (user_id, balance, covered_until, updated_at) " +
+           "VALUES (:userId, :balance, :horizon, :now) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") UUID userId,
+                       @Param("balance") BigDecimal balance,
+                       @Param("horizon") LocalDateTime horizon,
+                       @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,111 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.WalletBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository interface for WalletBalance entity.
+ * Balances change only through {@link #initializeFromLedger} and {@link #addToBalance},
+ * both called while applying ledger appends.
+ */
+@Repository
+public interface WalletBalanceRepository extends JpaRepository<WalletBalance, UUID> {
+
+    /**
+     * Reads a user's materialized balance.
+     * 
+     * @param userId the user ID
+     * @return the balance, or empty if the user has no balance row yet
+     */
+    @Query("SELECT b.balance FROM WalletBalance b WHERE b.userId = :userId")
+    Optional<BigDecimal> findBalance(@Param("userId") UUID userId);
+
+    /**
+     * Finds a user's balance row and locks it until the transaction ends.
+     * 
+     * @param userId the user ID
+     * @return the locked balance row
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM WalletBalance b WHERE b.userId = :userId")
+    Optional<WalletBalance> findByUserIdForUpdate(@Param("userId") UUID userId);
+
+    /**
+     * Creates a user's balance row from the sum of their ledger entries, if it does not exist yet.
+     * The sum includes this transaction's own appends, so a caller that gets 1 back
+     * must not add them again. A concurrent creator makes this block, then return 0.
+     * 
+     * @param userId the user ID
+     * @param now the update timestamp
+     * @return 1 if the row was created, 0 if it already existed
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO wallet_balances (user_id, balance, updated_at) " +
+           "SELECT :userId, COALESCE(SUM(l.amount), 0), :now FROM wallet_ledger l WHERE l.user_id = :userId " +
+           "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int initializeFromLedger(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    /**
+     * Adds a delta to an existing balance row.
+     * 
+     * @param userId the user ID
+     * @param delta the amount to add (negative for debits)
+     * @param now the update timestamp
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Query("UPDATE WalletBalance b SET b.balance = b.balance + :delta, b.updatedAt = :now WHERE b.userId = :userId")
+    int addToBalance(@Param("userId") UUID userId, @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    /**
+     * Finds balance rows in user ID order for keyset-paginated verification.
+     * 
+     * @param pageable page size (offset is ignored by callers)
+     * @return balance rows
+     */
+    @Query("SELECT b FROM WalletBalance b ORDER BY b.userId")
+    List<WalletBalance> findFirstChunk(Pageable pageable);
+
+    /**
+     * Finds balance rows after the given user ID for keyset-paginated verification.
+     * 
+     * @param afterUserId the last user ID of the previous chunk
+     * @param pageable page size
+     * @return balance rows
+     */
+    @Query("SELECT b FROM WalletBalance b WHERE b.userId > :afterUserId ORDER BY b.userId")
+    List<WalletBalance> findChunkAfter(@Param("afterUserId") UUID afterUserId, Pageable pageable);
+
+    /**
+     * Sums the ledger entries of the given users.
+     * 
+     * @param userIds the user IDs
+     * @return rows of [user_id, sum]; users without ledger entries are absent
+     */
+    @Query("SELECT w.user.id, SUM(w.amount) FROM WalletLedger w WHERE w.user.id IN :userIds GROUP BY w.user.id")
+    List<Object[]> sumLedgerByUserIds(@Param("userIds") Collection<UUID> userIds);
+
+    /**
+     * Finds users that have ledger entries but no balance row yet.
+     * 
+     * @param pageable page size
+     * @return user IDs
+     */
+    @Query("SELECT DISTINCT w.user.id FROM WalletLedger w " +
+           "WHERE NOT EXISTS (SELECT 1 FROM WalletBalance b WHERE b.userId = w.user.id)")
+    List<UUID> findUserIdsWithoutBalance(Pageable pageable);
+}
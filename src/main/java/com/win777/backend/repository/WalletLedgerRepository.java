@@ -1,8 +1,10 @@
 package com.win777.backend.repository;
 
+import com.win777.backend.dto.TransactionDto;
 import com.win777.backend.entity.WalletLedger;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -18,10 +20,10 @@ import java.util.UUID;
  * Provides read-only operations for the append-only ledger.
  * 
  * Note: WalletLedger follows append-only pattern - no update or delete operations.
- * Use save() only to append new ledger entries.
+ * Use save() only to append new ledger entries, or insertAll() to append a batch.
  */
 @Repository
-public interface WalletLedgerRepository extends JpaRepository<WalletLedger, UUID> {
+public interface WalletLedgerRepository extends JpaRepository<WalletLedger, UUID>, WalletLedgerRepositoryCustom {
     
     /**
      * Calculates the wallet balance for a user by summing all ledger entries.
@@ -42,6 +44,47 @@ public interface WalletLedgerRepository extends JpaRepository<WalletLedger, UUID
     @Query("SELECT w FROM WalletLedger w WHERE w.user.id = :userId ORDER BY w.createdAt DESC")
     Page<WalletLedger> findByUserIdOrderByCreatedAtDesc(UUID userId, Pageable pageable);
     
+    /**
+     * Finds a user's transaction history as DTOs, ordered by (created_at, id) descending.
+     * Selects the DTO columns directly, so no entities are hydrated, and returns a Slice,
+     * so no count query is issued (one extra row is fetched to set hasNext).
+     * 
+     * @param userId the user ID
+     * @param pageable pagination parameters
+     * @return slice of transactions
+     */
+    @Query("SELECT new com.win777.backend.dto.TransactionDto(w.id, w.amount, w.ledgerType, w.description, w.referenceId, w.createdAt) " +
+           "FROM WalletLedger w WHERE w.user.id = :userId ORDER BY w.createdAt DESC, w.id DESC")
+    Slice<TransactionDto> findTransactionSliceByUserId(@Param("userId") UUID userId, Pageable pageable);
+    
+    /**
+     * Finds the newest wallet ledger entries for a user, for keyset pagination.
+     * Ordered by (created_at, id) descending; no count query is issued.
+     * 
+     * @param userId the user ID
+     * @param pageable page size (callers pass page 0)
+     * @return wallet ledger entries
+     */
+    @Query("SELECT w FROM WalletLedger w WHERE w.user.id = :userId ORDER BY w.createdAt DESC, w.id DESC")
+    List<WalletLedger> findFirstByUserIdKeyset(@Param("userId") UUID userId, Pageable pageable);
+    
+    /**
+     * Finds the wallet ledger entries for a user that sort after the given (created_at, id) position.
+     * Served from the (user_id, created_at, id) index, so the cost does not grow with page depth.
+     * 
+     * @param userId the user ID
+     * @param createdAt the creation timestamp of the last entry on the previous page
+     * @param id the ID of the last entry on the previous page
+     * @param pageable page size (callers pass page 0)
+     * @return wallet ledger entries
+     */
+    @Query("SELECT w FROM WalletLedger w WHERE w.user.id = :userId AND (w.createdAt, w.id) < (:createdAt, :id) " +
+           "ORDER BY w.createdAt DESC, w.id DESC")
+    List<WalletLedger> findByUserIdKeysetAfter(@Param("userId") UUID userId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") UUID id,
+                                               Pageable pageable);
+    
     /**
      * Finds top earners by period for leaderboard.
      * Returns a limited number of top earners sorted by total earnings.
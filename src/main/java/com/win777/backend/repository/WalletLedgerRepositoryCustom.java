@@ -0,0 +1,20 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.WalletLedger;
+
+import java.util.List;
+
+/**
+ * Custom bulk operations for the append-only wallet ledger.
+ */
+public interface WalletLedgerRepositoryCustom {
+
+    /**
+     * Appends ledger entries as a single JDBC batch, bypassing the persistence context.
+     * Time-ordered IDs and creation timestamps are assigned here if not already set.
+     * Publishes a WalletLedgerAppendedEvent like save() does, so balances stay in step.
+     * 
+     * @param entries the ledger entries to append
+     */
+    void insertAll(List<WalletLedger> entries);
+}
@@ -0,0 +1,64 @@
+package com.win777.backend.repository;
+
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.util.UuidV7;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC implementation of the custom wallet ledger operations.
+ */
+public class WalletLedgerRepositoryImpl implements WalletLedgerRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, description, reference_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public WalletLedgerRepositoryImpl(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void insertAll(List<WalletLedger> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (WalletLedger entry : entries) {
+            // Same invariant the entity enforces on persist
+            if (entry.getAmount().compareTo(BigDecimal.ZERO) == 0) {
+                throw new IllegalArgumentException("WalletLedger amount must not be equal to zero");
+            }
+            if (entry.getId() == null) {
+                entry.setId(UuidV7.generate());
+            }
+            if (entry.getCreatedAt() == null) {
+                entry.setCreatedAt(now);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setObject(1, entry.getId());
+            ps.setObject(2, entry.getUser().getId());
+            ps.setBigDecimal(3, entry.getAmount());
+            ps.setString(4, entry.getLedgerType().name());
+            ps.setString(5, entry.getDescription());
+            ps.setObject(6, entry.getReferenceId());
+            ps.setTimestamp(7, Timestamp.valueOf(entry.getCreatedAt()));
+        });
+
+        // Same notification save() raises through the entity's domain events
+        eventPublisher.publishEvent(new WalletLedgerAppendedEvent(List.copyOf(entries)));
+    }
+}
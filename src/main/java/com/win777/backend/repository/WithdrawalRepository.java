@@ -1,11 +1,14 @@
 package com.win777.backend.repository;
 
+import com.win777.backend.dto.WithdrawalResponse;
 import com.win777.backend.entity.Withdrawal;
 import com.win777.backend.enums.WithdrawalStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.UUID;
@@ -26,6 +29,20 @@ public interface WithdrawalRepository extends JpaRepository<Withdrawal, UUID> {
      */
     Page<Withdrawal> findByUserIdOrderByCreatedAtDesc(UUID userId, Pageable pageable);
     
+    /**
+     * Finds a user's withdrawals as response DTOs, ordered by (created_at, id) descending.
+     * Selects the DTO columns directly, so no entities or User proxies are created, and returns
+     * a Slice, so no count query is issued.
+     * 
+     * @param userId the user ID
+     * @param pageable pagination parameters
+     * @return slice of withdrawals
+     */
+    @Query("SELECT new com.win777.backend.dto.WithdrawalResponse(w.id, w.amount, w.status, w.paymentMethod, " +
+           "w.paymentDetails, w.createdAt, w.processedAt) " +
+           "FROM Withdrawal w WHERE w.user.id = :userId ORDER BY w.createdAt DESC, w.id DESC")
+    Slice<WithdrawalResponse> findResponseSliceByUserId(@Param("userId") UUID userId, Pageable pageable);
+    
     /**
      * Finds withdrawals by user and status, ordered by creation date descending.
      * 
@@ -0,0 +1,78 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.ReferralAncestor;
+import com.win777.backend.repository.ReferralAncestorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fills referral_ancestors from users.referrer_id on startup.
+ * Covers users who registered before the closure table existed, and users whose referrer's
+ * rows were still missing when they registered. Set-based and idempotent: one INSERT ... SELECT
+ * per depth, skipping rows that already exist.
+ */
+@Component
+public class ReferralAncestorBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralAncestorBackfill.class);
+
+    private final ReferralAncestorRepository referralAncestorRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public ReferralAncestorBackfill(ReferralAncestorRepository referralAncestorRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${referral.closure.backfill-on-startup:true}") boolean enabled) {
+        this.referralAncestorRepository = referralAncestorRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Backfills once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (Exception e) {
+            logger.error("Error backfilling referral ancestors", e);
+            // Log error but don't throw - completions fall back to walking the referrer chain
+        }
+    }
+
+    /**
+     * Inserts every missing ancestor row, one depth per transaction.
+     * Each depth is derived from the one above it, so depths are filled in order.
+     * 
+     * @return the number of rows inserted
+     */
+    public int backfill() {
+        // 1. Direct referrers
+        Integer inserted = transactionTemplate.execute(status -> referralAncestorRepository.backfillDirectReferrers());
+        int total = inserted == null ? 0 : inserted;
+
+        // 2. Each deeper level from the one above it
+        for (int depth = 1; depth < ReferralAncestor.MAX_DEPTH; depth++) {
+            int parentDepth = depth;
+            inserted = transactionTemplate.execute(status -> referralAncestorRepository.backfillDepth(parentDepth));
+            total += inserted == null ? 0 : inserted;
+        }
+
+        if (total > 0) {
+            logger.info("Backfilled {} referral ancestor rows", total);
+        }
+        return total;
+    }
+}
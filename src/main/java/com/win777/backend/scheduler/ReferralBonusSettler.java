@@ -0,0 +1,121 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.ReferralBonusAccrual;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.repository.ReferralBonusAccrualRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import com.win777.backend.util.UuidV7;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scheduler that settles deferred referral bonuses.
+ * Each run turns every accrual with an unsettled amount into one REFERRAL_LEVEL_n ledger row for its
+ * referrer, all tagged with the run's settlement batch ID as reference ID, and zeroes the accrual.
+ * Accruals are locked and settled in keyset-paginated chunks, one transaction per chunk.
+ * Runs whether or not settlement is deferred, so accruals left after switching back are still paid.
+ */
+@Component
+public class ReferralBonusSettler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralBonusSettler.class);
+
+    private final ReferralBonusAccrualRepository referralBonusAccrualRepository;
+    private final WalletLedgerRepository walletLedgerRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public ReferralBonusSettler(ReferralBonusAccrualRepository referralBonusAccrualRepository,
+                                WalletLedgerRepository walletLedgerRepository,
+                                UserRepository userRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${referral.settlement.chunk-size:1000}") int chunkSize) {
+        this.referralBonusAccrualRepository = referralBonusAccrualRepository;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Settles accrued referral bonuses once per period.
+     */
+    @Scheduled(cron = "${referral.settlement.cron:0 0 * * * *}")
+    public void scheduledSettle() {
+        try {
+            settle();
+        } catch (Exception e) {
+            logger.error("Error settling referral bonuses", e);
+            // Log error but don't throw - unsettled accruals are picked up by the next run
+        }
+    }
+
+    /**
+     * Settles every accrual with an unsettled amount under a new settlement batch ID.
+     * 
+     * @return the number of ledger rows written
+     */
+    public int settle() {
+        UUID batchId = UuidV7.generate();
+        int settled = 0;
+        ReferralBonusAccrual.Key after = new ReferralBonusAccrual.Key(new UUID(0L, 0L), 0);
+
+        while (true) {
+            ReferralBonusAccrual.Key from = after;
+            List<ReferralBonusAccrual> accruals = transactionTemplate.execute(status -> settleChunk(batchId, from));
+            if (accruals == null || accruals.isEmpty()) {
+                break;
+            }
+            settled += accruals.size();
+            ReferralBonusAccrual last = accruals.get(accruals.size() - 1);
+            after = new ReferralBonusAccrual.Key(last.getReferrerId(), last.getLevel());
+            if (accruals.size() < chunkSize) {
+                break;
+            }
+        }
+
+        if (settled > 0) {
+            logger.info("Settled {} referral bonus accruals in batch {}", settled, batchId);
+        }
+        return settled;
+    }
+
+    /**
+     * Locks the next chunk of accruals, appends their ledger rows and zeroes them.
+     */
+    private List<ReferralBonusAccrual> settleChunk(UUID batchId, ReferralBonusAccrual.Key after) {
+        List<ReferralBonusAccrual> accruals = referralBonusAccrualRepository.findUnsettledAfterForUpdate(
+                after.getReferrerId(), after.getLevel(), chunkSize);
+
+        List<WalletLedger> entries = new ArrayList<>(accruals.size());
+        for (ReferralBonusAccrual accrual : accruals) {
+            WalletLedger entry = new WalletLedger();
+            entry.setUser(userRepository.getReferenceById(accrual.getReferrerId()));
+            entry.setAmount(accrual.getAmount());
+            entry.setLedgerType(LedgerType.referralLevel(accrual.getLevel()));
+            entry.setDescription("Referral bonus - Level " + accrual.getLevel() + " settlement");
+            entry.setReferenceId(batchId);
+            entries.add(entry);
+
+            // Zeroed rather than deleted, so the referrer's next bonus updates the row instead of inserting it
+            accrual.setAmount(BigDecimal.ZERO);
+        }
+        walletLedgerRepository.insertAll(entries);
+        return accruals;
+    }
+}
@@ -0,0 +1,119 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.service.SmsJobAvailabilityNotifier;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scheduler that returns abandoned SMS jobs to the pool.
+ * Jobs left CLAIMED for longer than the claim lease are reset to PENDING in
+ * keyset-paginated chunks, each in its own short transaction.
+ */
+@Component
+public class StaleClaimReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaleClaimReaper.class);
+
+    private final SMSJobRepository smsJobRepository;
+    private final SmsJobAvailabilityNotifier smsJobAvailabilityNotifier;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary reclaimedPerRun;
+
+    private final boolean enabled;
+    private final Duration claimLease;
+    private final int chunkSize;
+
+    public StaleClaimReaper(SMSJobRepository smsJobRepository,
+                            PlatformTransactionManager transactionManager,
+                            SmsJobAvailabilityNotifier smsJobAvailabilityNotifier,
+                            MeterRegistry meterRegistry,
+                            @Value("${sms.reaper.enabled:true}") boolean enabled,
+                            @Value("${sms.reaper.claim-lease:30m}") Duration claimLease,
+                            @Value("${sms.reaper.chunk-size:500}") int chunkSize) {
+        this.smsJobRepository = smsJobRepository;
+        this.smsJobAvailabilityNotifier = smsJobAvailabilityNotifier;
+        // One transaction per chunk so row locks are held only briefly
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reclaimedPerRun = DistributionSummary.builder("sms.jobs.reclaimed")
+                .description("Stale CLAIMED SMS jobs returned to the pool per reaper run")
+                .baseUnit("jobs")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.claimLease = claimLease;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Resets jobs claimed before the lease cutoff to PENDING.
+     * 
+     * @return the number of jobs returned to the pool
+     */
+    @Scheduled(fixedDelayString = "${sms.reaper.interval-ms:60000}")
+    public int reclaimStaleClaims() {
+        if (!enabled) {
+            return 0;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(claimLease);
+        int reclaimed = 0;
+        try {
+            UUID lastId = null;
+            while (true) {
+                UUID afterId = lastId;
+                Chunk chunk = transactionTemplate.execute(status -> reclaimChunk(cutoff, afterId));
+                if (chunk == null || chunk.lastId() == null) {
+                    break;
+                }
+                reclaimed += chunk.reclaimed();
+                lastId = chunk.lastId();
+            }
+        } catch (Exception e) {
+            logger.error("Error reclaiming stale SMS job claims", e);
+            // Log error but don't throw - chunks already committed stay reclaimed, the rest go next run
+        }
+
+        reclaimedPerRun.record(reclaimed);
+        if (reclaimed > 0) {
+            logger.info("Returned {} SMS jobs claimed before {} to the pool", reclaimed, cutoff);
+            smsJobAvailabilityNotifier.publish(reclaimed);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Reclaims one chunk of stale jobs after the given ID.
+     */
+    private Chunk reclaimChunk(LocalDateTime cutoff, UUID afterId) {
+        PageRequest page = PageRequest.of(0, chunkSize);
+        List<UUID> ids = afterId == null
+                ? smsJobRepository.findStaleClaimIds(cutoff, page)
+                : smsJobRepository.findStaleClaimIdsAfter(cutoff, afterId, page);
+        if (ids.isEmpty()) {
+            return new Chunk(0, null);
+        }
+        int reclaimed = smsJobRepository.reclaimStaleJobs(ids, cutoff, LocalDateTime.now());
+        return new Chunk(reclaimed, ids.get(ids.size() - 1));
+    }
+
+    /**
+     * Outcome of one chunk; a null last ID means the scan is finished.
+     */
+    private record Chunk(int reclaimed, UUID lastId) {
+    }
+}
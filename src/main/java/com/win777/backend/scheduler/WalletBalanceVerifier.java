@@ -0,0 +1,173 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.WalletBalance;
+import com.win777.backend.repository.WalletBalanceRepository;
+import com.win777.backend.service.WalletBalanceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler that checks materialized wallet balances against the ledger.
+ * Creates balance rows for users with ledger history but no row yet, then compares
+ * every row with SUM(amount) over the user's ledger in keyset-paginated chunks.
+ * Mismatches are logged and exported as the wallet.balance.mismatches gauge; they are not repaired.
+ */
+@Component
+public class WalletBalanceVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletBalanceVerifier.class);
+
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final WalletBalanceService walletBalanceService;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate snapshotTransaction;
+    private final AtomicLong lastMismatches = new AtomicLong();
+
+    private final boolean enabled;
+    private final int chunkSize;
+
+    public WalletBalanceVerifier(WalletBalanceRepository walletBalanceRepository,
+                                 WalletBalanceService walletBalanceService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${wallet.balance.verify.enabled:true}") boolean enabled,
+                                 @Value("${wallet.balance.verify.chunk-size:1000}") int chunkSize) {
+        this.walletBalanceRepository = walletBalanceRepository;
+        this.walletBalanceService = walletBalanceService;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // Balance and ledger sum must come from one snapshot, or in-flight appends show up as mismatches
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        Gauge.builder("wallet.balance.mismatches", lastMismatches, AtomicLong::get)
+                .description("Wallet balances that differed from the ledger in the last verification run")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Backfills missing balance rows and verifies all balances against the ledger.
+     * 
+     * @return the number of mismatched balances, or -1 if the run failed
+     */
+    @Scheduled(cron = "${wallet.balance.verify.cron:0 30 3 * * *}")
+    public long verifyBalances() {
+        // wallet_balances is not maintained in CHECKPOINT mode
+        if (!enabled || walletBalanceService.getMode() != WalletBalanceService.Mode.RUNNING) {
+            return 0;
+        }
+
+        try {
+            // 1. Create rows for users whose ledger predates wallet_balances
+            int backfilled = backfillMissingBalances();
+            if (backfilled > 0) {
+                logger.info("Created {} wallet balance rows from existing ledger history", backfilled);
+            }
+
+            // 2. Compare each chunk of balances with the ledger
+            long checked = 0;
+            long mismatches = 0;
+            UUID lastUserId = null;
+            while (true) {
+                UUID afterUserId = lastUserId;
+                Chunk chunk = snapshotTransaction.execute(status -> verifyChunk(afterUserId));
+                if (chunk == null || chunk.lastUserId() == null) {
+                    break;
+                }
+                checked += chunk.checked();
+                mismatches += chunk.mismatches();
+                lastUserId = chunk.lastUserId();
+            }
+
+            lastMismatches.set(mismatches);
+            if (mismatches > 0) {
+                logger.error("Wallet balance verification found {} mismatches in {} balances", mismatches, checked);
+            } else {
+                logger.info("Wallet balance verification checked {} balances, all match the ledger", checked);
+            }
+            return mismatches;
+        } catch (Exception e) {
+            logger.error("Error verifying wallet balances", e);
+            // Log error but don't throw - the next run starts over
+            return -1;
+        }
+    }
+
+    /**
+     * Creates balance rows, one chunk per transaction, for users with ledger entries but no row.
+     */
+    private int backfillMissingBalances() {
+        int created = 0;
+        while (true) {
+            Integer chunk = writeTransaction.execute(status -> {
+                List<UUID> userIds = walletBalanceRepository.findUserIdsWithoutBalance(PageRequest.of(0, chunkSize));
+                LocalDateTime now = LocalDateTime.now();
+                int inserted = 0;
+                for (UUID userId : userIds) {
+                    inserted += walletBalanceRepository.initializeFromLedger(userId, now);
+                }
+                return userIds.isEmpty() ? null : inserted;
+            });
+            if (chunk == null) {
+                return created;
+            }
+            created += chunk;
+        }
+    }
+
+    /**
+     * Verifies one chunk of balance rows after the given user ID.
+     */
+    private Chunk verifyChunk(UUID afterUserId) {
+        PageRequest page = PageRequest.of(0, chunkSize);
+        List<WalletBalance> balances = afterUserId == null
+                ? walletBalanceRepository.findFirstChunk(page)
+                : walletBalanceRepository.findChunkAfter(afterUserId, page);
+        if (balances.isEmpty()) {
+            return new Chunk(0, 0, null);
+        }
+
+        Map<UUID, BigDecimal> ledgerSums = new HashMap<>();
+        for (Object[] row : walletBalanceRepository.sumLedgerByUserIds(
+                balances.stream().map(WalletBalance::getUserId).toList())) {
+            ledgerSums.put((UUID) row[0], (BigDecimal) row[1]);
+        }
+
+        int mismatches = 0;
+        for (WalletBalance balance : balances) {
+            BigDecimal expected = ledgerSums.getOrDefault(balance.getUserId(), BigDecimal.ZERO);
+            if (balance.getBalance().compareTo(expected) != 0) {
+                mismatches++;
+                logger.warn("Wallet balance mismatch for user {}: balance {}, ledger {}",
+                        balance.getUserId(), balance.getBalance(), expected);
+            }
+        }
+        return new Chunk(balances.size(), mismatches, balances.get(balances.size() - 1).getUserId());
+    }
+
+    /**
+     * Outcome of one chunk; a null last user ID means the scan is finished.
+     */
+    private record Chunk(int checked, int mismatches, UUID lastUserId) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.WalletBalanceCheckpoint;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletBalanceCheckpointRepository;
+import com.win777.backend.service.WalletBalanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Scheduler that rolls wallet balance checkpoints forward in CHECKPOINT balance mode.
+ * Each run folds the ledger entries created before {@code now - lag} into the users'
+ * checkpoints, walking users in keyset-paginated chunks that are processed in parallel,
+ * one transaction per chunk. The lag must exceed the longest ledger-writing transaction:
+ * an entry committed after the horizon passed its created_at would never be counted.
+ */
+@Component
+public class WalletCheckpointRoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletCheckpointRoller.class);
+
+    private final UserRepository userRepository;
+    private final WalletBalanceCheckpointRepository walletBalanceCheckpointRepository;
+    private final WalletBalanceService walletBalanceService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration lag;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public WalletCheckpointRoller(UserRepository userRepository,
+                                  WalletBalanceCheckpointRepository walletBalanceCheckpointRepository,
+                                  WalletBalanceService walletBalanceService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${wallet.balance.checkpoint.lag:5m}") Duration lag,
+                                  @Value("${wallet.balance.checkpoint.chunk-size:1000}") int chunkSize,
+                                  @Value("${wallet.balance.checkpoint.parallelism:4}") int parallelism) {
+        this.userRepository = userRepository;
+        this.walletBalanceCheckpointRepository = walletBalanceCheckpointRepository;
+        this.walletBalanceService = walletBalanceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lag = lag;
+        this.chunkSize = chunkSize;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Rolls every user's checkpoint forward to {@code now - lag}.
+     * 
+     * @return the number of checkpoints created or advanced
+     */
+    @Scheduled(fixedDelayString = "${wallet.balance.checkpoint.interval-ms:300000}")
+    public int rollCheckpoints() {
+        if (walletBalanceService.getMode() != WalletBalanceService.Mode.CHECKPOINT) {
+            return 0;
+        }
+
+        // Truncated to the database's timestamp precision so the stored horizon compares equal later
+        LocalDateTime horizon = LocalDateTime.now().minus(lag).truncatedTo(ChronoUnit.MICROS);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        // Bounds the chunks read ahead of the workers
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+        try {
+            // 1. Walk user IDs and hand each chunk to a worker
+            UUID lastId = null;
+            while (true) {
+                List<UUID> userIds = lastId == null
+                        ? userRepository.findIdsOrderById(PageRequest.of(0, chunkSize))
+                        : userRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                lastId = userIds.get(userIds.size() - 1);
+
+                inFlight.acquire();
+                chunks.add(CompletableFuture
+                        .supplyAsync(() -> transactionTemplate.execute(status -> rollChunk(userIds, horizon)), executor)
+                        .whenComplete((rolled, error) -> inFlight.release()));
+            }
+
+            // 2. Wait for the workers; a failed chunk is retried by the next run
+            int rolled = 0;
+            for (CompletableFuture<Integer> chunk : chunks) {
+                try {
+                    Integer count = chunk.join();
+                    rolled += count == null ? 0 : count;
+                } catch (Exception e) {
+                    logger.error("Error rolling a chunk of wallet balance checkpoints", e);
+                }
+            }
+            logger.info("Rolled {} wallet balance checkpoints forward to {}", rolled, horizon);
+            return rolled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            logger.error("Error rolling wallet balance checkpoints", e);
+            // Log error but don't throw - chunks already committed stay rolled
+            return 0;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Folds the entries before the horizon into the checkpoints of one chunk of users.
+     * Every write is conditional, so a chunk rolled concurrently by another node is counted once.
+     */
+    private int rollChunk(List<UUID> userIds, LocalDateTime horizon) {
+        Map<UUID, LocalDateTime> coveredUntil = new HashMap<>();
+        for (WalletBalanceCheckpoint checkpoint : walletBalanceCheckpointRepository.findByUserIds(userIds)) {
+            coveredUntil.put(checkpoint.getUserId(), checkpoint.getCoveredUntil());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int rolled = 0;
+        // Users without new entries keep their checkpoint; reading from it scans no extra rows
+        for (Object[] row : walletBalanceCheckpointRepository.sumLedgerBeforeHorizon(userIds, horizon)) {
+            UUID userId = (UUID) row[0];
+            BigDecimal delta = (BigDecimal) row[1];
+            LocalDateTime covered = coveredUntil.get(userId);
+            if (covered == null) {
+                rolled += walletBalanceCheckpointRepository.insertIfAbsent(userId, delta, horizon, now);
+            } else if (covered.isBefore(horizon)) {
+                rolled += walletBalanceCheckpointRepository.advance(userId, delta, covered, horizon, now);
+            }
+        }
+        return rolled;
+    }
+}
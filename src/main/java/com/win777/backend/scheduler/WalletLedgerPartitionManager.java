@@ -0,0 +1,163 @@
+package com.win777.backend.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scheduler that maintains the monthly range partitions of wallet_ledger on PostgreSQL.
+ * Creates partitions for the coming months ahead of time and, when a retention period is set,
+ * detaches partitions older than it and moves them to an archive schema. Nothing is dropped.
+ * The table must first be converted with db/partitioning/wallet_ledger_partitioned.sql;
+ * on an unpartitioned table this component does nothing.
+ */
+@Component
+public class WalletLedgerPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletLedgerPartitionManager.class);
+
+    private static final String PARENT_TABLE = "wallet_ledger";
+    private static final Pattern PARTITION_NAME = Pattern.compile("wallet_ledger_y(\\d{4})m(\\d{2})");
+
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('" + PARENT_TABLE + "'))";
+
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass('" + PARENT_TABLE + "')";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final String archiveSchema;
+
+    public WalletLedgerPartitionManager(JdbcTemplate jdbcTemplate,
+                                        @Value("${wallet.ledger.partitioning.enabled:false}") boolean enabled,
+                                        @Value("${wallet.ledger.partitioning.months-ahead:3}") int monthsAhead,
+                                        @Value("${wallet.ledger.partitioning.retention-months:0}") int retentionMonths,
+                                        @Value("${wallet.ledger.partitioning.archive-schema:ledger_archive}") String archiveSchema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        if (!archiveSchema.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid archive schema name: " + archiveSchema);
+        }
+        this.archiveSchema = archiveSchema;
+    }
+
+    /**
+     * Makes sure the current and coming months have partitions as soon as the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    /**
+     * Creates missing future partitions and archives expired ones.
+     * 
+     * @return the number of partitions created or detached
+     */
+    @Scheduled(cron = "${wallet.ledger.partitioning.cron:0 15 2 * * *}")
+    public int maintainPartitions() {
+        if (!enabled) {
+            return 0;
+        }
+
+        try {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class))) {
+                logger.warn("wallet_ledger partitioning is enabled but the table is not partitioned; skipping");
+                return 0;
+            }
+            YearMonth current = YearMonth.now();
+
+            // 1. Create this month and the coming months
+            int changed = 0;
+            for (YearMonth month : plannedMonths(current)) {
+                jdbcTemplate.execute(createPartitionSql(month));
+                changed++;
+            }
+
+            // 2. Detach and archive partitions past retention
+            List<String> existing = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class);
+            List<String> expired = expiredPartitions(existing, current);
+            if (!expired.isEmpty()) {
+                jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + archiveSchema);
+            }
+            for (String partition : expired) {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("ALTER TABLE " + partition + " SET SCHEMA " + archiveSchema);
+                logger.info("Detached wallet_ledger partition {} into schema {}", partition, archiveSchema);
+                changed++;
+            }
+            return changed;
+        } catch (Exception e) {
+            logger.error("Error maintaining wallet_ledger partitions", e);
+            // Log error but don't throw - the daily run retries, and the default partition catches stray rows
+            return 0;
+        }
+    }
+
+    /**
+     * Months that must have a partition: the current one and {@code monthsAhead} after it.
+     */
+    List<YearMonth> plannedMonths(YearMonth current) {
+        List<YearMonth> months = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        return months;
+    }
+
+    /**
+     * Partitions whose whole month lies before the retention cutoff; none if retention is off.
+     */
+    List<String> expiredPartitions(List<String> partitions, YearMonth current) {
+        if (retentionMonths <= 0) {
+            return List.of();
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        return partitions.stream()
+                .filter(name -> monthOf(name).map(month -> month.isBefore(oldestKept)).orElse(false))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * DDL creating the partition for one month, if it does not exist yet.
+     */
+    static String createPartitionSql(YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + PARENT_TABLE +
+                " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    static String partitionName(YearMonth month) {
+        return String.format("%s_y%04dm%02d", PARENT_TABLE, month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Month covered by a partition following the naming scheme; empty for the default partition.
+     */
+    private static Optional<YearMonth> monthOf(String partition) {
+        Matcher matcher = PARTITION_NAME.matcher(partition);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+    }
+}
@@ -0,0 +1,401 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.ReconciliationDiscrepancy;
+import com.win777.backend.dto.ReconciliationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service for bulk reconciliation of the wallet ledger against SMS jobs, withdrawals and balances.
+ * Splits the user-ID space into equal UUID ranges and reconciles them on a fork-join pool.
+ * Each range streams its ledger rows, COMPLETED jobs, withdrawals and balance rows through
+ * forward-only cursors inside one read-only snapshot, so concurrent writes never show up as discrepancies.
+ * Discrepancies are reported, not repaired.
+ */
+@Service
+public class LedgerReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerReconciliationService.class);
+
+    private static final BigInteger UUID_HIGH_BITS_SPAN = BigInteger.ONE.shiftLeft(64);
+
+    private static final String LEDGER_SQL =
+            "SELECT user_id, ledger_type, amount, reference_id FROM wallet_ledger WHERE user_id >= ?";
+    private static final String COMPLETED_JOBS_SQL =
+            "SELECT id, user_id FROM sms_jobs WHERE status = 'COMPLETED' AND user_id >= ?";
+    private static final String WITHDRAWALS_SQL =
+            "SELECT id, user_id, amount FROM withdrawals WHERE user_id >= ?";
+    private static final String BALANCES_SQL =
+            "SELECT user_id, balance FROM wallet_balances WHERE user_id >= ?";
+
+    /**
+     * Kinds of disagreement between the ledger and the tables it should mirror.
+     */
+    public enum DiscrepancyType {
+        /** COMPLETED job with no EARNINGS row for its user */
+        MISSING_EARNING,
+        /** More than one EARNINGS row for the same job */
+        DUPLICATE_EARNING,
+        /** EARNINGS row without a COMPLETED job of the same user */
+        ORPHAN_EARNING,
+        /** Withdrawal with no WITHDRAWAL row for its user */
+        MISSING_DEBIT,
+        /** More than one WITHDRAWAL row for the same withdrawal */
+        DUPLICATE_DEBIT,
+        /** WITHDRAWAL row whose amount is not the negated withdrawal amount */
+        DEBIT_AMOUNT_MISMATCH,
+        /** WITHDRAWAL row without a withdrawal of the same user */
+        ORPHAN_DEBIT,
+        /** Materialized balance that differs from SUM(amount) over the user's ledger */
+        BALANCE_MISMATCH
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletBalanceService walletBalanceService;
+    private final TransactionTemplate snapshotTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final boolean scheduledEnabled;
+    private final int ranges;
+    private final int parallelism;
+    private final int fetchSize;
+    private final int maxSamples;
+
+    public LedgerReconciliationService(JdbcTemplate jdbcTemplate,
+                                       WalletBalanceService walletBalanceService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${wallet.reconciliation.enabled:false}") boolean scheduledEnabled,
+                                       @Value("${wallet.reconciliation.ranges:256}") int ranges,
+                                       @Value("${wallet.reconciliation.parallelism:4}") int parallelism,
+                                       @Value("${wallet.reconciliation.fetch-size:1000}") int fetchSize,
+                                       @Value("${wallet.reconciliation.max-samples:100}") int maxSamples) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.walletBalanceService = walletBalanceService;
+        // All reads of a range must come from one snapshot; PostgreSQL also needs autocommit off to honour the fetch size
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.scheduledEnabled = scheduledEnabled;
+        this.ranges = Math.max(ranges, 1);
+        this.parallelism = Math.max(parallelism, 1);
+        this.fetchSize = fetchSize;
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Reconciles the whole ledger.
+     *
+     * @return the report with discrepancy counts, samples and throughput
+     * @throws IllegalStateException if a reconciliation is already running
+     */
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ledger reconciliation is already running");
+        }
+        try {
+            long startNanos = System.nanoTime();
+            // 1. Balances are only materialized in RUNNING mode
+            boolean checkBalances = walletBalanceService.getMode() == WalletBalanceService.Mode.RUNNING;
+
+            // 2. Reconcile all ranges; the pool never grows past parallelism, which bounds the connections held
+            ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                    null, false, 0, parallelism, 1, saturated -> true, 60, TimeUnit.SECONDS);
+            RangeResult result;
+            try {
+                result = pool.invoke(new RangeTask(0, ranges, checkBalances));
+            } finally {
+                pool.shutdown();
+            }
+
+            // 3. Build the report
+            long elapsedNanos = System.nanoTime() - startNanos;
+            ReconciliationReport report = result.toReport();
+            report.setRanges(ranges);
+            report.setParallelism(parallelism);
+            report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            report.setRowsPerSecond(Math.round(report.getLedgerRowsScanned() / Math.max(elapsedNanos / 1_000_000_000.0, 1e-9)));
+
+            if (report.getTotalDiscrepancies() > 0) {
+                logger.error("Ledger reconciliation found {} discrepancies {} in {} ledger rows ({} ms, {} rows/sec)",
+                        report.getTotalDiscrepancies(), report.getDiscrepancyCounts(), report.getLedgerRowsScanned(),
+                        report.getElapsedMillis(), report.getRowsPerSecond());
+            } else {
+                logger.info("Ledger reconciliation checked {} ledger rows, {} jobs and {} withdrawals, no discrepancies ({} ms, {} rows/sec)",
+                        report.getLedgerRowsScanned(), report.getJobsScanned(), report.getWithdrawalsScanned(),
+                        report.getElapsedMillis(), report.getRowsPerSecond());
+            }
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Scheduled reconciliation run.
+     */
+    @Scheduled(cron = "${wallet.reconciliation.cron:0 0 4 * * SUN}")
+    public void scheduledReconcile() {
+        if (!scheduledEnabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Error reconciling wallet ledger", e);
+            // Log error but don't throw - the next run starts over
+        }
+    }
+
+    /**
+     * Lower bound of a user-ID range: the range's share of the 64 high bits, low bits zero.
+     * UUIDs compare as unsigned bytes in PostgreSQL, so the ranges tile the ID space in order.
+     */
+    static UUID rangeStart(int index, int ranges) {
+        long high = UUID_HIGH_BITS_SPAN.multiply(BigInteger.valueOf(index))
+                .divide(BigInteger.valueOf(ranges))
+                .longValue();
+        return new UUID(high, 0L);
+    }
+
+    /**
+     * Reconciles one user-ID range inside a snapshot transaction.
+     */
+    private RangeResult reconcileRange(int index, boolean checkBalances) {
+        UUID from = rangeStart(index, ranges);
+        UUID to = index + 1 < ranges ? rangeStart(index + 1, ranges) : null;
+        return snapshotTransaction.execute(status -> {
+            RangeResult result = new RangeResult(maxSamples);
+            Map<UUID, LedgerReference> earnings = new HashMap<>();
+            Map<UUID, LedgerReference> debits = new HashMap<>();
+            Map<UUID, BigDecimal> ledgerSums = new HashMap<>();
+
+            // 1. Stream the range's ledger, indexing EARNINGS by job and WITHDRAWAL by withdrawal
+            stream(LEDGER_SQL, from, to, rs -> {
+                result.ledgerRows++;
+                UUID userId = rs.getObject("user_id", UUID.class);
+                BigDecimal amount = rs.getBigDecimal("amount");
+                UUID referenceId = rs.getObject("reference_id", UUID.class);
+                if (checkBalances) {
+                    ledgerSums.merge(userId, amount, BigDecimal::add);
+                }
+                String ledgerType = rs.getString("ledger_type");
+                if ("EARNINGS".equals(ledgerType)) {
+                    index(earnings, referenceId, userId, amount, DiscrepancyType.ORPHAN_EARNING, result);
+                } else if ("WITHDRAWAL".equals(ledgerType)) {
+                    index(debits, referenceId, userId, amount, DiscrepancyType.ORPHAN_DEBIT, result);
+                }
+            });
+
+            // 2. Every COMPLETED job needs exactly one EARNINGS row for its user
+            stream(COMPLETED_JOBS_SQL, from, to, rs -> {
+                result.jobs++;
+                UUID jobId = rs.getObject("id", UUID.class);
+                UUID userId = rs.getObject("user_id", UUID.class);
+                LedgerReference earning = earnings.remove(jobId);
+                if (earning == null) {
+                    result.record(DiscrepancyType.MISSING_EARNING, userId, jobId, "No EARNINGS entry");
+                } else if (!earning.userId.equals(userId)) {
+                    result.record(DiscrepancyType.MISSING_EARNING, userId, jobId, "No EARNINGS entry for the completing user");
+                    result.record(DiscrepancyType.ORPHAN_EARNING, earning.userId, jobId, "Job was completed by user " + userId);
+                } else if (earning.count > 1) {
+                    result.record(DiscrepancyType.DUPLICATE_EARNING, userId, jobId, earning.count + " EARNINGS entries");
+                }
+            });
+            earnings.forEach((jobId, earning) -> result.record(DiscrepancyType.ORPHAN_EARNING, earning.userId, jobId,
+                    "No COMPLETED job of this user"));
+
+            // 3. Every withdrawal needs exactly one WITHDRAWAL row debiting its amount
+            stream(WITHDRAWALS_SQL, from, to, rs -> {
+                result.withdrawals++;
+                UUID withdrawalId = rs.getObject("id", UUID.class);
+                UUID userId = rs.getObject("user_id", UUID.class);
+                BigDecimal amount = rs.getBigDecimal("amount");
+                LedgerReference debit = debits.remove(withdrawalId);
+                if (debit == null) {
+                    result.record(DiscrepancyType.MISSING_DEBIT, userId, withdrawalId, "No WITHDRAWAL entry");
+                } else if (!debit.userId.equals(userId)) {
+                    result.record(DiscrepancyType.MISSING_DEBIT, userId, withdrawalId, "No WITHDRAWAL entry for the withdrawing user");
+                    result.record(DiscrepancyType.ORPHAN_DEBIT, debit.userId, withdrawalId, "Withdrawal belongs to user " + userId);
+                } else if (debit.count > 1) {
+                    result.record(DiscrepancyType.DUPLICATE_DEBIT, userId, withdrawalId, debit.count + " WITHDRAWAL entries");
+                } else if (debit.amount.compareTo(amount.negate()) != 0) {
+                    result.record(DiscrepancyType.DEBIT_AMOUNT_MISMATCH, userId, withdrawalId,
+                            "Debited " + debit.amount + " for a withdrawal of " + amount);
+                }
+            });
+            debits.forEach((withdrawalId, debit) -> result.record(DiscrepancyType.ORPHAN_DEBIT, debit.userId, withdrawalId,
+                    "No withdrawal of this user"));
+
+            // 4. Materialized balances must equal the ledger sum
+            if (checkBalances) {
+                stream(BALANCES_SQL, from, to, rs -> {
+                    UUID userId = rs.getObject("user_id", UUID.class);
+                    BigDecimal balance = rs.getBigDecimal("balance");
+                    BigDecimal expected = ledgerSums.getOrDefault(userId, BigDecimal.ZERO);
+                    if (balance.compareTo(expected) != 0) {
+                        result.record(DiscrepancyType.BALANCE_MISMATCH, userId, null,
+                                "Balance " + balance + ", ledger " + expected);
+                    }
+                });
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Indexes a ledger row by its reference; rows without one are orphans.
+     */
+    private static void index(Map<UUID, LedgerReference> references, UUID referenceId, UUID userId, BigDecimal amount,
+                              DiscrepancyType orphanType, RangeResult result) {
+        if (referenceId == null) {
+            result.record(orphanType, userId, null, "Entry has no reference");
+            return;
+        }
+        LedgerReference reference = references.get(referenceId);
+        if (reference == null) {
+            references.put(referenceId, new LedgerReference(userId, amount));
+        } else {
+            reference.count++;
+            reference.amount = reference.amount.add(amount);
+        }
+    }
+
+    /**
+     * Streams rows with user_id in [from, to) through a forward-only cursor; a null upper bound is open.
+     */
+    private void stream(String sql, UUID from, UUID to, RowCallbackHandler handler) {
+        String bounded = to == null ? sql : sql + " AND user_id < ?";
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement ps = connection.prepareStatement(bounded,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, from);
+            if (to != null) {
+                ps.setObject(2, to);
+            }
+            return ps;
+        };
+        jdbcTemplate.query(statement, handler);
+    }
+
+    /**
+     * Splits a run of ranges in half until a single range is left, then reconciles it.
+     */
+    private final class RangeTask extends RecursiveTask<RangeResult> {
+
+        private final int fromIndex;
+        private final int toIndex;
+        private final boolean checkBalances;
+
+        RangeTask(int fromIndex, int toIndex, boolean checkBalances) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.checkBalances = checkBalances;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            if (toIndex - fromIndex == 1) {
+                return reconcileRange(fromIndex, checkBalances);
+            }
+            int mid = (fromIndex + toIndex) >>> 1;
+            RangeTask left = new RangeTask(fromIndex, mid, checkBalances);
+            left.fork();
+            RangeResult right = new RangeTask(mid, toIndex, checkBalances).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Ledger rows of one range sharing a reference ID.
+     */
+    private static final class LedgerReference {
+
+        private final UUID userId;
+        private BigDecimal amount;
+        private int count = 1;
+
+        LedgerReference(UUID userId, BigDecimal amount) {
+            this.userId = userId;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Counts and capped samples for one or more ranges.
+     */
+    private static final class RangeResult {
+
+        private final int maxSamples;
+        private final Map<DiscrepancyType, Long> counts = new EnumMap<>(DiscrepancyType.class);
+        private final List<ReconciliationDiscrepancy> samples = new ArrayList<>();
+        private long ledgerRows;
+        private long jobs;
+        private long withdrawals;
+
+        RangeResult(int maxSamples) {
+            this.maxSamples = maxSamples;
+        }
+
+        void record(DiscrepancyType type, UUID userId, UUID referenceId, String detail) {
+            counts.merge(type, 1L, Long::sum);
+            if (samples.size() < maxSamples) {
+                samples.add(new ReconciliationDiscrepancy(type.name(), userId, referenceId, detail));
+            }
+        }
+
+        RangeResult merge(RangeResult other) {
+            other.counts.forEach((type, count) -> counts.merge(type, count, Long::sum));
+            for (ReconciliationDiscrepancy sample : other.samples) {
+                if (samples.size() >= maxSamples) {
+                    break;
+                }
+                samples.add(sample);
+            }
+            ledgerRows += other.ledgerRows;
+            jobs += other.jobs;
+            withdrawals += other.withdrawals;
+            return this;
+        }
+
+        ReconciliationReport toReport() {
+            Map<String, Long> discrepancyCounts = new LinkedHashMap<>();
+            counts.forEach((type, count) -> discrepancyCounts.put(type.name(), count));
+
+            ReconciliationReport report = new ReconciliationReport();
+            report.setLedgerRowsScanned(ledgerRows);
+            report.setJobsScanned(jobs);
+            report.setWithdrawalsScanned(withdrawals);
+            report.setTotalDiscrepancies(counts.values().stream().mapToLong(Long::longValue).sum());
+            report.setDiscrepancyCounts(discrepancyCounts);
+            report.setSamples(samples);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.DownlineLevelDto;
+import com.win777.backend.entity.ReferralDownlineStats;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.event.UserRegisteredEvent;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.repository.ReferralDownlineStatsRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Service class for referral downline statistics.
+ * Keeps per-level member counts and referral earnings current as users register and
+ * bonuses reach the ledger, so a user's downline is read without scanning the referral tree.
+ */
+@Service
+public class ReferralDownlineService {
+
+    private final ReferralDownlineStatsRepository referralDownlineStatsRepository;
+
+    public ReferralDownlineService(ReferralDownlineStatsRepository referralDownlineStatsRepository) {
+        this.referralDownlineStatsRepository = referralDownlineStatsRepository;
+    }
+
+    /**
+     * Gets a user's downline: members and referral earnings per level.
+     * 
+     * @param userId the user ID
+     * @return the levels the user has a downline or earnings at, nearest first
+     */
+    @Transactional(readOnly = true)
+    public List<DownlineLevelDto> getDownline(UUID userId) {
+        return referralDownlineStatsRepository.findLevelsByUserId(userId);
+    }
+
+    /**
+     * Counts a new user in each ancestor's downline.
+     * Runs synchronously in the registration transaction, after the user's referral_ancestors rows are written.
+     * 
+     * @param event the registration
+     */
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        if (event.referrerId() == null) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // 1. Make sure every ancestor has a row at this depth
+        referralDownlineStatsRepository.insertMissingForDescendant(event.userId(), now);
+
+        // 2. Lock them in key order, the order earnings updates use, then count the new member
+        referralDownlineStatsRepository.lockForDescendant(event.userId());
+        referralDownlineStatsRepository.addMemberForDescendant(event.userId(), now);
+    }
+
+    /**
+     * Adds appended referral bonuses to their recipients' per-level earnings.
+     * Runs synchronously in the appending transaction, so the earnings commit or roll back with the ledger.
+     * 
+     * @param event the ledger append
+     */
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onLedgerAppended(WalletLedgerAppendedEvent event) {
+        // 1. Net the bonuses per recipient and level; key order keeps row locks deadlock-free across writers
+        SortedMap<ReferralDownlineStats.Key, BigDecimal> earnings = new TreeMap<>();
+        for (WalletLedger entry : event.entries()) {
+            int level = entry.getLedgerType().getReferralLevel();
+            if (level > 0) {
+                earnings.merge(new ReferralDownlineStats.Key(entry.getUser().getId(), level), entry.getAmount(), BigDecimal::add);
+            }
+        }
+
+        // 2. Add them in one batch
+        if (!earnings.isEmpty()) {
+            referralDownlineStatsRepository.addEarningsAll(earnings);
+        }
+    }
+}
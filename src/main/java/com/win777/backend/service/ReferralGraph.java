@@ -0,0 +1,301 @@
+package com.win777.backend.service;
+
+import com.win777.backend.event.UserRegisteredEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process copy of the referral tree, so completions resolve referrer chains without querying.
+ * User IDs are interned to dense ints; each user's referrer is an int in a parallel array, and an
+ * open-addressing table maps UUIDs to their ints. Around 29 MB of heap per million users
+ * (16 bytes of UUID, 4 of parent pointer and 8 of hash slots each, with power-of-two headroom).
+ * Loaded at startup by streaming users.referrer_id and extended as users register.
+ * A user this instance has not seen, e.g. one registered on another instance, resolves to empty
+ * so callers fall back to referral_ancestors; what they read there can be added back with {@link #addChain}.
+ */
+@Component
+public class ReferralGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralGraph.class);
+
+    private static final String USERS_SQL = "SELECT id, referrer_id FROM users";
+
+    // Parent pointer values besides a user's index
+    private static final int NO_REFERRER = -1;
+    private static final int UNKNOWN_REFERRER = -2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final int fetchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // Index -> UUID halves and referrer index; guarded by lock
+    private long[] mostSigBits = new long[INITIAL_CAPACITY];
+    private long[] leastSigBits = new long[INITIAL_CAPACITY];
+    private int[] referrers = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Index + 1 per slot, 0 when empty; kept at most half full
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    public ReferralGraph(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${referral.graph.enabled:true}") boolean enabled,
+                         @Value("${referral.graph.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        // Read-only transaction so PostgreSQL honours the fetch size with a cursor
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+        Arrays.fill(referrers, UNKNOWN_REFERRER);
+    }
+
+    /**
+     * Loads the graph once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            load();
+        } catch (Exception e) {
+            logger.error("Error loading referral graph", e);
+            // Log error but don't throw - completions keep reading referral_ancestors
+        }
+    }
+
+    /**
+     * Streams every user's referrer into the graph, then starts serving lookups.
+     * Registrations during the load are applied as they commit; parents never change, so order does not matter.
+     */
+    public void load() {
+        long start = System.nanoTime();
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement ps = connection.prepareStatement(USERS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        };
+        readTransaction.executeWithoutResult(status -> jdbcTemplate.query(statement, rs -> {
+            add(rs.getObject("id", UUID.class), rs.getObject("referrer_id", UUID.class));
+        }));
+        ready = true;
+
+        logger.info("Loaded referral graph: {} users, {} bytes, {} ms",
+                size(), footprintBytes(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds a registered user once the registration has committed.
+     * 
+     * @param event the registration
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        add(event.userId(), event.referrerId());
+    }
+
+    /**
+     * Whether the graph has been loaded and answers lookups.
+     * 
+     * @return true once loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds a user's referrers, nearest first, without querying.
+     * 
+     * @param userId the user ID
+     * @param maxDepth the deepest level to return
+     * @return the ancestor user IDs, or empty if the graph is not loaded or does not know the chain that deep
+     */
+    public Optional<List<UUID>> findAncestors(UUID userId, int maxDepth) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int current = indexOf(userId);
+            if (current < 0) {
+                return Optional.empty();
+            }
+            List<UUID> ancestors = new ArrayList<>(maxDepth);
+            while (ancestors.size() < maxDepth) {
+                int referrer = referrers[current];
+                if (referrer == NO_REFERRER) {
+                    break;
+                }
+                if (referrer == UNKNOWN_REFERRER) {
+                    return Optional.empty();
+                }
+                ancestors.add(new UUID(mostSigBits[referrer], leastSigBits[referrer]));
+                current = referrer;
+            }
+            return Optional.of(ancestors);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records a user's referrer; null marks a user who was not referred. Ignored when the graph is disabled.
+     * 
+     * @param userId the user ID
+     * @param referrerId the referrer's ID, or null
+     */
+    public void add(UUID userId, UUID referrerId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int user = intern(userId);
+            referrers[user] = referrerId == null ? NO_REFERRER : intern(referrerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records a chain read from referral_ancestors: each ancestor is the referrer of the one before it.
+     * The last ancestor's own referrer stays unknown.
+     * 
+     * @param userId the user ID
+     * @param ancestorIds the user's ancestors, nearest first
+     */
+    public void addChain(UUID userId, List<UUID> ancestorIds) {
+        UUID descendant = userId;
+        for (UUID ancestorId : ancestorIds) {
+            add(descendant, ancestorId);
+            descendant = ancestorId;
+        }
+    }
+
+    /**
+     * Gets the number of users in the graph, including referrers whose own row has not been read yet.
+     * 
+     * @return the user count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the heap held by the graph's arrays.
+     * 
+     * @return the allocated bytes, excluding array headers
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) mostSigBits.length * Long.BYTES * 2
+                    + (long) referrers.length * Integer.BYTES
+                    + (long) slots.length * Integer.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a user's index, or -1 if the user is not in the graph. Caller holds the lock.
+     */
+    private int indexOf(UUID userId) {
+        long msb = userId.getMostSignificantBits();
+        long lsb = userId.getLeastSignificantBits();
+        int mask = slots.length - 1;
+        for (int slot = hash(msb, lsb) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (mostSigBits[index] == msb && leastSigBits[index] == lsb) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a user's index, adding the user with an unknown referrer if absent. Caller holds the write lock.
+     */
+    private int intern(UUID userId) {
+        int existing = indexOf(userId);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        if (size == mostSigBits.length) {
+            int capacity = size * 2;
+            mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+            leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+            referrers = Arrays.copyOf(referrers, capacity);
+            Arrays.fill(referrers, size, capacity, UNKNOWN_REFERRER);
+        }
+        int index = size++;
+        mostSigBits[index] = userId.getMostSignificantBits();
+        leastSigBits[index] = userId.getLeastSignificantBits();
+
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            place(index);
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int index = 0; index < size; index++) {
+            place(index);
+        }
+    }
+
+    private void place(int index) {
+        int mask = slots.length - 1;
+        int slot = hash(mostSigBits[index], leastSigBits[index]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // Murmur3 finalizer; random UUID bits are already well mixed, this guards against patterned IDs
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -1,15 +1,27 @@
 package com.win777.backend.service;
 
+import com.win777.backend.entity.ReferralAncestor;
+import com.win777.backend.entity.ReferralBonusAccrual;
+import com.win777.backend.entity.ReferralRewardLevel;
 import com.win777.backend.entity.SMSJob;
 import com.win777.backend.entity.SMSRateConfig;
 import com.win777.backend.entity.User;
 import com.win777.backend.entity.WalletLedger;
 import com.win777.backend.enums.LedgerType;
 import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.ReferralAncestorRepository;
+import com.win777.backend.repository.ReferralBonusAccrualRepository;
+import com.win777.backend.repository.ReferralRewardLevelRepository;
 import com.win777.backend.repository.SMSJobRepository;
 import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserDailyEarningsRepository;
 import com.win777.backend.repository.UserRepository;
 import com.win777.backend.repository.WalletLedgerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,7 +29,17 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -27,24 +49,60 @@ import java.util.UUID;
 @Service
 public class SMSJobService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SMSJobService.class);
+
     private final SMSJobRepository smsJobRepository;
     private final UserRepository userRepository;
     private final WalletLedgerRepository walletLedgerRepository;
     private final SMSRateConfigRepository smsRateConfigRepository;
+    private final SmsJobDispatcher smsJobDispatcher;
+    private final SmsJobPartitioner smsJobPartitioner;
+    private final UserDailyEarningsRepository userDailyEarningsRepository;
+    private final ReferralAncestorRepository referralAncestorRepository;
+    private final ReferralRewardLevelRepository referralRewardLevelRepository;
+    private final ReferralGraph referralGraph;
+    private final ReferralBonusAccrualRepository referralBonusAccrualRepository;
+
+    // Referral reward percentages used while referral_reward_levels is empty
+    private static final List<BigDecimal> DEFAULT_REWARD_PERCENTAGES = List.of(
+            new BigDecimal("0.10"), // Level 1: 10%
+            new BigDecimal("0.02"), // Level 2: 2%
+            new BigDecimal("0.01")  // Level 3: 1%
+    );
+
+    // Validated reward percentages from referral_reward_levels; null until the first successful load
+    private volatile List<BigDecimal> rewardPercentages;
+
+    // Claim with FOR UPDATE SKIP LOCKED so concurrent claimers don't queue on the oldest row
+    @Value("${sms.claim.skip-locked:true}")
+    private boolean skipLockedClaim = true;
 
-    // Referral reward percentages
-    private static final BigDecimal LEVEL_1_PERCENTAGE = new BigDecimal("0.10"); // 10%
-    private static final BigDecimal LEVEL_2_PERCENTAGE = new BigDecimal("0.02"); // 2%
-    private static final BigDecimal LEVEL_3_PERCENTAGE = new BigDecimal("0.01"); // 1%
+    // Accrue referral bonuses for ReferralBonusSettler instead of appending a ledger row per bonus
+    @Value("${referral.settlement.deferred:false}")
+    private boolean deferReferralSettlement = false;
 
     public SMSJobService(SMSJobRepository smsJobRepository,
                          UserRepository userRepository,
                          WalletLedgerRepository walletLedgerRepository,
-                         SMSRateConfigRepository smsRateConfigRepository) {
+                         SMSRateConfigRepository smsRateConfigRepository,
+                         SmsJobDispatcher smsJobDispatcher,
+                         SmsJobPartitioner smsJobPartitioner,
+                         UserDailyEarningsRepository userDailyEarningsRepository,
+                         ReferralAncestorRepository referralAncestorRepository,
+                         ReferralRewardLevelRepository referralRewardLevelRepository,
+                         ReferralGraph referralGraph,
+                         ReferralBonusAccrualRepository referralBonusAccrualRepository) {
         this.smsJobRepository = smsJobRepository;
         this.userRepository = userRepository;
         this.walletLedgerRepository = walletLedgerRepository;
         this.smsRateConfigRepository = smsRateConfigRepository;
+        this.smsJobDispatcher = smsJobDispatcher;
+        this.smsJobPartitioner = smsJobPartitioner;
+        this.userDailyEarningsRepository = userDailyEarningsRepository;
+        this.referralAncestorRepository = referralAncestorRepository;
+        this.referralRewardLevelRepository = referralRewardLevelRepository;
+        this.referralGraph = referralGraph;
+        this.referralBonusAccrualRepository = referralBonusAccrualRepository;
     }
 
     /**
@@ -58,14 +116,45 @@ public class SMSJobService {
      */
     @Transactional
     public SMSJob claimSmsJob(UUID userId) {
+        return tryClaimSmsJob(userId)
+                .orElseThrow(() -> new IllegalStateException("No pending SMS jobs available"));
+    }
+
+    /**
+     * Claims the next available SMS job for a user if there is one.
+     * When skip-locked claiming is enabled, rows locked by concurrent claimers are skipped.
+     * When the queue is partitioned, the user's home partition is tried first, then the others.
+     * When the dispatch buffer is enabled, the job is served from memory if one is buffered.
+     * 
+     * @param userId the ID of the user claiming the job
+     * @return the claimed job, or empty if no pending jobs are available
+     * @throws IllegalArgumentException if user not found
+     */
+    @Transactional
+    public Optional<SMSJob> tryClaimSmsJob(UUID userId) {
         // Fetch user
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
 
+        // Serve from the dispatch buffer when enabled; fall back to the table if it is drained
+        if (smsJobDispatcher.isEnabled()) {
+            Optional<SMSJob> dispatched = smsJobDispatcher.claim(user);
+            if (dispatched.isPresent()) {
+                return dispatched;
+            }
+        }
+
         // Find the first pending job with lock
-        Optional<SMSJob> pendingJob = smsJobRepository.findFirstPendingJobForUpdate();
+        Optional<SMSJob> pendingJob;
+        if (!skipLockedClaim) {
+            pendingJob = smsJobRepository.findFirstPendingJobForUpdate();
+        } else if (smsJobPartitioner.isPartitioned()) {
+            pendingJob = findPartitionedPendingJobs(userId, 1).stream().findFirst();
+        } else {
+            pendingJob = smsJobRepository.findFirstPendingJobSkipLocked();
+        }
         if (pendingJob.isEmpty()) {
-            throw new IllegalStateException("No pending SMS jobs available");
+            return Optional.empty();
         }
 
         SMSJob smsJob = pendingJob.get();
@@ -75,24 +164,99 @@ public class SMSJobService {
         smsJob.setStatus(SMSJobStatus.CLAIMED);
         smsJob.setClaimedAt(LocalDateTime.now());
         
-        return smsJobRepository.save(smsJob);
+        return Optional.of(smsJobRepository.save(smsJob));
+    }
+
+    /**
+     * Returns a job claimed for a user back to the PENDING pool, if it is still CLAIMED by that user.
+     * Used when a claim succeeded but could not be handed to the user, so the job need not wait for the reaper.
+     * 
+     * @param userId the ID of the user the job was claimed for
+     * @param jobId the ID of the claimed job
+     * @return true if the job was returned to the pool
+     */
+    @Transactional
+    public boolean releaseSmsJobClaim(UUID userId, UUID jobId) {
+        // A claim served from the dispatch buffer may not be written back yet
+        smsJobDispatcher.flushIfPending(jobId);
+        return smsJobRepository.releaseClaim(jobId, userId, LocalDateTime.now()) == 1;
+    }
+
+    /**
+     * Claims up to {@code count} PENDING jobs for a user in a single transaction.
+     * The number of jobs is capped by the user's remaining daily SMS allowance.
+     * 
+     * @param userId the ID of the user claiming the jobs
+     * @param count the maximum number of jobs to claim
+     * @return the claimed jobs, oldest first
+     * @throws IllegalArgumentException if user not found or count is less than 1
+     * @throws IllegalStateException if daily SMS limit reached or no pending jobs available
+     */
+    @Transactional
+    public List<SMSJob> claimSmsJobs(UUID userId, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Claim count must be at least 1");
+        }
+
+        // Fetch user
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
+
+        // Cap the batch by what the user can still complete today
+        int remaining = getRemainingDailySms(user, LocalDate.now());
+        if (remaining <= 0) {
+            throw new IllegalStateException("Daily SMS limit reached");
+        }
+        int batchSize = Math.min(count, remaining);
+
+        // Serve from the dispatch buffer when enabled; fall back to the table if it is drained
+        if (smsJobDispatcher.isEnabled()) {
+            List<SMSJob> dispatched = smsJobDispatcher.claim(user, batchSize);
+            if (!dispatched.isEmpty()) {
+                return dispatched;
+            }
+        }
+        PageRequest batch = PageRequest.of(0, batchSize);
+
+        // Lock the batch of pending jobs
+        List<SMSJob> pendingJobs;
+        if (!skipLockedClaim) {
+            pendingJobs = smsJobRepository.findByStatusOrderByCreatedAtAsc(SMSJobStatus.PENDING, batch);
+        } else if (smsJobPartitioner.isPartitioned()) {
+            pendingJobs = findPartitionedPendingJobs(userId, batchSize);
+        } else {
+            pendingJobs = smsJobRepository.findByStatusSkipLocked(SMSJobStatus.PENDING, batch);
+        }
+        if (pendingJobs.isEmpty()) {
+            throw new IllegalStateException("No pending SMS jobs available");
+        }
+
+        // Assign all jobs to user
+        LocalDateTime claimedAt = LocalDateTime.now();
+        for (SMSJob smsJob : pendingJobs) {
+            smsJob.setUser(user);
+            smsJob.setStatus(SMSJobStatus.CLAIMED);
+            smsJob.setClaimedAt(claimedAt);
+        }
+
+        return smsJobRepository.saveAll(pendingJobs);
     }
 
     /**
      * Completes an SMS job with transactional integrity.
      * Validates ownership, updates job status, credits earnings, and distributes referral rewards.
-     * Enforces daily SMS limits.
+     * Enforces daily SMS and earnings limits.
      * 
      * @param userId the ID of the user completing the job
      * @param jobId the ID of the job to complete
      * @throws IllegalArgumentException if user or job not found
      * @throws IllegalStateException if ownership validation fails, job is not in CLAIMED status, 
-     *                               daily SMS limit reached, or no active SMS rate configuration is found
+     *                               daily SMS or earnings limit reached, or no active SMS rate configuration is found
      */
     @Transactional
     public void completeSmsJob(UUID userId, UUID jobId) {
-        // 1. Fetch user
-        User user = userRepository.findById(userId)
+        // 1. Fetch and lock user; its row is locked before today's earnings row on every completion path
+        User user = userRepository.findByIdForUpdate(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
 
         // 2. Check and reset daily SMS counter based on lastSmsResetDate
@@ -109,6 +273,7 @@ public class SMSJobService {
         }
 
         // 4. Fetch SMS job with pessimistic lock for concurrent safety
+        smsJobDispatcher.flushIfPending(jobId);
         SMSJob smsJob = smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)
                 .orElseThrow(() -> new IllegalStateException("SMS job not found or user does not own this job"));
 
@@ -123,26 +288,226 @@ public class SMSJobService {
 
         BigDecimal smsEarningRate = activeConfig.getSmsEarningRate();
 
-        // 7. Increment daily SMS count
+        // 7. Add the earnings to today's accumulator, unless that would pass the daily earnings cap
+        if (!accrueDailyEarnings(userId, today, smsEarningRate, activeConfig.getMaximumDailyEarnings())) {
+            throw new IllegalStateException("Daily earnings limit reached");
+        }
+
+        // 8. Increment daily SMS count
         user.setDailySmsSentCount(user.getDailySmsSentCount() + 1);
         userRepository.save(user);
 
-        // 8. Update SMS job status to COMPLETED
+        // 9. Update SMS job status to COMPLETED
         smsJob.setStatus(SMSJobStatus.COMPLETED);
         smsJob.setCompletedAt(LocalDateTime.now());
         smsJobRepository.save(smsJob);
 
-        // 9. Append WalletLedger entry for SMS earnings
-        WalletLedger smsEarning = new WalletLedger();
-        smsEarning.setUser(user);
-        smsEarning.setAmount(smsEarningRate);
-        smsEarning.setLedgerType(LedgerType.EARNINGS);
-        smsEarning.setDescription("SMS job completion earnings");
-        smsEarning.setReferenceId(jobId);
-        walletLedgerRepository.save(smsEarning);
+        // 10. Append WalletLedger entries for SMS earnings and referral rewards (one per configured level)
+        //    as one JDBC batch with a single append event, so balance rows lock in user ID order as in the
+        //    batch paths. Deferred rewards accrue instead
+        List<BigDecimal> rewardPercentages = getRewardPercentages();
+        List<User> referrers = getReferrerChain(user, rewardPercentages.size());
+        List<WalletLedger> entries = new ArrayList<>();
+        entries.add(buildSmsEarning(user, smsEarningRate, jobId));
+        entries.addAll(buildReferralRewards(user, referrers, rewardPercentages, smsEarningRate, jobId));
+        walletLedgerRepository.insertAll(deferReferralBonuses(entries));
+    }
+
+    /**
+     * Checks that a job could be completed now, without locking or changing anything.
+     * Used to reject bad completions synchronously before they are queued for group commit;
+     * the group commit re-checks everything under lock.
+     * 
+     * @param userId the ID of the user completing the job
+     * @param jobId the ID of the job to complete
+     * @throws IllegalArgumentException if user not found
+     * @throws IllegalStateException if the job is not owned by the user or not in CLAIMED status,
+     *                               daily SMS or earnings limit reached, or no active SMS rate configuration is found
+     */
+    @Transactional(readOnly = true)
+    public void validateSmsJobCompletion(UUID userId, UUID jobId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
+
+        if (getRemainingDailySms(user, LocalDate.now()) <= 0) {
+            throw new IllegalStateException("Daily SMS limit reached");
+        }
+
+        // A claim still queued in the dispatch buffer is CLAIMED by its owner; this transaction is read-only,
+        // so the check reads the queue instead of writing the claim back
+        Optional<UUID> pendingOwner = smsJobDispatcher.pendingOwner(jobId);
+        if (pendingOwner.isPresent()) {
+            if (!pendingOwner.get().equals(userId)) {
+                throw new IllegalStateException("SMS job not found or user does not own this job");
+            }
+        } else {
+            SMSJob smsJob = smsJobRepository.findById(jobId)
+                    .filter(job -> job.getUser() != null && job.getUser().getId().equals(userId))
+                    .orElseThrow(() -> new IllegalStateException("SMS job not found or user does not own this job"));
+            if (smsJob.getStatus() != SMSJobStatus.CLAIMED) {
+                throw new IllegalStateException("SMS job must be in CLAIMED status to be completed. Current status: " + smsJob.getStatus());
+            }
+        }
+
+        SMSRateConfig activeConfig = smsRateConfigRepository.findByIsActive(true)
+                .orElseThrow(() -> new IllegalStateException("No active SMS rate configuration found"));
+
+        BigDecimal cap = activeConfig.getMaximumDailyEarnings();
+        if (cap != null) {
+            BigDecimal earnedToday = userDailyEarningsRepository.findAmount(userId, LocalDate.now()).orElse(BigDecimal.ZERO);
+            if (earnedToday.add(activeConfig.getSmsEarningRate()).compareTo(cap) > 0) {
+                throw new IllegalStateException("Daily earnings limit reached");
+            }
+        }
+    }
+
+    /**
+     * Applies completions from many users in one transaction (group commit).
+     * Each completion is validated under lock; one that is no longer valid is rejected on its own
+     * rather than thrown, so it cannot roll back the rest of the group.
+     * 
+     * @param completions the completions to apply
+     * @return for each completion in order, null if it was applied or the reason it was rejected
+     */
+    @Transactional
+    public List<String> completeSmsJobGroup(List<JobCompletion> completions) {
+        List<String> rejections = new ArrayList<>(Collections.nCopies(completions.size(), null));
+
+        // 1. Get active SMS rate configuration
+        Optional<SMSRateConfig> activeConfig = smsRateConfigRepository.findByIsActive(true);
+        if (activeConfig.isEmpty()) {
+            Collections.fill(rejections, "No active SMS rate configuration found");
+            return rejections;
+        }
+        BigDecimal smsEarningRate = activeConfig.get().getSmsEarningRate();
+        BigDecimal maximumDailyEarnings = activeConfig.get().getMaximumDailyEarnings();
+
+        // 2. Fetch and lock every user once, in ID order and before any earnings row, and reset daily counters
+        //    based on lastSmsResetDate
+        LocalDate today = LocalDate.now();
+        Map<UUID, User> users = new HashMap<>();
+        for (User user : userRepository.findAllByIdForUpdate(completions.stream().map(JobCompletion::userId).distinct().toList())) {
+            if (user.getLastSmsResetDate() == null || !user.getLastSmsResetDate().equals(today)) {
+                user.setDailySmsSentCount(0);
+                user.setLastSmsResetDate(today);
+            }
+            users.put(user.getId(), user);
+        }
+
+        // 3. Lock every job once
+        completions.forEach(completion -> smsJobDispatcher.flushIfPending(completion.jobId()));
+        Map<UUID, SMSJob> jobs = new HashMap<>();
+        for (SMSJob smsJob : smsJobRepository.findAllByIdWithLock(completions.stream().map(JobCompletion::jobId).distinct().toList())) {
+            jobs.put(smsJob.getId(), smsJob);
+        }
+
+        // 4. Apply each completion in order
+        LocalDateTime completedAt = LocalDateTime.now();
+        List<BigDecimal> rewardPercentages = getRewardPercentages();
+        Map<UUID, List<User>> referrerChains = new HashMap<>();
+        List<WalletLedger> entries = new ArrayList<>();
+        for (int i = 0; i < completions.size(); i++) {
+            JobCompletion completion = completions.get(i);
+            User user = users.get(completion.userId());
+            SMSJob smsJob = jobs.get(completion.jobId());
+
+            if (user == null) {
+                rejections.set(i, "User not found with id: " + completion.userId());
+            } else if (smsJob == null || smsJob.getUser() == null || !smsJob.getUser().getId().equals(user.getId())) {
+                rejections.set(i, "SMS job not found or user does not own this job");
+            } else if (smsJob.getStatus() != SMSJobStatus.CLAIMED) {
+                rejections.set(i, "SMS job must be in CLAIMED status to be completed. Current status: " + smsJob.getStatus());
+            } else if (user.getDailySmsSentCount() >= user.getDailySmsLimit()) {
+                rejections.set(i, "Daily SMS limit reached");
+            } else if (!accrueDailyEarnings(user.getId(), today, smsEarningRate, maximumDailyEarnings)) {
+                rejections.set(i, "Daily earnings limit reached");
+            } else {
+                user.setDailySmsSentCount(user.getDailySmsSentCount() + 1);
+                smsJob.setStatus(SMSJobStatus.COMPLETED);
+                smsJob.setCompletedAt(completedAt);
+
+                List<User> referrers = referrerChains.computeIfAbsent(user.getId(),
+                        id -> getReferrerChain(user, rewardPercentages.size()));
+                entries.add(buildSmsEarning(user, smsEarningRate, smsJob.getId()));
+                entries.addAll(buildReferralRewards(user, referrers, rewardPercentages, smsEarningRate, smsJob.getId()));
+            }
+        }
+
+        // 5. Write counters, job statuses and ledger entries for the whole group
+        userRepository.saveAll(users.values());
+        smsJobRepository.saveAll(jobs.values());
+        walletLedgerRepository.insertAll(deferReferralBonuses(entries));
+
+        return rejections;
+    }
+
+    /**
+     * Completes a batch of SMS jobs for one user in a single transaction.
+     * The daily limit is checked once, all jobs are marked COMPLETED in one set-based update,
+     * and all earnings and referral ledger entries are appended as one JDBC batch.
+     * The batch is all-or-nothing: if any job is not a CLAIMED job owned by the user, nothing is completed.
+     * 
+     * @param userId the ID of the user completing the jobs
+     * @param jobIds the IDs of the jobs to complete
+     * @return the number of jobs completed
+     * @throws IllegalArgumentException if user not found
+     * @throws IllegalStateException if the batch would exceed the daily SMS or earnings limit, any job is not owned by
+     *                               the user or not in CLAIMED status, or no active SMS rate configuration is found
+     */
+    @Transactional
+    public int completeSmsJobs(UUID userId, List<UUID> jobIds) {
+        Set<UUID> distinctJobIds = new LinkedHashSet<>(jobIds);
+
+        // 1. Fetch and lock user, before today's earnings row
+        User user = userRepository.findByIdForUpdate(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
+
+        // 2. Check and reset daily SMS counter based on lastSmsResetDate
+        LocalDate today = LocalDate.now();
+        if (user.getLastSmsResetDate() == null || !user.getLastSmsResetDate().equals(today)) {
+            user.setDailySmsSentCount(0);
+            user.setLastSmsResetDate(today);
+        }
 
-        // 10. Calculate and distribute referral rewards (3 levels)
-        distributeReferralRewards(user, smsEarningRate, jobId);
+        // 3. Check daily SMS limit once for the whole batch
+        if (user.getDailySmsSentCount() + distinctJobIds.size() > user.getDailySmsLimit()) {
+            throw new IllegalStateException("Daily SMS limit reached");
+        }
+
+        // 4. Get active SMS rate configuration
+        SMSRateConfig activeConfig = smsRateConfigRepository.findByIsActive(true)
+                .orElseThrow(() -> new IllegalStateException("No active SMS rate configuration found"));
+
+        BigDecimal smsEarningRate = activeConfig.getSmsEarningRate();
+
+        // 5. Add the whole batch's earnings to today's accumulator, unless that would pass the daily earnings cap
+        BigDecimal batchEarnings = smsEarningRate.multiply(BigDecimal.valueOf(distinctJobIds.size()));
+        if (!accrueDailyEarnings(userId, today, batchEarnings, activeConfig.getMaximumDailyEarnings())) {
+            throw new IllegalStateException("Daily earnings limit reached");
+        }
+
+        // 6. Mark all jobs COMPLETED in one statement; a short count means a foreign or unclaimed job
+        distinctJobIds.forEach(smsJobDispatcher::flushIfPending);
+        int completed = smsJobRepository.completeClaimedJobs(distinctJobIds, userId, LocalDateTime.now());
+        if (completed != distinctJobIds.size()) {
+            throw new IllegalStateException("All SMS jobs must be owned by the user and in CLAIMED status");
+        }
+
+        // 7. Increment daily SMS count
+        user.setDailySmsSentCount(user.getDailySmsSentCount() + completed);
+        userRepository.save(user);
+
+        // 8. Append earnings and referral rewards for every job as one batch; deferred rewards accrue instead
+        List<BigDecimal> rewardPercentages = getRewardPercentages();
+        List<User> referrers = getReferrerChain(user, rewardPercentages.size());
+        List<WalletLedger> entries = new ArrayList<>();
+        for (UUID jobId : distinctJobIds) {
+            entries.add(buildSmsEarning(user, smsEarningRate, jobId));
+            entries.addAll(buildReferralRewards(user, referrers, rewardPercentages, smsEarningRate, jobId));
+        }
+        walletLedgerRepository.insertAll(deferReferralBonuses(entries));
+
+        return completed;
     }
 
     /**
@@ -161,6 +526,7 @@ public class SMSJobService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
 
         // 2. Fetch SMS job with pessimistic lock for concurrent safety
+        smsJobDispatcher.flushIfPending(jobId);
         SMSJob smsJob = smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)
                 .orElseThrow(() -> new IllegalStateException("SMS job not found or user does not own this job"));
 
@@ -178,43 +544,258 @@ public class SMSJobService {
     }
 
     /**
-     * Distributes referral rewards to up to 3 levels of referrers.
-     * Level 1: 10%, Level 2: 2%, Level 3: 1%
+     * Gets how many more SMS jobs a user may complete today.
+     * A counter last reset on an earlier day counts as zero.
+     * 
+     * @param user the user
+     * @param today the current date
+     * @return the remaining daily SMS allowance
+     */
+    private int getRemainingDailySms(User user, LocalDate today) {
+        int sentToday = today.equals(user.getLastSmsResetDate()) ? user.getDailySmsSentCount() : 0;
+        return user.getDailySmsLimit() - sentToday;
+    }
+
+    /**
+     * Adds SMS earnings to a user's accumulator for the day, unless the total would exceed the cap.
+     * One conditional update in the common case; the user's first earnings of the day also create the row.
+     * Referral rewards are not counted.
+     * 
+     * @param userId the user ID
+     * @param day the day the earnings are credited
+     * @param amount the earnings to add
+     * @param cap the maximum daily earnings, or null for no cap
+     * @return true if the earnings were added, false if they would exceed the cap
+     */
+    private boolean accrueDailyEarnings(UUID userId, LocalDate day, BigDecimal amount, BigDecimal cap) {
+        int updated = addDailyEarnings(userId, day, amount, cap);
+        if (updated == 0) {
+            // No row yet, or the cap was hit; creating the row tells the two apart on the retry
+            userDailyEarningsRepository.insertIfAbsent(userId, day);
+            updated = addDailyEarnings(userId, day, amount, cap);
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Runs the capped or uncapped accumulator update.
+     */
+    private int addDailyEarnings(UUID userId, LocalDate day, BigDecimal amount, BigDecimal cap) {
+        return cap == null
+                ? userDailyEarningsRepository.addEarnings(userId, day, amount)
+                : userDailyEarningsRepository.addEarningsWithinCap(userId, day, amount, cap);
+    }
+
+    /**
+     * Locks up to {@code limit} PENDING jobs with SKIP LOCKED, scanning partitions in the user's claim order.
+     * Jobs are oldest first within a partition; there is no ordering across partitions.
+     * 
+     * @param userId the claiming user's ID
+     * @param limit the maximum number of jobs to lock
+     * @return the locked jobs
+     */
+    private List<SMSJob> findPartitionedPendingJobs(UUID userId, int limit) {
+        List<SMSJob> jobs = new ArrayList<>();
+        for (int partition : smsJobPartitioner.claimOrder(userId)) {
+            jobs.addAll(smsJobRepository.findByPartitionSkipLocked(
+                    partition, SMSJobStatus.PENDING, PageRequest.of(0, limit - jobs.size())));
+            if (jobs.size() >= limit) {
+                break;
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Builds the WalletLedger entry for SMS earnings.
      * 
      * @param user the user who completed the SMS job
-     * @param baseAmount the base earning amount from the SMS job
+     * @param amount the earning amount
      * @param jobId the job ID for reference
+     * @return the unsaved earnings entry
+     */
+    private WalletLedger buildSmsEarning(User user, BigDecimal amount, UUID jobId) {
+        WalletLedger smsEarning = new WalletLedger();
+        smsEarning.setUser(user);
+        smsEarning.setAmount(amount);
+        smsEarning.setLedgerType(LedgerType.EARNINGS);
+        smsEarning.setDescription("SMS job completion earnings");
+        smsEarning.setReferenceId(jobId);
+        return smsEarning;
+    }
+
+    /**
+     * Reloads the referral reward levels that completions pay from.
+     * Runs on a schedule and can be called after editing referral_reward_levels. An invalid configuration
+     * is logged once per refresh and the previous levels stay in use.
      */
-    private void distributeReferralRewards(User user, BigDecimal baseAmount, UUID jobId) {
-        // Pre-calculate reward amounts for all levels
-        BigDecimal[] rewardAmounts = {
-            baseAmount.multiply(LEVEL_1_PERCENTAGE).setScale(2, RoundingMode.HALF_UP),
-            baseAmount.multiply(LEVEL_2_PERCENTAGE).setScale(2, RoundingMode.HALF_UP),
-            baseAmount.multiply(LEVEL_3_PERCENTAGE).setScale(2, RoundingMode.HALF_UP)
-        };
-        LedgerType[] ledgerTypes = {LedgerType.REFERRAL_LEVEL_1, LedgerType.REFERRAL_LEVEL_2, LedgerType.REFERRAL_LEVEL_3};
-        String[] levelDescriptions = {"Level 1", "Level 2", "Level 3"};
+    @Scheduled(fixedDelayString = "${referral.reward-levels.refresh-interval-ms:60000}")
+    public void refreshRewardLevels() {
+        try {
+            rewardPercentages = loadRewardPercentages();
+        } catch (Exception e) {
+            logger.error("Error loading referral reward levels; keeping the previous ones", e);
+        }
+    }
 
+    /**
+     * Gets the cached referral reward percentages, loading them if no valid configuration has loaded yet.
+     * 
+     * @return the percentages, level 1 first
+     * @throws IllegalStateException if nothing is cached and the configured levels are invalid
+     */
+    private List<BigDecimal> getRewardPercentages() {
+        List<BigDecimal> percentages = rewardPercentages;
+        if (percentages == null) {
+            percentages = loadRewardPercentages();
+            rewardPercentages = percentages;
+        }
+        return percentages;
+    }
+
+    /**
+     * Loads the referral reward percentage of every level down to the deepest configured one.
+     * Levels between configured ones pay nothing; with no levels configured, 10% / 2% / 1% apply.
+     * 
+     * @return the percentages, level 1 first
+     * @throws IllegalStateException if a configured level is outside 1..ReferralAncestor.MAX_DEPTH
+     */
+    private List<BigDecimal> loadRewardPercentages() {
+        List<ReferralRewardLevel> levels = referralRewardLevelRepository.findAllByOrderByLevelAsc();
+        if (levels.isEmpty()) {
+            return DEFAULT_REWARD_PERCENTAGES;
+        }
+
+        int depth = levels.get(levels.size() - 1).getLevel();
+        if (levels.get(0).getLevel() < 1 || depth > ReferralAncestor.MAX_DEPTH) {
+            throw new IllegalStateException("Referral reward levels must be between 1 and " + ReferralAncestor.MAX_DEPTH);
+        }
+        BigDecimal[] percentages = new BigDecimal[depth];
+        Arrays.fill(percentages, BigDecimal.ZERO);
+        for (ReferralRewardLevel level : levels) {
+            percentages[level.getLevel() - 1] = level.getPercentage();
+        }
+        return List.of(percentages);
+    }
+
+    /**
+     * Resolves the user's referrer chain down to the given depth from the in-memory referral graph,
+     * or with one query on referral_ancestors when the graph does not know the chain; what that query
+     * finds is added to the graph. The referrers are returned as uninitialized references, so building
+     * their ledger entries reads no user rows. Users whose ancestors have not been backfilled yet fall
+     * back to walking the chain.
+     * 
+     * @param user the user who completed the SMS job
+     * @param depth the deepest referral level paid
+     * @return the referrers, nearest first
+     */
+    private List<User> getReferrerChain(User user, int depth) {
+        Optional<List<UUID>> cachedIds = referralGraph.findAncestors(user.getId(), depth);
+        if (cachedIds.isPresent()) {
+            return cachedIds.get().stream().map(userRepository::getReferenceById).toList();
+        }
+
+        // The lazy referrer is a proxy built from the foreign key, so this null check does not load it
+        if (user.getReferrer() == null) {
+            referralGraph.add(user.getId(), null);
+            return List.of();
+        }
+        List<UUID> ancestorIds = referralAncestorRepository.findAncestorIds(user.getId(), depth);
+        if (!ancestorIds.isEmpty()) {
+            referralGraph.addChain(user.getId(), ancestorIds);
+            return ancestorIds.stream().map(userRepository::getReferenceById).toList();
+        }
+        return walkReferrerChain(user, depth);
+    }
+
+    /**
+     * Walks the user's referrer chain down to the given depth through the lazy referrer associations.
+     * 
+     * @param user the user who completed the SMS job
+     * @param depth the deepest referral level paid
+     * @return the referrers, nearest first
+     */
+    private List<User> walkReferrerChain(User user, int depth) {
+        List<User> referrers = new ArrayList<>();
         User currentUser = user;
-        for (int level = 0; level < 3; level++) {
+        for (int level = 0; level < depth; level++) {
             // Get referrer
             User referrer = currentUser.getReferrer();
             if (referrer == null) {
                 // No more referrers in the chain
                 break;
             }
+            referrers.add(referrer);
 
-            // Append WalletLedger entry for referral bonus
+            // Move to next level
+            currentUser = referrer;
+        }
+        return referrers;
+    }
+
+    /**
+     * Builds the referral bonus entries for a job, one per referrer at that referrer's level percentage.
+     * Bonuses that round to zero are skipped, since the ledger does not accept zero amounts.
+     * 
+     * @param user the user who completed the SMS job
+     * @param referrers the user's referrer chain, nearest first
+     * @param rewardPercentages the reward percentage of each level, level 1 first
+     * @param baseAmount the base earning amount from the SMS job
+     * @param jobId the job ID for reference
+     * @return the unsaved referral bonus entries, level 1 first
+     */
+    private List<WalletLedger> buildReferralRewards(User user, List<User> referrers, List<BigDecimal> rewardPercentages,
+                                                    BigDecimal baseAmount, UUID jobId) {
+        List<WalletLedger> rewards = new ArrayList<>();
+        for (int level = 1; level <= referrers.size(); level++) {
+            BigDecimal rewardAmount = baseAmount.multiply(rewardPercentages.get(level - 1)).setScale(2, RoundingMode.HALF_UP);
+            if (rewardAmount.signum() == 0) {
+                continue;
+            }
+
+            // WalletLedger entry for referral bonus
             WalletLedger referralBonus = new WalletLedger();
-            referralBonus.setUser(referrer);
-            referralBonus.setAmount(rewardAmounts[level]);
-            referralBonus.setLedgerType(ledgerTypes[level]);
-            referralBonus.setDescription("Referral bonus - " + levelDescriptions[level] + " from user " + user.getUsername());
+            referralBonus.setUser(referrers.get(level - 1));
+            referralBonus.setAmount(rewardAmount);
+            referralBonus.setLedgerType(LedgerType.referralLevel(level));
+            referralBonus.setDescription("Referral bonus - Level " + level + " from user " + user.getUsername());
             referralBonus.setReferenceId(jobId);
-            walletLedgerRepository.save(referralBonus);
+            rewards.add(referralBonus);
+        }
+        return rewards;
+    }
 
-            // Move to next level
-            currentUser = referrer;
+    /**
+     * When settlement is deferred, moves the referral bonuses out of the entries and adds them to the
+     * referrers' accruals, summed per referrer and level; otherwise returns the entries unchanged.
+     * 
+     * @param entries the ledger entries built for the completions
+     * @return the entries to append to the ledger now
+     */
+    private List<WalletLedger> deferReferralBonuses(List<WalletLedger> entries) {
+        if (!deferReferralSettlement) {
+            return entries;
+        }
+
+        List<WalletLedger> immediate = new ArrayList<>();
+        SortedMap<ReferralBonusAccrual.Key, BigDecimal> accruals = new TreeMap<>();
+        for (WalletLedger entry : entries) {
+            int level = entry.getLedgerType().getReferralLevel();
+            if (level == 0) {
+                immediate.add(entry);
+            } else {
+                accruals.merge(new ReferralBonusAccrual.Key(entry.getUser().getId(), level), entry.getAmount(), BigDecimal::add);
+            }
         }
+        if (!accruals.isEmpty()) {
+            referralBonusAccrualRepository.accrueAll(accruals);
+        }
+        return immediate;
+    }
+
+    /**
+     * A completion queued for group commit.
+     */
+    public record JobCompletion(UUID userId, UUID jobId) {
     }
 }
@@ -0,0 +1,188 @@
+package com.win777.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer group-commit pipeline for SMS job completions.
+ * Completions are validated synchronously, then queued; one writer thread coalesces
+ * completions from many users into one transaction every few milliseconds or every
+ * {@code max-batch} items, and acknowledges each caller once its group has committed.
+ */
+@Component
+public class SmsCompletionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsCompletionPipeline.class);
+
+    private final SMSJobService smsJobService;
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final Duration maxDelay;
+
+    private final BlockingQueue<PendingCompletion> queue;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public SmsCompletionPipeline(SMSJobService smsJobService,
+                                 @Value("${sms.completion.group-commit.enabled:false}") boolean enabled,
+                                 @Value("${sms.completion.group-commit.max-batch:200}") int maxBatch,
+                                 @Value("${sms.completion.group-commit.max-delay:5ms}") Duration maxDelay,
+                                 @Value("${sms.completion.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.smsJobService = smsJobService;
+        this.enabled = enabled;
+        this.maxBatch = Math.max(maxBatch, 1);
+        this.maxDelay = maxDelay;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+    }
+
+    /**
+     * Whether completions should go through the pipeline.
+     *
+     * @return true if group commit is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "sms-completion-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Validates a completion and queues it for the next group commit.
+     *
+     * @param userId the ID of the user completing the job
+     * @param jobId the ID of the job to complete
+     * @return a future completed once the completion is durable, or failed if it was rejected
+     * @throws IllegalArgumentException if user not found
+     * @throws IllegalStateException if validation fails or the pipeline cannot accept more work
+     */
+    public CompletableFuture<Void> submit(UUID userId, UUID jobId) {
+        if (!running) {
+            throw new IllegalStateException("Completion pipeline is not running");
+        }
+        smsJobService.validateSmsJobCompletion(userId, jobId);
+
+        PendingCompletion pending = new PendingCompletion(new SMSJobService.JobCompletion(userId, jobId), new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            throw new IllegalStateException("Completion queue is full. Please try again later.");
+        }
+        // The writer may have stopped after the check above; it fails what it finds queued, so only a
+        // completion it missed is still here
+        if (!running && queue.remove(pending)) {
+            throw new IllegalStateException("Completion pipeline is not running");
+        }
+        return pending.result();
+    }
+
+    /**
+     * Stops accepting completions and commits everything already queued.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private void runWriter() {
+        List<PendingCompletion> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCompletion first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                // Gather until the group is full or the delay since its first item has passed
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (group.size() < maxBatch) {
+                    if (queue.drainTo(group, maxBatch - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingCompletion next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failAll(group);
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+
+        // Interrupted, or stopped with work still arriving: nothing left will be committed
+        running = false;
+        List<PendingCompletion> unprocessed = new ArrayList<>();
+        queue.drainTo(unprocessed);
+        failAll(unprocessed);
+    }
+
+    /**
+     * Fails completions the writer will not commit, so their callers are not left waiting.
+     */
+    private void failAll(List<PendingCompletion> pendingCompletions) {
+        if (pendingCompletions.isEmpty()) {
+            return;
+        }
+        logger.warn("Completion pipeline stopped with {} SMS job completions uncommitted", pendingCompletions.size());
+        IllegalStateException stopped = new IllegalStateException("Completion pipeline stopped");
+        pendingCompletions.forEach(pending -> pending.result().completeExceptionally(stopped));
+    }
+
+    private void commit(List<PendingCompletion> group) {
+        try {
+            List<String> rejections = smsJobService.completeSmsJobGroup(
+                    group.stream().map(PendingCompletion::completion).toList());
+            for (int i = 0; i < group.size(); i++) {
+                String rejection = rejections.get(i);
+                if (rejection == null) {
+                    group.get(i).result().complete(null);
+                } else {
+                    group.get(i).result().completeExceptionally(new IllegalStateException(rejection));
+                }
+            }
+            logger.debug("Committed group of {} SMS job completions", group.size());
+        } catch (RuntimeException e) {
+            logger.error("Group commit of {} SMS job completions failed", group.size(), e);
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * A queued completion and the caller waiting on it.
+     */
+    private record PendingCompletion(SMSJobService.JobCompletion completion, CompletableFuture<Void> result) {
+    }
+}
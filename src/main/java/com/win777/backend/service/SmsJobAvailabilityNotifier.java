@@ -0,0 +1,163 @@
+package com.win777.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wakes parked long-poll claimers when PENDING jobs become available.
+ * Waiters hold no servlet thread or connection while parked; a signal hands up to one
+ * waiter per new job to a small wake-up pool, which retries the claim.
+ * With PostgreSQL LISTEN/NOTIFY enabled, signals are published through the database
+ * so waiters on every node are woken (see {@link SmsJobNotificationListener}).
+ */
+@Component
+public class SmsJobAvailabilityNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsJobAvailabilityNotifier.class);
+
+    public static final String CHANNEL = "sms_jobs_available";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean pgNotifyEnabled;
+    private final ExecutorService wakeExecutor;
+
+    // Bumped on every signal so a claimer can tell whether jobs arrived since its last attempt
+    private final AtomicLong version = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    public SmsJobAvailabilityNotifier(JdbcTemplate jdbcTemplate,
+                                      @Value("${sms.long-poll.pg-notify.enabled:false}") boolean pgNotifyEnabled,
+                                      @Value("${sms.long-poll.wake-threads:4}") int wakeThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pgNotifyEnabled = pgNotifyEnabled;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.wakeExecutor = Executors.newFixedThreadPool(Math.max(wakeThreads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "sms-claim-wake-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the current signal version; read it before a claim attempt and pass it to {@link #await}.
+     *
+     * @return the signal version
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Parks a callback until jobs become available.
+     * Runs it straight away if a signal arrived after {@code seenVersion} was read.
+     *
+     * @param seenVersion the version read before the failed claim attempt
+     * @param onAvailable the callback to run on the wake-up pool
+     * @return the waiter, to cancel once the caller gives up
+     */
+    public Waiter await(long seenVersion, Runnable onAvailable) {
+        Waiter waiter = new Waiter(onAvailable);
+        waiters.add(waiter);
+        if (version.get() != seenVersion && waiters.remove(waiter)) {
+            fire(waiter);
+        }
+        return waiter;
+    }
+
+    /**
+     * Cancels a parked waiter.
+     *
+     * @param waiter the waiter
+     */
+    public void cancel(Waiter waiter) {
+        waiter.fired.set(true);
+        waiters.remove(waiter);
+    }
+
+    /**
+     * Publishes that jobs became available.
+     * Inside a transaction, waiters are woken only after it commits.
+     *
+     * @param jobs the number of jobs made available
+     */
+    public void publish(long jobs) {
+        if (jobs <= 0) {
+            return;
+        }
+        if (pgNotifyEnabled) {
+            // Delivered to every listening node, this one included, when the transaction commits
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, Long.toString(jobs));
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal(jobs);
+                }
+            });
+        } else {
+            signal(jobs);
+        }
+    }
+
+    /**
+     * Wakes up to {@code jobs} parked waiters on this node.
+     *
+     * @param jobs the number of jobs made available
+     */
+    public void signal(long jobs) {
+        version.incrementAndGet();
+        long woken = 0;
+        while (woken < jobs) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                break;
+            }
+            if (fire(waiter)) {
+                woken++;
+            }
+        }
+        logger.debug("Woke {} waiting SMS job claimers", woken);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wakeExecutor.shutdownNow();
+    }
+
+    private boolean fire(Waiter waiter) {
+        if (!waiter.fired.compareAndSet(false, true)) {
+            return false;
+        }
+        wakeExecutor.execute(waiter.onAvailable);
+        return true;
+    }
+
+    /**
+     * A parked claimer; fires at most once.
+     */
+    public static final class Waiter {
+
+        private final Runnable onAvailable;
+        private final AtomicBoolean fired = new AtomicBoolean();
+
+        private Waiter(Runnable onAvailable) {
+            this.onAvailable = onAvailable;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process dispatch buffer in front of the sms_jobs table.
+ * Leases blocks of PENDING jobs into a bounded buffer so claims are served from memory,
+ * and writes the resulting assignments back in JDBC batches.
+ * Leases expire, so jobs held by a node that dies return to the pool.
+ */
+@Service
+public class SmsJobDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsJobDispatcher.class);
+
+    // Buffered jobs this close to lease expiry are not handed out
+    private static final Duration LEASE_SAFETY_MARGIN = Duration.ofSeconds(5);
+
+    private static final String ASSIGN_SQL =
+            "UPDATE sms_jobs SET user_id = ?, status = 'CLAIMED', claimed_at = ?, lease_expires_at = NULL, updated_at = ? " +
+            "WHERE id = ? AND status = 'LEASED'";
+
+    private final SMSJobRepository smsJobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int bufferSize;
+    private final int refillWatermark;
+    private final Duration leaseTtl;
+
+    private final BlockingQueue<LeasedJob> buffer;
+    private final Map<UUID, Assignment> pendingAssignments = new ConcurrentHashMap<>();
+    // A lock rather than synchronized: a virtual thread blocked on JDBC inside synchronized pins its carrier
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public SmsJobDispatcher(SMSJobRepository smsJobRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${sms.dispatch.enabled:false}") boolean enabled,
+                            @Value("${sms.dispatch.buffer-size:500}") int bufferSize,
+                            @Value("${sms.dispatch.refill-watermark:100}") int refillWatermark,
+                            @Value("${sms.dispatch.lease-ttl:120s}") Duration leaseTtl) {
+        this.smsJobRepository = smsJobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // Own transactions for the scheduled paths: buffer maintenance must not join or roll back with a caller's transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.bufferSize = bufferSize;
+        this.refillWatermark = refillWatermark;
+        this.leaseTtl = leaseTtl;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(bufferSize, 1));
+    }
+
+    /**
+     * Whether claims should be served from the dispatch buffer.
+     *
+     * @return true if the dispatch buffer is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Claims up to {@code max} buffered jobs for a user.
+     * The assignments are queued for the next batched write-back once the caller's transaction commits;
+     * if it rolls back, the jobs go back into the buffer.
+     *
+     * @param user the user claiming the jobs
+     * @param max the maximum number of jobs to claim
+     * @return the claimed jobs; empty if the buffer is drained
+     */
+    public List<SMSJob> claim(User user, int max) {
+        LocalDateTime now = LocalDateTime.now();
+        List<LeasedJob> taken = new ArrayList<>();
+        List<SMSJob> claimed = new ArrayList<>();
+        while (claimed.size() < max) {
+            LeasedJob leased = buffer.poll();
+            if (leased == null) {
+                break;
+            }
+            // Drop leases about to lapse; the sweeper returns them to the pool
+            if (!leased.leaseExpiresAt().isAfter(now.plus(LEASE_SAFETY_MARGIN))) {
+                continue;
+            }
+            taken.add(leased);
+            claimed.add(leased.toClaimedJob(user, now));
+        }
+        if (taken.isEmpty()) {
+            return claimed;
+        }
+
+        List<Assignment> assignments = taken.stream()
+                .map(leased -> new Assignment(leased.id(), user.getId(), now))
+                .toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            assignments.forEach(assignment -> pendingAssignments.put(assignment.jobId(), assignment));
+            return claimed;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                assignments.forEach(assignment -> pendingAssignments.put(assignment.jobId(), assignment));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    addToBuffer(taken);
+                }
+            }
+        });
+        return claimed;
+    }
+
+    /**
+     * Claims a single buffered job for a user.
+     *
+     * @param user the user claiming the job
+     * @return the claimed job, or empty if the buffer is drained
+     */
+    public Optional<SMSJob> claim(User user) {
+        List<SMSJob> claimed = claim(user, 1);
+        return claimed.isEmpty() ? Optional.empty() : Optional.of(claimed.get(0));
+    }
+
+    /**
+     * Gets the owner of a job whose assignment is still queued, without writing anything.
+     * Lets read-only callers see buffered claims that the sms_jobs row does not reflect yet.
+     *
+     * @param jobId the job ID
+     * @return the claiming user's ID, or empty if no assignment is queued for the job
+     */
+    public Optional<UUID> pendingOwner(UUID jobId) {
+        Assignment assignment = pendingAssignments.get(jobId);
+        return assignment == null ? Optional.empty() : Optional.of(assignment.userId());
+    }
+
+    /**
+     * Writes back the assignment for a job if it is still queued.
+     * Called before a job is completed or failed so the row reflects its owner.
+     * The write joins the caller's transaction rather than taking a second pooled connection,
+     * and the assignment is queued again if that transaction rolls back.
+     *
+     * @param jobId the job ID
+     */
+    public void flushIfPending(UUID jobId) {
+        if (!pendingAssignments.containsKey(jobId)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Assignment assignment = pendingAssignments.remove(jobId);
+            if (assignment == null) {
+                return;
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            pendingAssignments.putIfAbsent(jobId, assignment);
+                        }
+                    }
+                });
+            }
+            int[] counts = writeAssignments(List.of(assignment));
+            if (counts.length > 0 && counts[0] == 0) {
+                logger.warn("Buffered SMS job assignment for {} was not written because its lease had lapsed", jobId);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Periodic buffer maintenance: writes back queued assignments and tops up
+     * the buffer once it drains below the refill watermark.
+     */
+    @Scheduled(fixedDelayString = "${sms.dispatch.flush-interval-ms:50}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flushAssignments();
+            if (buffer.size() <= refillWatermark) {
+                refill();
+            }
+        } catch (Exception e) {
+            logger.error("Error maintaining SMS dispatch buffer", e);
+        }
+    }
+
+    /**
+     * Returns jobs whose lease lapsed to the PENDING pool.
+     * Runs on every node, so leases held by a dead node are recovered by the survivors.
+     */
+    @Scheduled(fixedDelayString = "${sms.dispatch.lease-sweep-interval-ms:30000}")
+    public void releaseExpiredLeases() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Integer released = transactionTemplate.execute(status ->
+                    smsJobRepository.releaseExpiredLeases(LocalDateTime.now()));
+            if (released != null && released > 0) {
+                logger.info("Returned {} SMS jobs with expired leases to the pool", released);
+            }
+        } catch (Exception e) {
+            logger.error("Error releasing expired SMS job leases", e);
+        }
+    }
+
+    /**
+     * Flushes queued assignments and hands unclaimed leases back on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flushAssignments();
+        List<LeasedJob> unclaimed = new ArrayList<>();
+        buffer.drainTo(unclaimed);
+        if (!unclaimed.isEmpty()) {
+            List<UUID> ids = unclaimed.stream().map(LeasedJob::id).toList();
+            transactionTemplate.executeWithoutResult(status -> smsJobRepository.releaseLeases(ids));
+            logger.info("Released {} buffered SMS job leases on shutdown", ids.size());
+        }
+    }
+
+    /**
+     * Writes all queued assignments in one JDBC batch.
+     */
+    void flushAssignments() {
+        flushLock.lock();
+        try {
+            if (pendingAssignments.isEmpty()) {
+                return;
+            }
+            List<Assignment> batch = new ArrayList<>(pendingAssignments.values());
+
+            int[] counts = transactionTemplate.execute(status -> writeAssignments(batch));
+            batch.forEach(assignment -> pendingAssignments.remove(assignment.jobId()));
+
+            long lost = counts == null ? 0 : Arrays.stream(counts).filter(count -> count == 0).count();
+            if (lost > 0) {
+                logger.warn("{} buffered SMS job assignments were not written because their lease had lapsed", lost);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Adds leased jobs to the buffer: new leases, or jobs whose claim rolled back.
+     * Ones that do not fit stay leased until the sweeper returns them to the pool.
+     */
+    private void addToBuffer(List<LeasedJob> jobs) {
+        int returned = 0;
+        for (LeasedJob leased : jobs) {
+            if (buffer.offer(leased)) {
+                returned++;
+            }
+        }
+        if (returned < jobs.size()) {
+            logger.debug("{} leased SMS jobs did not fit into the dispatch buffer",
+                    jobs.size() - returned);
+        }
+    }
+
+    /**
+     * Writes assignments in one JDBC batch in the current transaction.
+     *
+     * @return the update count per assignment; 0 where the lease had lapsed
+     */
+    private int[] writeAssignments(List<Assignment> assignments) {
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.batchUpdate(ASSIGN_SQL, assignments, assignments.size(),
+                (ps, assignment) -> {
+                    ps.setObject(1, assignment.userId());
+                    ps.setTimestamp(2, Timestamp.valueOf(assignment.claimedAt()));
+                    ps.setTimestamp(3, updatedAt);
+                    ps.setObject(4, assignment.jobId());
+                })[0];
+    }
+
+    /**
+     * Leases a block of PENDING jobs into the buffer.
+     */
+    private void refill() {
+        int wanted = bufferSize - buffer.size();
+        if (wanted <= 0) {
+            return;
+        }
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plus(leaseTtl);
+
+        List<LeasedJob> leased = transactionTemplate.execute(status -> {
+            List<SMSJob> jobs = smsJobRepository.findByStatusSkipLocked(SMSJobStatus.PENDING, PageRequest.of(0, wanted));
+            if (jobs.isEmpty()) {
+                return Collections.<LeasedJob>emptyList();
+            }
+            smsJobRepository.leaseJobs(jobs.stream().map(SMSJob::getId).toList(), leaseExpiresAt);
+            return jobs.stream()
+                    .map(job -> new LeasedJob(job.getId(), job.getRecipientNumber(), job.getMessageContent(), leaseExpiresAt))
+                    .toList();
+        });
+
+        if (leased != null && !leased.isEmpty()) {
+            // Rolled-back claims may have taken the capacity computed above; leftovers wait for the sweeper
+            addToBuffer(leased);
+            logger.debug("Leased {} SMS jobs into the dispatch buffer", leased.size());
+        }
+    }
+
+    /**
+     * A job leased into this node's buffer.
+     */
+    private record LeasedJob(UUID id, String recipientNumber, String messageContent, LocalDateTime leaseExpiresAt) {
+
+        SMSJob toClaimedJob(User user, LocalDateTime claimedAt) {
+            SMSJob job = new SMSJob();
+            job.setId(id);
+            job.setUser(user);
+            job.setRecipientNumber(recipientNumber);
+            job.setMessageContent(messageContent);
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(claimedAt);
+            return job;
+        }
+    }
+
+    /**
+     * A buffered claim waiting to be written back.
+     */
+    private record Assignment(UUID jobId, UUID userId, LocalDateTime claimedAt) {
+    }
+}
@@ -0,0 +1,362 @@
+package com.win777.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win777.backend.dto.IngestionResponse;
+import com.win777.backend.util.UuidV7;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for bulk ingestion of PENDING SMS jobs.
+ * Streams NDJSON or CSV input straight into sms_jobs with PostgreSQL COPY,
+ * or with JDBC batches on other databases, so memory use does not grow with the input.
+ * An ingest is all-or-nothing: a malformed row rolls back the whole upload.
+ */
+@Service
+public class SmsJobIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsJobIngestionService.class);
+
+    private static final int MAX_RECIPIENT_LENGTH = 255;
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    private static final String COPY_SQL =
+            "COPY sms_jobs (id, recipient_number, message_content, status, queue_partition, created_at, updated_at) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO sms_jobs (id, recipient_number, message_content, status, queue_partition, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 'PENDING', ?, ?, ?)";
+
+    /**
+     * Supported input formats.
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SmsJobPartitioner smsJobPartitioner;
+    private final SmsJobAvailabilityNotifier smsJobAvailabilityNotifier;
+
+    private final boolean copyEnabled;
+    private final int batchSize;
+
+    public SmsJobIngestionService(JdbcTemplate jdbcTemplate,
+                                  ObjectMapper objectMapper,
+                                  SmsJobPartitioner smsJobPartitioner,
+                                  SmsJobAvailabilityNotifier smsJobAvailabilityNotifier,
+                                  @Value("${sms.ingest.copy-enabled:true}") boolean copyEnabled,
+                                  @Value("${sms.ingest.batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.smsJobPartitioner = smsJobPartitioner;
+        this.smsJobAvailabilityNotifier = smsJobAvailabilityNotifier;
+        this.copyEnabled = copyEnabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Ingests SMS jobs from a stream.
+     * NDJSON lines carry {@code recipientNumber} and {@code messageContent};
+     * CSV records carry recipient number and message content, with an optional header row.
+     * 
+     * @param input the UTF-8 encoded input
+     * @param format the input format
+     * @return the number of rows written and the throughput
+     * @throws IllegalArgumentException if a row is malformed
+     */
+    @Transactional
+    public IngestionResponse ingest(InputStream input, Format format) {
+        long startNanos = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        IngestionResponse response = jdbcTemplate.execute((ConnectionCallback<IngestionResponse>) connection -> {
+            try (RowWriter writer = openWriter(connection)) {
+                long rows = format == Format.CSV ? readCsv(reader, writer) : readNdjson(reader, writer);
+                writer.finish();
+                return new IngestionResponse(rows, 0, 0, writer.method());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read ingestion input", e);
+            }
+        });
+
+        // Wake long-poll claimers once the rows are committed
+        smsJobAvailabilityNotifier.publish(response.getRowsIngested());
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        response.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        response.setRowsPerSecond(Math.round(response.getRowsIngested() / Math.max(elapsedNanos / 1_000_000_000.0, 1e-9)));
+        logger.info("Ingested {} SMS jobs via {} in {} ms ({} rows/sec)", response.getRowsIngested(),
+                response.getWriteMethod(), response.getElapsedMillis(), response.getRowsPerSecond());
+        return response;
+    }
+
+    /**
+     * Reads one JSON object per line.
+     */
+    private long readNdjson(BufferedReader reader, RowWriter writer) throws IOException, SQLException {
+        long rows = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid JSON on line " + lineNumber);
+            }
+            writer.write(validate(node.path("recipientNumber").asText(null),
+                    node.path("messageContent").asText(null), lineNumber));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Reads recipient number and message content CSV records, skipping a header row if present.
+     */
+    private long readCsv(BufferedReader reader, RowWriter writer) throws IOException, SQLException {
+        long rows = 0;
+        long recordNumber = 0;
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            recordNumber++;
+            if (recordNumber == 1 && !record.isEmpty() && record.get(0).trim().equalsIgnoreCase("recipient_number")) {
+                continue;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            if (record.size() != 2) {
+                throw new IllegalArgumentException("Expected 2 fields in CSV record " + recordNumber + " but found " + record.size());
+            }
+            writer.write(validate(record.get(0), record.get(1), recordNumber));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Reads one RFC 4180 record; quoted fields may contain commas, quotes and line breaks.
+     * 
+     * @return the fields, or null at end of input
+     */
+    private List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field in CSV input");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Row validate(String recipientNumber, String messageContent, long lineNumber) {
+        if (recipientNumber == null || recipientNumber.isBlank()) {
+            throw new IllegalArgumentException("Missing recipient number on line " + lineNumber);
+        }
+        if (messageContent == null || messageContent.isBlank()) {
+            throw new IllegalArgumentException("Missing message content on line " + lineNumber);
+        }
+        if (recipientNumber.length() > MAX_RECIPIENT_LENGTH || messageContent.length() > MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("Field too long on line " + lineNumber);
+        }
+        return new Row(recipientNumber.trim(), messageContent);
+    }
+
+    /**
+     * Uses COPY when the connection is a PostgreSQL connection, JDBC batches otherwise.
+     */
+    private RowWriter openWriter(Connection connection) throws SQLException {
+        if (copyEnabled && connection.isWrapperFor(PGConnection.class)) {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            return new CopyRowWriter(copyIn, smsJobPartitioner);
+        }
+        return new BatchRowWriter();
+    }
+
+    /**
+     * A validated input row.
+     */
+    private record Row(String recipientNumber, String messageContent) {
+    }
+
+    /**
+     * Destination for validated rows.
+     */
+    private interface RowWriter extends AutoCloseable {
+
+        void write(Row row) throws SQLException;
+
+        void finish() throws SQLException;
+
+        String method();
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    /**
+     * Streams rows into a single COPY; the driver buffers only what it has not yet sent.
+     */
+    private static class CopyRowWriter implements RowWriter {
+
+        private final CopyIn copyIn;
+        private final SmsJobPartitioner partitioner;
+        private final String timestamp = LocalDateTime.now().toString();
+        private final StringBuilder line = new StringBuilder();
+
+        CopyRowWriter(CopyIn copyIn, SmsJobPartitioner partitioner) {
+            this.copyIn = copyIn;
+            this.partitioner = partitioner;
+        }
+
+        @Override
+        public void write(Row row) throws SQLException {
+            UUID id = UuidV7.generate();
+            line.setLength(0);
+            line.append(id).append(',');
+            appendQuoted(row.recipientNumber());
+            line.append(',');
+            appendQuoted(row.messageContent());
+            line.append(",PENDING,").append(partitioner.partitionFor(id));
+            line.append(',').append(timestamp).append(',').append(timestamp).append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        }
+
+        private void appendQuoted(String value) {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            copyIn.endCopy();
+        }
+
+        @Override
+        public String method() {
+            return "COPY";
+        }
+
+        @Override
+        public void close() throws SQLException {
+            // Abort the COPY if the input failed part way through
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Buffers up to one batch of rows and flushes it as a JDBC batch insert.
+     */
+    private class BatchRowWriter implements RowWriter {
+
+        private final Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
+        private final List<Row> batch = new ArrayList<>(batchSize);
+
+        @Override
+        public void write(Row row) {
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, row) -> {
+                UUID id = UuidV7.generate();
+                ps.setObject(1, id);
+                ps.setString(2, row.recipientNumber());
+                ps.setString(3, row.messageContent());
+                ps.setInt(4, smsJobPartitioner.partitionFor(id));
+                ps.setTimestamp(5, timestamp);
+                ps.setTimestamp(6, timestamp);
+            });
+            batch.clear();
+        }
+
+        @Override
+        public void finish() {
+            flush();
+        }
+
+        @Override
+        public String method() {
+            return "BATCH";
+        }
+
+        @Override
+        public void close() {
+            batch.clear();
+        }
+    }
+}
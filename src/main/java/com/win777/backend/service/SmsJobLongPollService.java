@@ -0,0 +1,85 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for long-poll SMS job claims.
+ * A claim that finds the queue empty parks on the availability notifier instead of failing,
+ * and is retried when jobs are published or gives up when the wait runs out.
+ * A job claimed just after the wait ran out is returned to the pool for the next waiter.
+ */
+@Service
+public class SmsJobLongPollService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsJobLongPollService.class);
+
+    private final SMSJobService smsJobService;
+    private final SmsJobAvailabilityNotifier notifier;
+
+    public SmsJobLongPollService(SMSJobService smsJobService, SmsJobAvailabilityNotifier notifier) {
+        this.smsJobService = smsJobService;
+        this.notifier = notifier;
+    }
+
+    /**
+     * Claims the next available SMS job, waiting up to {@code wait} for one to arrive.
+     * 
+     * @param userId the ID of the user claiming the job
+     * @param wait how long to wait for a job
+     * @return a future completed with the claimed job, or empty if the wait ran out
+     */
+    public CompletableFuture<Optional<SMSJob>> claimOrWait(UUID userId, Duration wait) {
+        CompletableFuture<Optional<SMSJob>> result = new CompletableFuture<>();
+        result.completeOnTimeout(Optional.empty(), wait.toMillis(), TimeUnit.MILLISECONDS);
+        attempt(userId, result);
+        return result;
+    }
+
+    private void attempt(UUID userId, CompletableFuture<Optional<SMSJob>> result) {
+        if (result.isDone()) {
+            return;
+        }
+
+        // Read the version first so a signal racing with this attempt is not missed
+        long seenVersion = notifier.currentVersion();
+        try {
+            Optional<SMSJob> job = smsJobService.tryClaimSmsJob(userId);
+            if (job.isPresent()) {
+                if (!result.complete(job)) {
+                    // The wait ran out while claiming: nobody receives this job, so hand it back straight away
+                    releaseUndelivered(userId, job.get());
+                }
+                return;
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        SmsJobAvailabilityNotifier.Waiter waiter = notifier.await(seenVersion, () -> attempt(userId, result));
+        result.whenComplete((job, error) -> notifier.cancel(waiter));
+    }
+
+    /**
+     * Returns a claimed job that the timed-out caller never received to the pool and wakes the next waiter.
+     */
+    private void releaseUndelivered(UUID userId, SMSJob job) {
+        try {
+            if (smsJobService.releaseSmsJobClaim(userId, job.getId())) {
+                notifier.publish(1);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error releasing undelivered SMS job {}", job.getId(), e);
+            // Log error but don't throw - the stale-claim reaper returns the job later
+        }
+    }
+}
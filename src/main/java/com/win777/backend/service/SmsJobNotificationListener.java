@@ -0,0 +1,107 @@
+package com.win777.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Relays PostgreSQL NOTIFY messages on the job availability channel to this node's waiters.
+ * Holds one pooled connection for as long as it listens, and reconnects if it drops.
+ */
+@Component
+public class SmsJobNotificationListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsJobNotificationListener.class);
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final DataSource dataSource;
+    private final SmsJobAvailabilityNotifier notifier;
+    private final boolean enabled;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public SmsJobNotificationListener(DataSource dataSource,
+                                      SmsJobAvailabilityNotifier notifier,
+                                      @Value("${sms.long-poll.pg-notify.enabled:false}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.notifier = notifier;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "sms-job-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + SmsJobAvailabilityNotifier.CHANNEL);
+                }
+                logger.info("Listening for SMS job notifications on channel {}", SmsJobAvailabilityNotifier.CHANNEL);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null || notifications.length == 0) {
+                        continue;
+                    }
+                    long jobs = 0;
+                    for (PGNotification notification : notifications) {
+                        jobs += parseJobCount(notification.getParameter());
+                    }
+                    notifier.signal(jobs);
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("SMS job notification listener lost its connection, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private long parseJobCount(String payload) {
+        try {
+            return Long.parseLong(payload);
+        } catch (NumberFormatException e) {
+            // Unknown payload: wake one waiter so it can look for itself
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.win777.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Assigns SMS jobs to queue partitions and picks the order in which claimers scan them.
+ * Jobs are spread across partitions by hash at ingest; each claimer starts on the partition
+ * chosen by its user ID and falls back to the others, so concurrent claimers lock rows and
+ * read index pages in different parts of the queue instead of all contending for its head.
+ */
+@Component
+public class SmsJobPartitioner {
+
+    // 1 keeps the single FIFO queue
+    @Value("${sms.queue.partitions:1}")
+    private int partitionCount = 1;
+
+    /**
+     * Whether the queue is split into more than one partition.
+     *
+     * @return true if claims should scan partitions
+     */
+    public boolean isPartitioned() {
+        return partitionCount > 1;
+    }
+
+    /**
+     * Gets the partition a new job is written to.
+     *
+     * @param jobId the job ID
+     * @return the partition, between 0 and the partition count
+     */
+    public int partitionFor(UUID jobId) {
+        return Math.floorMod(jobId.hashCode(), Math.max(partitionCount, 1));
+    }
+
+    /**
+     * Gets the order in which a user scans partitions: their home partition first, then the rest.
+     *
+     * @param userId the claiming user's ID
+     * @return every partition exactly once
+     */
+    public int[] claimOrder(UUID userId) {
+        int count = Math.max(partitionCount, 1);
+        int start = Math.floorMod(userId.hashCode(), count);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (start + i) % count;
+        }
+        return order;
+    }
+}
@@ -1,7 +1,11 @@
 package com.win777.backend.service;
 
+import com.win777.backend.entity.ReferralAncestor;
 import com.win777.backend.entity.User;
+import com.win777.backend.event.UserRegisteredEvent;
+import com.win777.backend.repository.ReferralAncestorRepository;
 import com.win777.backend.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,14 +22,23 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ReferralAncestorRepository referralAncestorRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository,
+                       PasswordEncoder passwordEncoder,
+                       ReferralAncestorRepository referralAncestorRepository,
+                       ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.referralAncestorRepository = referralAncestorRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Registers a new user.
+     * A referred user's referral_ancestors rows are written in the same transaction,
+     * and a UserRegisteredEvent is published for the in-memory referral graph.
      * 
      * @param username the username
      * @param email the email
@@ -70,7 +83,16 @@ public class UserService {
             }
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+
+        // Record the new user's referrer chain for reward distribution
+        UUID referrerId = saved.getReferrer() == null ? null : saved.getReferrer().getId();
+        if (referrerId != null) {
+            referralAncestorRepository.insertAncestors(saved.getId(), referrerId, ReferralAncestor.MAX_DEPTH);
+        }
+        eventPublisher.publishEvent(new UserRegisteredEvent(saved.getId(), referrerId));
+
+        return saved;
     }
 
     /**
@@ -0,0 +1,131 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletBalanceCheckpointRepository;
+import com.win777.backend.repository.WalletBalanceRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Service class for wallet balances, so balance reads no longer sum the user's whole ledger.
+ * In RUNNING mode every ledger append is applied to wallet_balances in the appending transaction.
+ * In CHECKPOINT mode appends touch nothing but the ledger; balances are a periodic checkpoint
+ * plus the entries created since, and WalletCheckpointRoller moves the checkpoints forward.
+ */
+@Service
+public class WalletBalanceService {
+
+    /**
+     * How balances are maintained.
+     */
+    public enum Mode {
+        RUNNING,
+        CHECKPOINT
+    }
+
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final WalletBalanceCheckpointRepository walletBalanceCheckpointRepository;
+    private final WalletLedgerRepository walletLedgerRepository;
+    private final UserRepository userRepository;
+    private final Mode mode;
+
+    public WalletBalanceService(WalletBalanceRepository walletBalanceRepository,
+                                WalletBalanceCheckpointRepository walletBalanceCheckpointRepository,
+                                WalletLedgerRepository walletLedgerRepository,
+                                UserRepository userRepository,
+                                @Value("${wallet.balance.mode:running}") String mode) {
+        this.walletBalanceRepository = walletBalanceRepository;
+        this.walletBalanceCheckpointRepository = walletBalanceCheckpointRepository;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.userRepository = userRepository;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the configured balance mode.
+     * 
+     * @return the balance mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets a user's balance from the materialized row, or from the checkpoint plus newer entries.
+     * In RUNNING mode, users without a row yet (no ledger activity since balances were introduced)
+     * fall back to summing the ledger.
+     * 
+     * @param userId the user ID
+     * @return the wallet balance
+     */
+    public BigDecimal getBalance(UUID userId) {
+        if (mode == Mode.CHECKPOINT) {
+            return walletBalanceCheckpointRepository.calculateBalance(userId);
+        }
+        return walletBalanceRepository.findBalance(userId)
+                .orElseGet(() -> walletLedgerRepository.calculateBalance(userId));
+    }
+
+    /**
+     * Locks a user's balance and returns it.
+     * Serializes debits for the user until the caller's transaction ends. CHECKPOINT mode
+     * has no per-user balance row that writers share, so it locks the user row instead.
+     * 
+     * @param userId the user ID
+     * @return the locked balance
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal lockBalance(UUID userId) {
+        if (mode == Mode.CHECKPOINT) {
+            userRepository.findByIdForUpdate(userId)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            return walletBalanceCheckpointRepository.calculateBalance(userId);
+        }
+        walletBalanceRepository.initializeFromLedger(userId, LocalDateTime.now());
+        return walletBalanceRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new IllegalStateException("Wallet balance missing for user"))
+                .getBalance();
+    }
+
+    /**
+     * Applies appended ledger entries to the users' balance rows.
+     * Runs synchronously in the appending transaction, so the balance commits or rolls back with the ledger.
+     * 
+     * @param event the ledger append
+     */
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onLedgerAppended(WalletLedgerAppendedEvent event) {
+        if (mode == Mode.CHECKPOINT) {
+            return;
+        }
+
+        // 1. Net the entries per user; user ID order keeps row locks deadlock-free across writers,
+        //    as every multi-entry append arrives as one event (insertAll)
+        Map<UUID, BigDecimal> deltas = new TreeMap<>();
+        for (WalletLedger entry : event.entries()) {
+            deltas.merge(entry.getUser().getId(), entry.getAmount(), BigDecimal::add);
+        }
+
+        // 2. A newly created row already includes this transaction's entries; otherwise add the delta
+        LocalDateTime now = LocalDateTime.now();
+        deltas.forEach((userId, delta) -> {
+            if (walletBalanceRepository.initializeFromLedger(userId, now) == 0) {
+                walletBalanceRepository.addToBalance(userId, delta, now);
+            }
+        });
+    }
+}
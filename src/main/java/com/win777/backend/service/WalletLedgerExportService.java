@@ -0,0 +1,228 @@
+package com.win777.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for bulk export of wallet ledger rows.
+ * Reads through a forward-only JDBC cursor with a fetch size and writes each row straight
+ * to the output as NDJSON or CSV, so no entities are materialized and heap use stays flat
+ * however many rows are exported.
+ */
+@Service
+public class WalletLedgerExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletLedgerExportService.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, user_id, amount, ledger_type, description, reference_id, created_at FROM wallet_ledger";
+
+    private static final String CSV_HEADER = "id,user_id,amount,ledger_type,description,reference_id,created_at";
+
+    /**
+     * Supported output formats.
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public WalletLedgerExportService(JdbcTemplate jdbcTemplate,
+                                     ObjectMapper objectMapper,
+                                     @Value("${wallet.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Streams ledger rows, oldest first, matching the optional user and creation-time filters.
+     * Runs in a read-only transaction: PostgreSQL only honours the fetch size with autocommit off.
+     * 
+     * @param userId the user to export, or null for all users
+     * @param from inclusive lower bound on created_at, or null
+     * @param to exclusive upper bound on created_at, or null
+     * @param format the output format
+     * @param output the stream to write to; flushed but not closed
+     * @return the number of rows written
+     * @throws IllegalArgumentException if the time range is empty
+     */
+    @Transactional(readOnly = true)
+    public long export(UUID userId, LocalDateTime from, LocalDateTime to, Format format, OutputStream output) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Export range start must be before its end");
+        }
+        long startNanos = System.nanoTime();
+
+        // 1. Build the filtered query; ordering comes from the (user_id, created_at, id) or created_at index
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            params.add(userId);
+        }
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        };
+
+        // 2. Write each row as it arrives from the cursor
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+            long[] rows = {0};
+            jdbcTemplate.query(statement, resultSet -> {
+                try {
+                    rowWriter.write(resultSet);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write ledger export", e);
+                }
+            });
+            rowWriter.finish();
+            writer.flush();
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            logger.info("Exported {} wallet ledger rows as {} in {} ms", rows[0], format, elapsedMillis);
+            return rows[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write ledger export", e);
+        }
+    }
+
+    /**
+     * Writes result set rows in one output format.
+     */
+    private interface RowWriter {
+
+        void write(ResultSet row) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON object per line.
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeStringField("id", row.getString("id"));
+            generator.writeStringField("userId", row.getString("user_id"));
+            generator.writeNumberField("amount", row.getBigDecimal("amount"));
+            generator.writeStringField("ledgerType", row.getString("ledger_type"));
+            generator.writeStringField("description", row.getString("description"));
+            generator.writeStringField("referenceId", row.getString("reference_id"));
+            generator.writeStringField("createdAt", row.getTimestamp("created_at").toLocalDateTime().toString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row.
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            BigDecimal amount = row.getBigDecimal("amount");
+            writer.write(row.getString("id"));
+            writer.write(',');
+            writer.write(row.getString("user_id"));
+            writer.write(',');
+            writer.write(amount.toPlainString());
+            writer.write(',');
+            writer.write(row.getString("ledger_type"));
+            writer.write(',');
+            writeQuoted(row.getString("description"));
+            writer.write(',');
+            writeQuoted(row.getString("reference_id"));
+            writer.write(',');
+            writer.write(row.getTimestamp("created_at").toLocalDateTime().toString());
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private void writeQuoted(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
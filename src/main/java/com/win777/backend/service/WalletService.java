@@ -1,36 +1,93 @@
 package com.win777.backend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.win777.backend.dto.TransactionDto;
 import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
 import com.win777.backend.repository.WalletLedgerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Service class for wallet operations.
  * Provides read-only access to wallet balance and transaction history.
+ * Balances are served from a bounded cache that ledger appends invalidate once they commit.
  */
 @Service
 public class WalletService {
 
     private final WalletLedgerRepository walletLedgerRepository;
+    private final WalletBalanceService walletBalanceService;
+    private final Cache<UUID, BigDecimal> balanceCache;
 
-    public WalletService(WalletLedgerRepository walletLedgerRepository) {
+    public WalletService(WalletLedgerRepository walletLedgerRepository,
+                         WalletBalanceService walletBalanceService,
+                         MeterRegistry meterRegistry,
+                         @Value("${wallet.balance.cache.enabled:true}") boolean cacheEnabled,
+                         @Value("${wallet.balance.cache.max-size:100000}") long cacheMaxSize,
+                         @Value("${wallet.balance.cache.ttl:30s}") Duration cacheTtl) {
         this.walletLedgerRepository = walletLedgerRepository;
+        this.walletBalanceService = walletBalanceService;
+        if (cacheEnabled) {
+            // The TTL only bounds staleness from writers that bypass the ledger events
+            this.balanceCache = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfterWrite(cacheTtl)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, balanceCache, "walletBalances");
+        } else {
+            this.balanceCache = null;
+        }
     }
 
     /**
      * Gets the wallet balance for a user.
-     * Calculates the balance by summing all ledger entries.
+     * Served from the balance cache, loading the materialized balance on a miss.
      * 
      * @param userId the user ID
      * @return the wallet balance
      */
     public BigDecimal getBalance(UUID userId) {
-        return walletLedgerRepository.calculateBalance(userId);
+        if (balanceCache == null) {
+            return walletBalanceService.getBalance(userId);
+        }
+        // An invalidation racing this load waits for it, then removes the loaded value
+        return balanceCache.get(userId, walletBalanceService::getBalance);
+    }
+
+    /**
+     * Drops cached balances of the users whose ledger changed, once the change is committed.
+     * Runs after commit so a concurrent read cannot cache the pre-commit balance again.
+     * 
+     * @param event the ledger append
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLedgerCommitted(WalletLedgerAppendedEvent event) {
+        if (balanceCache == null) {
+            return;
+        }
+        for (WalletLedger entry : event.entries()) {
+            balanceCache.invalidate(entry.getUser().getId());
+        }
     }
 
     /**
@@ -44,4 +101,82 @@ public class WalletService {
     public Page<WalletLedger> getTransactionHistory(UUID userId, Pageable pageable) {
         return walletLedgerRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
+
+    /**
+     * Gets one offset page of transaction history as DTOs, without a total count.
+     * 
+     * @param userId the user ID
+     * @param pageable pagination parameters
+     * @return slice of transactions ordered by creation date descending
+     */
+    public Slice<TransactionDto> getTransactionSlice(UUID userId, Pageable pageable) {
+        return walletLedgerRepository.findTransactionSliceByUserId(userId, pageable);
+    }
+
+    /**
+     * Gets one page of transaction history by keyset pagination on (created_at, id).
+     * Unlike the offset variant this issues no count query, and deep pages cost the same as the first.
+     * 
+     * @param userId the user ID
+     * @param cursor the cursor returned with the previous page, or null/blank for the first page
+     * @param size the page size
+     * @return the entries and the cursor of the next page (null on the last page)
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public TransactionSlice getTransactionHistory(UUID userId, String cursor, int size) {
+        // 1. Fetch one extra row to learn whether another page follows
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<WalletLedger> entries;
+        if (cursor == null || cursor.isBlank()) {
+            entries = walletLedgerRepository.findFirstByUserIdKeyset(userId, limit);
+        } else {
+            CursorPosition position = decodeCursor(cursor);
+            entries = walletLedgerRepository.findByUserIdKeysetAfter(userId, position.createdAt(), position.id(), limit);
+        }
+
+        // 2. Trim the probe row and point the cursor at the last entry returned
+        if (entries.size() <= size) {
+            return new TransactionSlice(entries, null);
+        }
+        List<WalletLedger> page = entries.subList(0, size);
+        WalletLedger last = page.get(size - 1);
+        return new TransactionSlice(page, encodeCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    /**
+     * Encodes a (created_at, id) position as an opaque URL-safe cursor.
+     */
+    private static String encodeCursor(LocalDateTime createdAt, UUID id) {
+        String position = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor}.
+     */
+    private static CursorPosition decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new CursorPosition(LocalDateTime.parse(position.substring(0, separator)),
+                    UUID.fromString(position.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * A page of transaction history and the cursor of the page after it.
+     *
+     * @param entries the ledger entries, newest first
+     * @param nextCursor the cursor of the next page, or null on the last page
+     */
+    public record TransactionSlice(List<WalletLedger> entries, String nextCursor) {
+    }
+
+    private record CursorPosition(LocalDateTime createdAt, UUID id) {
+    }
 }
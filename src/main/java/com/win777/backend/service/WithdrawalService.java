@@ -1,5 +1,6 @@
 package com.win777.backend.service;
 
+import com.win777.backend.dto.WithdrawalResponse;
 import com.win777.backend.entity.User;
 import com.win777.backend.entity.WalletLedger;
 import com.win777.backend.entity.Withdrawal;
@@ -10,6 +11,7 @@ import com.win777.backend.repository.WalletLedgerRepository;
 import com.win777.backend.repository.WithdrawalRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,13 +28,16 @@ public class WithdrawalService {
     private final WithdrawalRepository withdrawalRepository;
     private final UserRepository userRepository;
     private final WalletLedgerRepository walletLedgerRepository;
+    private final WalletBalanceService walletBalanceService;
 
     public WithdrawalService(WithdrawalRepository withdrawalRepository,
                             UserRepository userRepository,
-                            WalletLedgerRepository walletLedgerRepository) {
+                            WalletLedgerRepository walletLedgerRepository,
+                            WalletBalanceService walletBalanceService) {
         this.withdrawalRepository = withdrawalRepository;
         this.userRepository = userRepository;
         this.walletLedgerRepository = walletLedgerRepository;
+        this.walletBalanceService = walletBalanceService;
     }
 
     /**
@@ -58,8 +63,8 @@ public class WithdrawalService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        // Check balance
-        BigDecimal balance = walletLedgerRepository.calculateBalance(userId);
+        // Check balance; the row lock makes concurrent withdrawals for this user take turns
+        BigDecimal balance = walletBalanceService.lockBalance(userId);
         if (balance.compareTo(amount) < 0) {
             throw new IllegalStateException("Insufficient balance for withdrawal");
         }
@@ -101,6 +106,17 @@ public class WithdrawalService {
         return withdrawalRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
 
+    /**
+     * Gets one offset page of a user's withdrawals as response DTOs, without a total count.
+     * 
+     * @param userId the user ID
+     * @param pageable pagination parameters
+     * @return slice of withdrawals ordered by creation date descending
+     */
+    public Slice<WithdrawalResponse> getWithdrawalSlice(UUID userId, Pageable pageable) {
+        return withdrawalRepository.findResponseSliceByUserId(userId, pageable);
+    }
+
     /**
      * Gets withdrawals by status for a user.
      * Returns paginated withdrawals ordered by creation date descending.
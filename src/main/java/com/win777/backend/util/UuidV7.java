@@ -0,0 +1,54 @@
+package com.win777.backend.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Time-ordered UUIDs (RFC 9562 version 7).
+ * The top 48 bits are the Unix epoch millisecond, so new keys land at the right edge of a
+ * B-tree index instead of on random pages. Within one millisecond the 12-bit rand_a field
+ * counts up from a random start, keeping IDs from one JVM strictly increasing.
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private static long lastMillis;
+    private static int sequence;
+
+    private UuidV7() {
+    }
+
+    /**
+     * Generates a new version 7 UUID.
+     *
+     * @return a UUID greater than every UUID previously generated by this JVM
+     */
+    public static UUID generate() {
+        long millis;
+        int seq;
+        LOCK.lock();
+        try {
+            millis = System.currentTimeMillis();
+            if (millis > lastMillis) {
+                lastMillis = millis;
+                // Start low in the 12-bit space so the counter rarely overflows
+                sequence = RANDOM.nextInt(0x800);
+            } else if (++sequence > 0xFFF) {
+                // Counter exhausted (or the clock went back): borrow the next millisecond
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            seq = sequence;
+        } finally {
+            LOCK.unlock();
+        }
+
+        long msb = (millis << 16) | 0x7000L | seq;
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,18 @@
+package com.win777.backend.util;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates the annotated UUID primary key as a time-ordered {@link UuidV7}.
+ * Use instead of {@code @GeneratedValue(strategy = GenerationType.UUID)} on append-heavy tables.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface UuidV7Id {
+}
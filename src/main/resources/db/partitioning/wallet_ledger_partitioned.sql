@@ -0,0 +1,49 @@
+-- Converts wallet_ledger into a table range-partitioned by month on created_at (PostgreSQL 12+).
+--
+-- Run once, in a maintenance window, with the application stopped:
+--   psql -v ON_ERROR_STOP=1 -f wallet_ledger_partitioned.sql
+-- Afterwards set wallet.ledger.partitioning.enabled=true; WalletLedgerPartitionManager then
+-- creates future partitions. The old table is kept as wallet_ledger_unpartitioned until it is
+-- dropped by hand after verification.
+--
+-- A partitioned table's primary key must include the partition key, so it becomes
+-- (id, created_at). IDs are still unique: they are generated UUIDs, and the mapping keeps id as @Id.
+
+BEGIN;
+
+ALTER TABLE wallet_ledger RENAME TO wallet_ledger_unpartitioned;
+ALTER TABLE wallet_ledger_unpartitioned RENAME CONSTRAINT wallet_ledger_pkey TO wallet_ledger_unpartitioned_pkey;
+ALTER INDEX IF EXISTS idx_wallet_ledger_user_created RENAME TO idx_wallet_ledger_unpartitioned_user_created;
+ALTER INDEX IF EXISTS idx_wallet_ledger_created RENAME TO idx_wallet_ledger_unpartitioned_created;
+
+-- Same columns, defaults and CHECK constraints (ledger_type values)
+CREATE TABLE wallet_ledger (LIKE wallet_ledger_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (created_at);
+
+ALTER TABLE wallet_ledger ADD CONSTRAINT wallet_ledger_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE wallet_ledger ADD CONSTRAINT fk_wallet_ledger_user FOREIGN KEY (user_id) REFERENCES users (id);
+CREATE INDEX idx_wallet_ledger_user_created ON wallet_ledger (user_id, created_at, id);
+CREATE INDEX idx_wallet_ledger_created ON wallet_ledger (created_at);
+
+-- Catches rows outside every monthly range; the partition manager keeps it empty
+CREATE TABLE wallet_ledger_default PARTITION OF wallet_ledger DEFAULT;
+
+-- One partition per month from the oldest row through three months ahead
+DO $$
+DECLARE
+    month_start date := date_trunc('month', COALESCE((SELECT min(created_at) FROM wallet_ledger_unpartitioned), now()));
+    last_month date := date_trunc('month', now()) + interval '3 months';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF wallet_ledger FOR VALUES FROM (%L) TO (%L)',
+                       'wallet_ledger_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM'),
+                       month_start, month_start + interval '1 month');
+        month_start := month_start + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO wallet_ledger SELECT * FROM wallet_ledger_unpartitioned;
+
+COMMIT;
+
+ANALYZE wallet_ledger;
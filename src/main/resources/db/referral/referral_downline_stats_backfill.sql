@@ -0,0 +1,27 @@
+-- Rebuilds referral_downline_stats from referral_ancestors and wallet_ledger (PostgreSQL).
+--
+-- Registrations and ledger appends keep the table current from the moment it exists;
+-- users and bonuses from before then are counted by this script.
+-- Run once, after referral_ancestors has been backfilled, with registrations and completions stopped:
+--   psql -v ON_ERROR_STOP=1 -f referral_downline_stats_backfill.sql
+-- Rerunning it recomputes every row, so it also repairs drifted counters.
+
+BEGIN;
+
+INSERT INTO referral_downline_stats (user_id, reward_level, member_count, earnings, updated_at)
+SELECT ancestor_id, depth, COUNT(*), 0, now()
+FROM referral_ancestors
+GROUP BY ancestor_id, depth
+ON CONFLICT (user_id, reward_level) DO UPDATE
+SET member_count = EXCLUDED.member_count, updated_at = EXCLUDED.updated_at;
+
+-- 'REFERRAL_LEVEL_' is 15 characters; the level number follows it
+INSERT INTO referral_downline_stats (user_id, reward_level, member_count, earnings, updated_at)
+SELECT user_id, CAST(substring(ledger_type FROM 16) AS integer), 0, SUM(amount), now()
+FROM wallet_ledger
+WHERE ledger_type LIKE 'REFERRAL_LEVEL_%'
+GROUP BY user_id, ledger_type
+ON CONFLICT (user_id, reward_level) DO UPDATE
+SET earnings = EXCLUDED.earnings, updated_at = EXCLUDED.updated_at;
+
+COMMIT;
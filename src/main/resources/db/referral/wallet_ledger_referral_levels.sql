@@ -0,0 +1,18 @@
+-- Widens the wallet_ledger.ledger_type CHECK constraint to REFERRAL_LEVEL_4 .. REFERRAL_LEVEL_10 (PostgreSQL).
+--
+-- ddl-auto=update adds new tables and columns but never rewrites an existing CHECK constraint,
+-- so databases created before the extra referral levels reject their ledger rows.
+-- Run once before configuring a referral_reward_levels row deeper than level 3:
+--   psql -v ON_ERROR_STOP=1 -f wallet_ledger_referral_levels.sql
+-- On a partitioned wallet_ledger the constraint is replaced on every partition.
+
+BEGIN;
+
+ALTER TABLE wallet_ledger DROP CONSTRAINT IF EXISTS wallet_ledger_ledger_type_check;
+ALTER TABLE wallet_ledger ADD CONSTRAINT wallet_ledger_ledger_type_check CHECK (ledger_type IN (
+    'EARNINGS',
+    'REFERRAL_LEVEL_1', 'REFERRAL_LEVEL_2', 'REFERRAL_LEVEL_3', 'REFERRAL_LEVEL_4', 'REFERRAL_LEVEL_5',
+    'REFERRAL_LEVEL_6', 'REFERRAL_LEVEL_7', 'REFERRAL_LEVEL_8', 'REFERRAL_LEVEL_9', 'REFERRAL_LEVEL_10',
+    'WITHDRAWAL', 'ADMIN_CREDIT', 'ADMIN_DEBIT'));
+
+COMMIT;
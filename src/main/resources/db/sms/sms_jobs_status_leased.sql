@@ -0,0 +1,14 @@
+-- Widens the sms_jobs.status CHECK constraint to allow LEASED (PostgreSQL).
+--
+-- ddl-auto=update adds new tables and columns but never rewrites an existing CHECK constraint,
+-- so databases created before leased dispatch existed reject the first lease write.
+-- Run once before setting sms.dispatch.enabled=true:
+--   psql -v ON_ERROR_STOP=1 -f sms_jobs_status_leased.sql
+
+BEGIN;
+
+ALTER TABLE sms_jobs DROP CONSTRAINT IF EXISTS sms_jobs_status_check;
+ALTER TABLE sms_jobs ADD CONSTRAINT sms_jobs_status_check CHECK (status IN (
+    'PENDING', 'LEASED', 'CLAIMED', 'COMPLETED', 'FAILED'));
+
+COMMIT;
@@ -0,0 +1,26 @@
+package com.win777.backend;
+
+import org.hibernate.dialect.H2Dialect;
+
+/**
+ * H2 dialect that renders SKIP LOCKED.
+ * H2 2.x supports FOR UPDATE SKIP LOCKED, but Hibernate's H2Dialect does not emit it,
+ * so repository tests would otherwise silently fall back to a blocking FOR UPDATE.
+ */
+public class H2SkipLockedDialect extends H2Dialect {
+
+    @Override
+    public boolean supportsSkipLocked() {
+        return true;
+    }
+
+    @Override
+    public String getForUpdateSkipLockedString() {
+        return " for update skip locked";
+    }
+
+    @Override
+    public String getForUpdateSkipLockedString(String aliases) {
+        return getForUpdateSkipLockedString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.win777.backend.interceptor;
+
+import com.win777.backend.service.RateLimitService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitInterceptorTest {
+
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor(new RateLimitService());
+
+    @Test
+    void testPreHandle_SingleAndBatchClaimsShareBucket() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(interceptor.preHandle(request("/api/sms-tasks/claim"), new MockHttpServletResponse(), null));
+            assertTrue(interceptor.preHandle(request("/api/sms-tasks/claim-batch"), new MockHttpServletResponse(), null));
+        }
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("/api/sms-tasks/claim-batch"), rejected, null));
+        assertEquals(429, rejected.getStatus());
+        assertFalse(interceptor.preHandle(request("/api/sms-tasks/claim"), new MockHttpServletResponse(), null));
+
+        // Other limited endpoints keep their own bucket
+        assertTrue(interceptor.preHandle(request("/auth/login"), new MockHttpServletResponse(), null));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr("203.0.113.7");
+        return request;
+    }
+}
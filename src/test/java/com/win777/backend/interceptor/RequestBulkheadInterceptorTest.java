@@ -0,0 +1,47 @@
+package com.win777.backend.interceptor;
+
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestBulkheadInterceptorTest {
+
+    private final RequestBulkheadInterceptor interceptor =
+            new RequestBulkheadInterceptor(true, 1, Duration.ofMillis(10));
+
+    @Test
+    void testPreHandle_RejectsWith503WhenFull() throws Exception {
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(first, firstResponse, null));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), rejected, null));
+        assertEquals(503, rejected.getStatus());
+
+        interceptor.afterCompletion(first, firstResponse, null, null);
+        assertEquals(1, interceptor.availablePermits());
+    }
+
+    @Test
+    void testAsyncRequest_ReleasesPermitWhenParkedAndOnlyOnce() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+
+        // Long-poll parked: permit returned
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertEquals(1, interceptor.availablePermits());
+
+        // Async dispatch writing the result takes no permit and releases nothing
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(request, response, null));
+        interceptor.afterCompletion(request, response, null, null);
+        assertEquals(1, interceptor.availablePermits());
+    }
+}
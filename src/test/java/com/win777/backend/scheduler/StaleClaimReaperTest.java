@@ -0,0 +1,128 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.service.SmsJobAvailabilityNotifier;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Chunked reclaim of stale claims against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reaper;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StaleClaimReaperTest {
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SmsJobAvailabilityNotifier notifier;
+    private StaleClaimReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        notifier = mock(SmsJobAvailabilityNotifier.class);
+        // Chunk size smaller than the stale set so the keyset loop runs several times
+        reaper = new StaleClaimReaper(smsJobRepository, transactionManager, notifier, meterRegistry,
+                true, Duration.ofMinutes(30), 3);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = new User();
+            user.setUsername("reaper");
+            user.setEmail("reaper@example.com");
+            user.setPasswordHash("hash");
+            user.setPhoneNumber("+10000000002");
+            user.setReferralCode("REFREAPER");
+            user = userRepository.save(user);
+
+            LocalDateTime now = LocalDateTime.now();
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                // 7 abandoned claims, 3 recent ones
+                jobs.add(claimedJob(user, i, i < 7 ? now.minusHours(2) : now.minusMinutes(1)));
+            }
+            SMSJob completed = claimedJob(user, 10, now.minusHours(2));
+            completed.setStatus(SMSJobStatus.COMPLETED);
+            jobs.add(completed);
+            smsJobRepository.saveAll(jobs);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReclaimStaleClaims_ResetsOnlyStaleClaimedJobs() {
+        int reclaimed = reaper.reclaimStaleClaims();
+
+        assertEquals(7, reclaimed);
+        Map<SMSJobStatus, Long> counts = smsJobRepository.findAll().stream()
+                .collect(Collectors.groupingBy(SMSJob::getStatus, Collectors.counting()));
+        assertEquals(7L, counts.get(SMSJobStatus.PENDING));
+        assertEquals(3L, counts.get(SMSJobStatus.CLAIMED));
+        assertEquals(1L, counts.get(SMSJobStatus.COMPLETED));
+        assertTrue(smsJobRepository.findAll().stream()
+                .filter(job -> job.getStatus() == SMSJobStatus.PENDING)
+                .allMatch(job -> job.getClaimedAt() == null));
+
+        DistributionSummary summary = meterRegistry.get("sms.jobs.reclaimed").summary();
+        assertEquals(1, summary.count());
+        assertEquals(7.0, summary.totalAmount());
+        verify(notifier).publish(7);
+
+        // Nothing left to reclaim on the next run
+        assertEquals(0, reaper.reclaimStaleClaims());
+    }
+
+    private SMSJob claimedJob(User user, int i, LocalDateTime claimedAt) {
+        SMSJob job = new SMSJob();
+        job.setUser(user);
+        job.setRecipientNumber("+1555200" + i);
+        job.setMessageContent("Message " + i);
+        job.setStatus(SMSJobStatus.CLAIMED);
+        job.setClaimedAt(claimedAt);
+        return job;
+    }
+}
@@ -0,0 +1,179 @@
+package com.win777.backend.scheduler;
+
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.WalletBalanceCheckpoint;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletBalanceCheckpointRepository;
+import com.win777.backend.repository.WalletBalanceRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import com.win777.backend.service.WalletBalanceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkpoint balance mode: reads combine the checkpoint with newer entries, and rolling
+ * moves checkpoints forward without double counting, against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkpoints;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "wallet.balance.mode=checkpoint"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(WalletBalanceService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WalletCheckpointRollerTest {
+
+    @Autowired
+    private WalletBalanceService walletBalanceService;
+
+    @Autowired
+    private WalletBalanceCheckpointRepository walletBalanceCheckpointRepository;
+
+    @Autowired
+    private WalletBalanceRepository walletBalanceRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setUsername("saver" + i);
+            user.setEmail("saver" + i + "@example.com");
+            user.setPasswordHash("hash");
+            user.setPhoneNumber("+1000000002" + i);
+            user.setReferralCode("REFSAVER" + i);
+            users.add(transactionTemplate.execute(status -> userRepository.save(user)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        walletBalanceCheckpointRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRoll_CheckpointPlusNewerEntries() {
+        User user = users.get(0);
+        insertEntry(user, "10.00", Duration.ofHours(2));
+        insertEntry(user, "5.00", Duration.ofHours(1));
+        insertEntry(user, "1.00", Duration.ofSeconds(30));
+
+        assertEquals(1, roller(Duration.ofMinutes(5)).rollCheckpoints());
+
+        WalletBalanceCheckpoint checkpoint = walletBalanceCheckpointRepository.findById(user.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("15.00").compareTo(checkpoint.getBalance()));
+        assertBalance(user, "16.00");
+
+        // A second roll past the newest entry folds it in exactly once
+        assertEquals(1, roller(Duration.ZERO).rollCheckpoints());
+        assertEquals(0, roller(Duration.ZERO).rollCheckpoints());
+        checkpoint = walletBalanceCheckpointRepository.findById(user.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("16.00").compareTo(checkpoint.getBalance()));
+        assertBalance(user, "16.00");
+    }
+
+    @Test
+    void testRoll_ParallelChunksCoverAllUsers() {
+        for (int i = 0; i < users.size(); i++) {
+            insertEntry(users.get(i), String.valueOf(i + 1), Duration.ofHours(1));
+        }
+
+        assertEquals(users.size(), roller(Duration.ofMinutes(5)).rollCheckpoints());
+
+        for (int i = 0; i < users.size(); i++) {
+            assertBalance(users.get(i), String.valueOf(i + 1));
+        }
+    }
+
+    @Test
+    void testAdvance_RejectsStaleHorizon() {
+        User user = users.get(0);
+        insertEntry(user, "3.00", Duration.ofHours(1));
+        roller(Duration.ofMinutes(5)).rollCheckpoints();
+        LocalDateTime stale = LocalDateTime.now().minusDays(1);
+
+        Integer advanced = transactionTemplate.execute(status -> walletBalanceCheckpointRepository.advance(
+                user.getId(), new BigDecimal("3.00"), stale, LocalDateTime.now(), LocalDateTime.now()));
+
+        assertEquals(0, advanced);
+        assertBalance(user, "3.00");
+    }
+
+    @Test
+    void testAppend_DoesNotTouchRunningBalances() {
+        User user = users.get(0);
+        transactionTemplate.executeWithoutResult(status -> {
+            WalletLedger entry = new WalletLedger();
+            entry.setUser(user);
+            entry.setAmount(new BigDecimal("7.00"));
+            entry.setLedgerType(LedgerType.EARNINGS);
+            walletLedgerRepository.save(entry);
+        });
+
+        assertTrue(walletBalanceRepository.findBalance(user.getId()).isEmpty());
+        assertBalance(user, "7.00");
+        BigDecimal locked = transactionTemplate.execute(status -> walletBalanceService.lockBalance(user.getId()));
+        assertEquals(0, new BigDecimal("7.00").compareTo(locked));
+    }
+
+    private WalletCheckpointRoller roller(Duration lag) {
+        return new WalletCheckpointRoller(userRepository, walletBalanceCheckpointRepository, walletBalanceService,
+                transactionManager, lag, 2, 3);
+    }
+
+    private void assertBalance(User user, String expected) {
+        BigDecimal balance = walletBalanceService.getBalance(user.getId());
+        assertEquals(0, new BigDecimal(expected).compareTo(balance));
+        assertEquals(0, walletLedgerRepository.calculateBalance(user.getId()).compareTo(balance));
+    }
+
+    private void insertEntry(User user, String amount, Duration age) {
+        jdbcTemplate.update("INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, created_at) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), user.getId(), new BigDecimal(amount), LedgerType.EARNINGS.name(),
+                Timestamp.valueOf(LocalDateTime.now().minus(age)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.win777.backend.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletLedgerPartitionManagerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testCreatePartitionSql_MonthBounds() {
+        assertEquals("CREATE TABLE IF NOT EXISTS wallet_ledger_y2024m12 PARTITION OF wallet_ledger " +
+                        "FOR VALUES FROM ('2024-12-01') TO ('2025-01-01')",
+                WalletLedgerPartitionManager.createPartitionSql(YearMonth.of(2024, 12)));
+    }
+
+    @Test
+    void testPlannedMonths_CurrentAndAhead() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, true, 2, 0, "ledger_archive");
+
+        assertEquals(List.of(YearMonth.of(2024, 11), YearMonth.of(2024, 12), YearMonth.of(2025, 1)),
+                manager.plannedMonths(YearMonth.of(2024, 11)));
+    }
+
+    @Test
+    void testExpiredPartitions_OnlyWholeMonthsBeforeRetention() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, true, 3, 6, "ledger_archive");
+        List<String> partitions = List.of("wallet_ledger_default", "wallet_ledger_y2024m04",
+                "wallet_ledger_y2024m05", "wallet_ledger_y2024m06", "wallet_ledger_y2024m11");
+
+        assertEquals(List.of("wallet_ledger_y2024m04", "wallet_ledger_y2024m05"),
+                manager.expiredPartitions(partitions, YearMonth.of(2024, 12)));
+    }
+
+    @Test
+    void testExpiredPartitions_RetentionOffKeepsEverything() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, true, 3, 0, "ledger_archive");
+
+        assertTrue(manager.expiredPartitions(List.of("wallet_ledger_y2000m01"), YearMonth.of(2024, 12)).isEmpty());
+    }
+
+    @Test
+    void testMaintainPartitions_CreatesAheadAndArchivesExpired() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, true, 1, 1, "ledger_archive");
+        String old = WalletLedgerPartitionManager.partitionName(YearMonth.now().minusMonths(3));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(true);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("wallet_ledger_default", old,
+                        WalletLedgerPartitionManager.partitionName(YearMonth.now())));
+
+        assertEquals(3, manager.maintainPartitions());
+
+        verify(jdbcTemplate).execute(WalletLedgerPartitionManager.createPartitionSql(YearMonth.now()));
+        verify(jdbcTemplate).execute(WalletLedgerPartitionManager.createPartitionSql(YearMonth.now().plusMonths(1)));
+        InOrder archive = inOrder(jdbcTemplate);
+        archive.verify(jdbcTemplate).execute("CREATE SCHEMA IF NOT EXISTS ledger_archive");
+        archive.verify(jdbcTemplate).execute("ALTER TABLE wallet_ledger DETACH PARTITION " + old);
+        archive.verify(jdbcTemplate).execute("ALTER TABLE " + old + " SET SCHEMA ledger_archive");
+    }
+
+    @Test
+    void testMaintainPartitions_SkipsUnpartitionedTable() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, true, 3, 0, "ledger_archive");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(false);
+
+        assertEquals(0, manager.maintainPartitions());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testMaintainPartitions_DisabledTouchesNothing() {
+        WalletLedgerPartitionManager manager = new WalletLedgerPartitionManager(jdbcTemplate, false, 3, 0, "ledger_archive");
+
+        assertEquals(0, manager.maintainPartitions());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,183 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.UserDailyEarnings;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserDailyEarningsRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Daily earnings cap enforced through the per-user accumulator against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:earningscap;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DailyEarningsCapTest {
+
+    private static final int JOB_COUNT = 8;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private UserDailyEarningsRepository userDailyEarningsRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID userId;
+    private List<UUID> jobIds;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setMaximumDailyEarnings(new BigDecimal("25.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+
+            User user = new User();
+            user.setUsername("capped");
+            user.setEmail("capped@example.com");
+            user.setPasswordHash("hash");
+            user.setPhoneNumber("+10000000061");
+            user.setReferralCode("REFCAPPED");
+            user = userRepository.save(user);
+            userId = user.getId();
+
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                SMSJob job = new SMSJob();
+                job.setUser(user);
+                job.setRecipientNumber("+1555300" + i);
+                job.setMessageContent("Message " + i);
+                job.setStatus(SMSJobStatus.CLAIMED);
+                job.setClaimedAt(LocalDateTime.now());
+                jobs.add(job);
+            }
+            jobIds = smsJobRepository.saveAll(jobs).stream().map(SMSJob::getId).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        userDailyEarningsRepository.deleteAll();
+        smsJobRepository.deleteAll();
+        smsRateConfigRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testCompleteSmsJob_StopsCreditingAtCap() {
+        smsJobService.completeSmsJob(userId, jobIds.get(0));
+        smsJobService.completeSmsJob(userId, jobIds.get(1));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> smsJobService.completeSmsJob(userId, jobIds.get(2)));
+        assertEquals("Daily earnings limit reached", exception.getMessage());
+
+        assertEquals(SMSJobStatus.CLAIMED, smsJobRepository.findById(jobIds.get(2)).orElseThrow().getStatus());
+        assertEquals(0, new BigDecimal("20.00").compareTo(earnedToday()));
+        assertEquals(2, walletLedgerRepository.count());
+    }
+
+    @Test
+    void testCompleteSmsJobs_BatchOverCapCompletesNothing() {
+        assertThrows(IllegalStateException.class,
+                () -> smsJobService.completeSmsJobs(userId, jobIds.subList(0, 3)));
+
+        assertEquals(2, smsJobService.completeSmsJobs(userId, jobIds.subList(0, 2)));
+        assertEquals(0, new BigDecimal("20.00").compareTo(earnedToday()));
+    }
+
+    @Test
+    void testCompleteSmsJob_ConcurrentCompletionsCannotPassCap() throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger capped = new AtomicInteger();
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(JOB_COUNT);
+
+        for (UUID jobId : jobIds) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    smsJobService.completeSmsJob(userId, jobId);
+                    completed.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    capped.incrementAndGet();
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "Completions did not finish in time");
+
+        assertTrue(errors.isEmpty(), "Unexpected completion errors: " + errors);
+        assertEquals(2, completed.get());
+        assertEquals(JOB_COUNT - 2, capped.get());
+        assertEquals(0, new BigDecimal("20.00").compareTo(earnedToday()));
+        assertEquals(2, userRepository.findById(userId).orElseThrow().getDailySmsSentCount());
+    }
+
+    private BigDecimal earnedToday() {
+        return userDailyEarningsRepository.findById(new UserDailyEarnings.Key(userId, LocalDate.now()))
+                .map(UserDailyEarnings::getAmount)
+                .orElse(BigDecimal.ZERO);
+    }
+}
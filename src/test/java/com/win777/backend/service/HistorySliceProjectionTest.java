@@ -0,0 +1,208 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.TransactionDto;
+import com.win777.backend.dto.WithdrawalResponse;
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.entity.Withdrawal;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import com.win777.backend.repository.WithdrawalRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Slice/DTO-projection history queries against the Page/entity queries they replace, on an in-memory database.
+ * Checks both return the same rows, and that the projections skip the count query and entity hydration.
+ * The gated benchmark logs bytes allocated per request on each path.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:historyslice;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HistorySliceProjectionTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistorySliceProjectionTest.class);
+
+    private static final int ROWS = 50;
+    private static final int PAGE_SIZE = 20;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private WithdrawalRepository withdrawalRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private TransactionTemplate readTransaction;
+    private Statistics statistics;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        User user = new User();
+        user.setUsername("historian");
+        user.setEmail("historian@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber("+10000000071");
+        user.setReferralCode("REFHISTORY");
+        userId = new TransactionTemplate(transactionManager).execute(status -> userRepository.save(user).getId());
+
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp createdAt = Timestamp.valueOf(BASE.plusMinutes(i));
+            jdbcTemplate.update(
+                    "INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, description, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    UUID.randomUUID(), userId, new BigDecimal("1.50"), "EARNINGS", "SMS job completion earnings", createdAt);
+            jdbcTemplate.update(
+                    "INSERT INTO withdrawals (id, user_id, amount, status, payment_method, payment_details, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    UUID.randomUUID(), userId, new BigDecimal("5.00"), "PENDING", "UPI", "user@upi", createdAt, createdAt);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        withdrawalRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testTransactionSlice_MatchesPageWithoutCountOrEntities() {
+        PageRequest pageable = PageRequest.of(1, PAGE_SIZE);
+        List<TransactionDto> expected = readTransaction.execute(status -> pagedTransactions(pageable));
+
+        statistics.clear();
+        Slice<TransactionDto> slice = readTransaction.execute(status ->
+                walletLedgerRepository.findTransactionSliceByUserId(userId, pageable));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(slice.hasNext());
+        assertEquals(PAGE_SIZE, slice.getNumberOfElements());
+        assertEquals(expected.stream().map(TransactionDto::getId).toList(),
+                slice.getContent().stream().map(TransactionDto::getId).toList());
+        assertEquals(BASE.plusMinutes(ROWS - 1 - PAGE_SIZE), slice.getContent().get(0).getCreatedAt());
+    }
+
+    @Test
+    void testWithdrawalSlice_MatchesPageWithoutCountOrEntities() {
+        PageRequest lastPage = PageRequest.of(2, PAGE_SIZE);
+        List<WithdrawalResponse> expected = readTransaction.execute(status -> pagedWithdrawals(lastPage));
+
+        statistics.clear();
+        Slice<WithdrawalResponse> slice = readTransaction.execute(status ->
+                withdrawalRepository.findResponseSliceByUserId(userId, lastPage));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertFalse(slice.hasNext());
+        assertEquals(ROWS - 2 * PAGE_SIZE, slice.getNumberOfElements());
+        assertEquals(expected.stream().map(WithdrawalResponse::getId).toList(),
+                slice.getContent().stream().map(WithdrawalResponse::getId).toList());
+        assertEquals("user@upi", slice.getContent().get(0).getPaymentDetails());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAllocationsPerRequest() {
+        PageRequest pageable = PageRequest.of(1, PAGE_SIZE);
+        measure("transactions page+entities", () -> pagedTransactions(pageable));
+        measure("transactions slice+dto", () -> walletLedgerRepository.findTransactionSliceByUserId(userId, pageable));
+        measure("withdrawals page+entities", () -> pagedWithdrawals(pageable));
+        measure("withdrawals slice+dto", () -> withdrawalRepository.findResponseSliceByUserId(userId, pageable));
+    }
+
+    /**
+     * The Page path the existing controllers use: entity page plus count, then mapped to DTOs.
+     */
+    private List<TransactionDto> pagedTransactions(PageRequest pageable) {
+        Page<WalletLedger> page = walletLedgerRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        return page.map(ledger -> new TransactionDto(ledger.getId(), ledger.getAmount(), ledger.getLedgerType(),
+                ledger.getDescription(), ledger.getReferenceId(), ledger.getCreatedAt())).getContent();
+    }
+
+    private List<WithdrawalResponse> pagedWithdrawals(PageRequest pageable) {
+        Page<Withdrawal> page = withdrawalRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        return page.map(withdrawal -> new WithdrawalResponse(withdrawal.getId(), withdrawal.getAmount(),
+                withdrawal.getStatus(), withdrawal.getPaymentMethod(), withdrawal.getPaymentDetails(),
+                withdrawal.getCreatedAt(), withdrawal.getProcessedAt())).getContent();
+    }
+
+    /**
+     * Logs bytes allocated by this thread per request, each request in its own read-only transaction.
+     */
+    private void measure(String path, Supplier<Object> request) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int warmup = 2_000;
+        int iterations = 5_000;
+
+        for (int i = 0; i < warmup; i++) {
+            readTransaction.execute(status -> request.get());
+        }
+        statistics.clear();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            readTransaction.execute(status -> request.get());
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+        logger.info("{}: {} bytes allocated/request, {} statements/request, {} entities/request, {} us/request",
+                path, allocated / iterations, statistics.getPrepareStatementCount() / iterations,
+                statistics.getEntityLoadCount() / iterations, elapsedNanos / iterations / 1_000);
+    }
+}
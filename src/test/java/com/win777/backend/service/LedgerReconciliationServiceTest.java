@@ -0,0 +1,226 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.ReconciliationReport;
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.Withdrawal;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WithdrawalRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Range-parallel ledger reconciliation against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliation;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerReconciliationServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private WithdrawalRepository withdrawalRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private LedgerReconciliationService reconciliationService;
+    private User user;
+    private User otherUser;
+
+    @BeforeEach
+    void setUp() {
+        WalletBalanceService walletBalanceService = mock(WalletBalanceService.class);
+        when(walletBalanceService.getMode()).thenReturn(WalletBalanceService.Mode.RUNNING);
+        // Odd range count and fetch size so ranges split unevenly and cursors span several fetches
+        reconciliationService = new LedgerReconciliationService(jdbcTemplate, walletBalanceService, transactionManager,
+                false, 7, 3, 2, 100);
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        user = transactionTemplate.execute(status -> userRepository.save(newUser("reconciled", "+10000000051")));
+        otherUser = transactionTemplate.execute(status -> userRepository.save(newUser("bystander", "+10000000052")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_balances");
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        withdrawalRepository.deleteAll();
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReconcile_ConsistentLedger_NoDiscrepancies() {
+        for (int i = 0; i < 5; i++) {
+            insertEntry(user, "1.50", LedgerType.EARNINGS, completedJob(user));
+            insertEntry(otherUser, "1.50", LedgerType.EARNINGS, completedJob(otherUser));
+        }
+        insertEntry(user, "-5.00", LedgerType.WITHDRAWAL, withdrawal(user, "5.00"));
+        insertEntry(user, "2.00", LedgerType.ADMIN_CREDIT, null);
+        insertBalance(user, "4.50");
+        insertBalance(otherUser, "7.50");
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(0, report.getTotalDiscrepancies());
+        assertTrue(report.getSamples().isEmpty());
+        assertEquals(12, report.getLedgerRowsScanned());
+        assertEquals(10, report.getJobsScanned());
+        assertEquals(1, report.getWithdrawalsScanned());
+        assertEquals(7, report.getRanges());
+    }
+
+    @Test
+    void testReconcile_ReportsEachDiscrepancyType() {
+        // Consistent baseline
+        insertEntry(user, "1.50", LedgerType.EARNINGS, completedJob(user));
+
+        // COMPLETED job without earnings
+        UUID unpaidJob = completedJob(user);
+        // Job paid twice
+        UUID doublePaidJob = completedJob(otherUser);
+        insertEntry(otherUser, "1.50", LedgerType.EARNINGS, doublePaidJob);
+        insertEntry(otherUser, "1.50", LedgerType.EARNINGS, doublePaidJob);
+        // Earnings for a job that never completed
+        UUID pendingJob = job(user, SMSJobStatus.CLAIMED);
+        insertEntry(user, "1.50", LedgerType.EARNINGS, pendingJob);
+
+        // Withdrawal without debit
+        UUID undebited = withdrawal(user, "3.00");
+        // Debit of the wrong amount
+        UUID shortDebited = withdrawal(otherUser, "10.00");
+        insertEntry(otherUser, "-1.00", LedgerType.WITHDRAWAL, shortDebited);
+        // Debit without a withdrawal
+        insertEntry(user, "-2.00", LedgerType.WITHDRAWAL, UUID.randomUUID());
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(6, report.getTotalDiscrepancies());
+        assertEquals(1L, report.getDiscrepancyCounts().get("MISSING_EARNING"));
+        assertEquals(1L, report.getDiscrepancyCounts().get("DUPLICATE_EARNING"));
+        assertEquals(1L, report.getDiscrepancyCounts().get("ORPHAN_EARNING"));
+        assertEquals(1L, report.getDiscrepancyCounts().get("MISSING_DEBIT"));
+        assertEquals(1L, report.getDiscrepancyCounts().get("DEBIT_AMOUNT_MISMATCH"));
+        assertEquals(1L, report.getDiscrepancyCounts().get("ORPHAN_DEBIT"));
+        assertNull(report.getDiscrepancyCounts().get("BALANCE_MISMATCH"));
+        assertTrue(report.getSamples().stream().anyMatch(sample ->
+                sample.getType().equals("MISSING_EARNING") && sample.getReferenceId().equals(unpaidJob)));
+        assertTrue(report.getSamples().stream().anyMatch(sample ->
+                sample.getType().equals("MISSING_DEBIT") && sample.getReferenceId().equals(undebited)));
+    }
+
+    @Test
+    void testReconcile_BalanceMismatch() {
+        insertEntry(user, "1.50", LedgerType.EARNINGS, completedJob(user));
+        insertBalance(user, "9.99");
+        insertBalance(otherUser, "0.00");
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(1, report.getTotalDiscrepancies());
+        assertEquals(1L, report.getDiscrepancyCounts().get("BALANCE_MISMATCH"));
+        assertEquals(user.getId(), report.getSamples().get(0).getUserId());
+    }
+
+    @Test
+    void testReconcile_ConcurrentRunRejected() {
+        AtomicBoolean running = (AtomicBoolean) ReflectionTestUtils.getField(reconciliationService, "running");
+        running.set(true);
+
+        assertThrows(IllegalStateException.class, reconciliationService::reconcile);
+    }
+
+    @Test
+    void testRangeStart_TilesUuidSpaceInOrder() {
+        assertEquals(new UUID(0L, 0L), LedgerReconciliationService.rangeStart(0, 4));
+        assertEquals(new UUID(0x4000000000000000L, 0L), LedgerReconciliationService.rangeStart(1, 4));
+        assertEquals(new UUID(0x8000000000000000L, 0L), LedgerReconciliationService.rangeStart(2, 4));
+        assertEquals(new UUID(0xC000000000000000L, 0L), LedgerReconciliationService.rangeStart(3, 4));
+    }
+
+    private UUID completedJob(User owner) {
+        return job(owner, SMSJobStatus.COMPLETED);
+    }
+
+    private UUID job(User owner, SMSJobStatus status) {
+        return transactionTemplate.execute(tx -> {
+            SMSJob job = new SMSJob();
+            job.setUser(owner);
+            job.setRecipientNumber("+15552000000");
+            job.setMessageContent("Reconciled message");
+            job.setStatus(status);
+            return smsJobRepository.save(job).getId();
+        });
+    }
+
+    private UUID withdrawal(User owner, String amount) {
+        return transactionTemplate.execute(tx -> {
+            Withdrawal withdrawal = new Withdrawal();
+            withdrawal.setUser(owner);
+            withdrawal.setAmount(new BigDecimal(amount));
+            withdrawal.setPaymentMethod("UPI");
+            return withdrawalRepository.save(withdrawal).getId();
+        });
+    }
+
+    private void insertEntry(User owner, String amount, LedgerType type, UUID referenceId) {
+        jdbcTemplate.update(
+                "INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, reference_id, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                UUID.randomUUID(), owner.getId(), new BigDecimal(amount), type.name(), referenceId,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void insertBalance(User owner, String balance) {
+        jdbcTemplate.update("INSERT INTO wallet_balances (user_id, balance, updated_at) VALUES (?, ?, ?)",
+                owner.getId(), new BigDecimal(balance), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static User newUser(String username, String phoneNumber) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phoneNumber);
+        user.setReferralCode("REF" + username.toUpperCase());
+        return user;
+    }
+}
@@ -0,0 +1,271 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.ReferralAncestor;
+import com.win777.backend.entity.ReferralRewardLevel;
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.ReferralAncestorRepository;
+import com.win777.backend.repository.ReferralRewardLevelRepository;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserDailyEarningsRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.scheduler.ReferralAncestorBackfill;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * referral_ancestors closure maintenance and its effect on completion cost, against an in-memory database.
+ * Verifies that the number of SQL statements per completion does not grow with the referrer chain.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:referralancestors;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "referral.closure.backfill-on-startup=false",
+        "referral.graph.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserService.class, BCryptPasswordEncoder.class, SMSJobService.class, SmsJobDispatcher.class,
+        SmsJobPartitioner.class, ReferralGraph.class, ReferralAncestorBackfill.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferralAncestorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralAncestorTest.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private ReferralAncestorBackfill referralAncestorBackfill;
+
+    @Autowired
+    private ReferralAncestorRepository referralAncestorRepository;
+
+    @Autowired
+    private ReferralRewardLevelRepository referralRewardLevelRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private UserDailyEarningsRepository userDailyEarningsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        jdbcTemplate.update("DELETE FROM user_daily_earnings");
+        jdbcTemplate.update("DELETE FROM referral_ancestors");
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("DELETE FROM referral_reward_levels");
+        smsJobService.refreshRewardLevels();
+        jdbcTemplate.update("UPDATE users SET referrer_id = NULL");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testRegisterUser_RecordsAncestorsUpToMaxDepth() {
+        int length = ReferralAncestor.MAX_DEPTH + 2;
+        List<User> chain = registerChain(length);
+        User newest = chain.get(length - 1);
+
+        List<UUID> ancestorIds = referralAncestorRepository.findAncestorIds(newest.getId(), ReferralAncestor.MAX_DEPTH);
+        assertEquals(ReferralAncestor.MAX_DEPTH, ancestorIds.size());
+        assertEquals(chain.get(length - 2).getId(), ancestorIds.get(0));
+        assertEquals(chain.get(1).getId(), ancestorIds.get(ReferralAncestor.MAX_DEPTH - 1));
+        assertEquals(List.of(chain.get(length - 2).getId(), chain.get(length - 3).getId()),
+                referralAncestorRepository.findAncestorIds(newest.getId(), 2));
+        assertTrue(referralAncestorRepository.findAncestorIds(chain.get(0).getId(), ReferralAncestor.MAX_DEPTH).isEmpty());
+        // 0 + 1 + ... + MAX_DEPTH rows, then MAX_DEPTH for the last user
+        assertEquals(ReferralAncestor.MAX_DEPTH * (ReferralAncestor.MAX_DEPTH + 1) / 2 + ReferralAncestor.MAX_DEPTH,
+                referralAncestorRepository.count());
+    }
+
+    @Test
+    void testCompleteSmsJob_StatementCountIndependentOfReferrerChain() {
+        List<User> chain = registerChain(4);
+        User referred = chain.get(1);
+        User newest = chain.get(3);
+
+        long referredStatements = completeAndCountStatements(referred);
+        long referredUserLoads = userLoads();
+        long newestStatements = completeAndCountStatements(newest);
+        long newestUserLoads = userLoads();
+
+        // Without ancestor rows the chain is walked through lazy referrer proxies
+        jdbcTemplate.update("DELETE FROM referral_ancestors WHERE descendant_id = ?", newest.getId());
+        long walkedStatements = completeAndCountStatements(newest);
+        long walkedUserLoads = userLoads();
+
+        logger.info("Per completion (statements/user loads): 1 referrer via referral_ancestors {}/{}, "
+                + "3 referrers via referral_ancestors {}/{}, 3 referrers walked {}/{}", referredStatements,
+                referredUserLoads, newestStatements, newestUserLoads, walkedStatements, walkedUserLoads);
+        assertEquals(referredStatements, newestStatements);
+        assertEquals(referredUserLoads, newestUserLoads);
+        assertEquals(1, newestUserLoads);
+        assertTrue(walkedStatements > newestStatements);
+        assertTrue(walkedUserLoads > newestUserLoads);
+        // The referred user's completion pays one level; each newest completion pays three
+        assertEquals(10, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_ledger", Integer.class));
+    }
+
+    @Test
+    void testCompleteSmsJob_ConfiguredDepthPaysEachLevel() {
+        List<User> chain = registerChain(6);
+        User referred = chain.get(1);
+        User newest = chain.get(5);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> referralRewardLevelRepository.saveAll(List.of(
+                new ReferralRewardLevel(1, new BigDecimal("0.0500")),
+                new ReferralRewardLevel(2, new BigDecimal("0.0400")),
+                new ReferralRewardLevel(3, new BigDecimal("0.0300")),
+                new ReferralRewardLevel(4, new BigDecimal("0.0200")),
+                new ReferralRewardLevel(5, new BigDecimal("0.0100")))));
+        smsJobService.refreshRewardLevels();
+
+        long referredStatements = completeAndCountStatements(referred);
+        long newestStatements = completeAndCountStatements(newest);
+
+        logger.info("Statements per completion with 5 reward levels: 1 referrer {}, 5 referrers {}",
+                referredStatements, newestStatements);
+        assertEquals(referredStatements, newestStatements);
+        for (int level = 1; level <= 5; level++) {
+            assertEquals(new BigDecimal("0.50").subtract(new BigDecimal("0.10").multiply(BigDecimal.valueOf(level - 1))),
+                    jdbcTemplate.queryForObject("SELECT amount FROM wallet_ledger WHERE user_id = ? AND ledger_type = ?",
+                            BigDecimal.class, chain.get(5 - level).getId(), LedgerType.referralLevel(level).name()));
+        }
+        assertEquals(8, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_ledger", Integer.class));
+    }
+
+    @Test
+    void testBackfill_FillsAncestorsForExistingUsers() {
+        // Users linked directly, as before referral_ancestors existed
+        UUID[] ids = new UUID[5];
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User referrer = null;
+            for (int i = 0; i < ids.length; i++) {
+                User user = newUser("legacy" + i, "+1000000009" + i);
+                user.setReferrer(referrer);
+                referrer = userRepository.save(user);
+                ids[i] = referrer.getId();
+            }
+        });
+
+        // 0 + 1 + 2 + 3 + 4 rows
+        assertEquals(10, referralAncestorBackfill.backfill());
+        assertEquals(List.of(ids[3], ids[2], ids[1], ids[0]),
+                referralAncestorRepository.findAncestorIds(ids[4], ReferralAncestor.MAX_DEPTH));
+        assertEquals(0, referralAncestorBackfill.backfill());
+    }
+
+    /**
+     * Registers {@code length} users, each referred by the previous one.
+     */
+    private List<User> registerChain(int length) {
+        User[] users = new User[length];
+        String referralCode = null;
+        for (int i = 0; i < length; i++) {
+            users[i] = userService.registerUser("chain" + i, "chain" + i + "@example.com", "password",
+                    "+1000000008" + i, referralCode);
+            referralCode = users[i].getReferralCode();
+        }
+        return List.of(users);
+    }
+
+    /**
+     * Completes a fresh claimed job for the user and returns the statements Hibernate prepared.
+     */
+    private long completeAndCountStatements(User user) {
+        UUID jobId = new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = new SMSJob();
+            job.setUser(userRepository.getReferenceById(user.getId()));
+            job.setRecipientNumber("+15554000000");
+            job.setMessageContent("Referral message");
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(LocalDateTime.now());
+            // Accrual then costs one statement on every run, not three on the user's first of the day
+            userDailyEarningsRepository.insertIfAbsent(user.getId(), LocalDate.now());
+            return smsJobRepository.save(job).getId();
+        });
+
+        statistics.clear();
+        smsJobService.completeSmsJob(user.getId(), jobId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long userLoads() {
+        return statistics.getEntityStatistics(User.class.getName()).getLoadCount();
+    }
+
+    private static User newUser(String username, String phoneNumber) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phoneNumber);
+        user.setReferralCode("REF" + username.toUpperCase());
+        return user;
+    }
+}
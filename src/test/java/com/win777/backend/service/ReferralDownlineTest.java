@@ -0,0 +1,274 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.DownlineLevelDto;
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Incrementally maintained downline statistics against an in-memory database.
+ * Checks the counters against the referral tree and ledger they summarize, and that reading them is one query.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:referraldownline;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserService.class, BCryptPasswordEncoder.class, SMSJobService.class, SmsJobDispatcher.class,
+        SmsJobPartitioner.class, ReferralGraph.class, ReferralDownlineService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferralDownlineTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private ReferralDownlineService referralDownlineService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        jdbcTemplate.update("DELETE FROM user_daily_earnings");
+        jdbcTemplate.update("DELETE FROM referral_downline_stats");
+        jdbcTemplate.update("DELETE FROM referral_ancestors");
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("UPDATE users SET referrer_id = NULL");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testRegisterUser_CountsMembersPerLevel() {
+        User root = register("root", null);
+        User left = register("left", root);
+        User right = register("right", root);
+        register("leftChild", left);
+        register("leftChild2", left);
+        register("rightChild", right);
+        User grandChild = register("grandChild", userRepository.findByUsername("leftChild").orElseThrow());
+
+        assertLevels(root, new long[]{2, 3, 1});
+        assertLevels(left, new long[]{2, 1});
+        assertLevels(right, new long[]{1});
+        assertTrue(referralDownlineService.getDownline(grandChild.getId()).isEmpty());
+    }
+
+    @Test
+    void testCompleteSmsJob_AddsReferralEarningsPerLevel() {
+        User root = register("root", null);
+        User middle = register("middle", root);
+        User newest = register("newest", middle);
+
+        smsJobService.completeSmsJob(newest.getId(), claimedJob(newest));
+        smsJobService.completeSmsJobs(newest.getId(), List.of(claimedJob(newest), claimedJob(newest)));
+        smsJobService.completeSmsJob(middle.getId(), claimedJob(middle));
+
+        List<DownlineLevelDto> rootLevels = referralDownlineService.getDownline(root.getId());
+        assertEquals(new BigDecimal("1.00"), rootLevels.get(0).getEarnings());
+        assertEquals(new BigDecimal("0.60"), rootLevels.get(1).getEarnings());
+        assertEquals(new BigDecimal("3.00"), referralDownlineService.getDownline(middle.getId()).get(0).getEarnings());
+
+        // The counters agree with the ledger they summarize
+        for (User user : List.of(root, middle)) {
+            BigDecimal counted = referralDownlineService.getDownline(user.getId()).stream()
+                    .map(DownlineLevelDto::getEarnings)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(0, counted.compareTo(jdbcTemplate.queryForObject(
+                    "SELECT SUM(amount) FROM wallet_ledger WHERE user_id = ? AND ledger_type LIKE 'REFERRAL_LEVEL_%'",
+                    BigDecimal.class, user.getId())));
+        }
+    }
+
+    @Test
+    void testGetDownline_OneQueryRegardlessOfDownlineSize() {
+        User root = register("root", null);
+        User referrer = root;
+        for (int i = 0; i < 5; i++) {
+            referrer = register("deep" + i, referrer);
+            register("wide" + i, root);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        List<DownlineLevelDto> levels = referralDownlineService.getDownline(root.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(5, levels.size());
+        assertEquals(6, levels.get(0).getMembers());
+    }
+
+    @Test
+    void testRegisterUser_ConcurrentRegistrationsShareAncestors() throws Exception {
+        User root = register("root", null);
+        User referrer = register("referrer", root);
+        int registrations = 8;
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(registrations);
+
+        for (int i = 0; i < registrations; i++) {
+            String username = "concurrent" + i;
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    register(username, referrer);
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "Registrations did not finish in time");
+
+        assertTrue(errors.isEmpty(), "Unexpected registration errors: " + errors);
+        assertLevels(root, new long[]{1, registrations});
+        assertLevels(referrer, new long[]{registrations});
+    }
+
+    @Test
+    void testRegisterAndComplete_ConcurrentWritersShareAncestorRows() throws Exception {
+        User root = register("root", null);
+        User referrer = register("referrer", root);
+        List<User> earners = new ArrayList<>();
+        List<UUID> jobIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User earner = register("earner" + i, referrer);
+            earners.add(earner);
+            jobIds.add(claimedJob(earner));
+        }
+        int registrations = 4;
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(registrations + earners.size());
+
+        // Registrations below the referrer and completions by its referrals update the same rows of root and referrer
+        for (int i = 0; i < registrations; i++) {
+            String username = "joiner" + i;
+            User joinerReferrer = earners.get(i);
+            executor.submit(() -> runConcurrently(start, errors, () -> register(username, joinerReferrer)));
+        }
+        for (int i = 0; i < earners.size(); i++) {
+            UUID earnerId = earners.get(i).getId();
+            UUID jobId = jobIds.get(i);
+            executor.submit(() -> runConcurrently(start, errors, () -> smsJobService.completeSmsJob(earnerId, jobId)));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "Writers did not finish in time");
+
+        assertTrue(errors.isEmpty(), "Unexpected errors: " + errors);
+        assertLevels(root, new long[]{1, earners.size(), registrations});
+        assertLevels(referrer, new long[]{earners.size(), registrations});
+        assertEquals(new BigDecimal("4.00"), referralDownlineService.getDownline(referrer.getId()).get(0).getEarnings());
+        assertEquals(new BigDecimal("0.80"), referralDownlineService.getDownline(root.getId()).get(1).getEarnings());
+    }
+
+    private static void runConcurrently(CountDownLatch start, List<Throwable> errors, Runnable writer) {
+        try {
+            start.await();
+            writer.run();
+        } catch (Throwable e) {
+            synchronized (errors) {
+                errors.add(e);
+            }
+        }
+    }
+
+    private void assertLevels(User user, long[] members) {
+        List<DownlineLevelDto> levels = referralDownlineService.getDownline(user.getId());
+        assertEquals(members.length, levels.size());
+        for (int i = 0; i < members.length; i++) {
+            assertEquals(i + 1, levels.get(i).getLevel());
+            assertEquals(members[i], levels.get(i).getMembers());
+        }
+    }
+
+    private User register(String username, User referrer) {
+        return userService.registerUser(username, username + "@example.com", "password",
+                "+1" + Math.abs(username.hashCode()), referrer == null ? null : referrer.getReferralCode());
+    }
+
+    private UUID claimedJob(User owner) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = new SMSJob();
+            job.setUser(userRepository.getReferenceById(owner.getId()));
+            job.setRecipientNumber("+15554300000");
+            job.setMessageContent("Downline message");
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(LocalDateTime.now());
+            return smsJobRepository.save(job).getId();
+        });
+    }
+}
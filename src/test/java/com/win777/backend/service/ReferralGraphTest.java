@@ -0,0 +1,270 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserDailyEarningsRepository;
+import com.win777.backend.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * In-memory referral graph loading, lookups and its use by completions, against an in-memory database.
+ * The gated benchmark logs heap footprint and lookup time for a million users.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:referralgraph;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserService.class, BCryptPasswordEncoder.class, SMSJobService.class, SmsJobDispatcher.class,
+        SmsJobPartitioner.class, ReferralGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferralGraphTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralGraphTest.class);
+
+    @Autowired
+    private ReferralGraph referralGraph;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private UserDailyEarningsRepository userDailyEarningsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        jdbcTemplate.update("DELETE FROM user_daily_earnings");
+        jdbcTemplate.update("DELETE FROM referral_ancestors");
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("UPDATE users SET referrer_id = NULL");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testLoad_ResolvesChainsStreamedFromUsers() {
+        // Random IDs stream in no particular order, so some referrers are met as parents before their own row
+        UUID[] ids = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        for (int i = 0; i < ids.length; i++) {
+            insertUser(ids[i], i);
+        }
+        for (int i = 1; i < ids.length; i++) {
+            jdbcTemplate.update("UPDATE users SET referrer_id = ? WHERE id = ?", ids[i - 1], ids[i]);
+        }
+        ReferralGraph graph = new ReferralGraph(jdbcTemplate, transactionManager, true, 2);
+
+        assertEquals(Optional.empty(), graph.findAncestors(ids[3], 3));
+        graph.load();
+
+        assertTrue(graph.isReady());
+        assertEquals(4, graph.size());
+        assertEquals(Optional.of(List.of(ids[2], ids[1], ids[0])), graph.findAncestors(ids[3], 10));
+        assertEquals(Optional.of(List.of(ids[2], ids[1])), graph.findAncestors(ids[3], 2));
+        assertEquals(Optional.of(List.of()), graph.findAncestors(ids[0], 3));
+        assertEquals(Optional.empty(), graph.findAncestors(UUID.randomUUID(), 3));
+    }
+
+    @Test
+    void testFindAncestors_UnknownReferrerNeedsFallback() {
+        ReferralGraph graph = new ReferralGraph(jdbcTemplate, transactionManager, true, 100);
+        graph.load();
+        UUID user = UUID.randomUUID();
+        UUID referrer = UUID.randomUUID();
+        UUID grandReferrer = UUID.randomUUID();
+
+        // Learned from referral_ancestors: the grandreferrer's own referrer is not known
+        graph.addChain(user, List.of(referrer, grandReferrer));
+
+        assertEquals(Optional.of(List.of(referrer, grandReferrer)), graph.findAncestors(user, 2));
+        assertEquals(Optional.empty(), graph.findAncestors(user, 3));
+        graph.add(grandReferrer, null);
+        assertEquals(Optional.of(List.of(referrer, grandReferrer)), graph.findAncestors(user, 3));
+    }
+
+    @Test
+    void testAdd_GrowsPastInitialCapacity() {
+        ReferralGraph graph = new ReferralGraph(jdbcTemplate, transactionManager, true, 100);
+        graph.load();
+        Random random = new Random(42);
+        List<UUID> users = new ArrayList<>();
+        Map<UUID, UUID> referrerOf = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            UUID user = UUID.randomUUID();
+            UUID referrer = users.isEmpty() || random.nextInt(10) == 0 ? null : users.get(random.nextInt(users.size()));
+            graph.add(user, referrer);
+            users.add(user);
+            referrerOf.put(user, referrer);
+        }
+
+        assertEquals(users.size(), graph.size());
+        for (UUID user : users.subList(users.size() - 1_000, users.size())) {
+            List<UUID> expected = new ArrayList<>();
+            for (UUID current = referrerOf.get(user); current != null && expected.size() < 5; current = referrerOf.get(current)) {
+                expected.add(current);
+            }
+            assertEquals(Optional.of(expected), graph.findAncestors(user, 5));
+        }
+    }
+
+    @Test
+    void testCompleteSmsJob_ReferrersFromGraphWithoutQueries() {
+        // The context's graph loaded at startup; registrations reach it through their events
+        assertTrue(referralGraph.isReady());
+        User root = userService.registerUser("graph0", "graph0@example.com", "password", "+10000000090", null);
+        User referred = userService.registerUser("graph1", "graph1@example.com", "password", "+10000000091",
+                root.getReferralCode());
+        User newest = userService.registerUser("graph2", "graph2@example.com", "password", "+10000000092",
+                referred.getReferralCode());
+        // Nothing left for a database lookup to find
+        jdbcTemplate.update("DELETE FROM referral_ancestors");
+
+        long rootStatements = completeAndCountStatements(root);
+        long newestStatements = completeAndCountStatements(newest);
+        long newestUserLoads = statistics().getEntityStatistics(User.class.getName()).getLoadCount();
+
+        logger.info("Statements per completion: no referrers {}, 2 referrers from the referral graph {}",
+                rootStatements, newestStatements);
+        assertEquals(rootStatements, newestStatements);
+        assertEquals(1, newestUserLoads);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_ledger WHERE user_id = ? AND ledger_type = ?",
+                Integer.class, root.getId(), LedgerType.REFERRAL_LEVEL_2.name()));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkMillionUsers() {
+        ReferralGraph graph = new ReferralGraph(jdbcTemplate, transactionManager, true, 100);
+        graph.load();
+        int users = 1_000_000;
+        UUID[] ids = new UUID[users];
+        Random random = new Random(42);
+        for (int i = 0; i < users; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            // Each user referred by one of the previous 1000, so chains run deep
+            graph.add(ids[i], i == 0 ? null : ids[Math.max(0, i - 1 - random.nextInt(1000))]);
+        }
+        long buildNanos = System.nanoTime() - startNanos;
+
+        int lookups = 1_000_000;
+        long found = 0;
+        startNanos = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            found += graph.findAncestors(ids[random.nextInt(users)], 10).map(List::size).orElse(0);
+        }
+        long lookupNanos = System.nanoTime() - startNanos;
+
+        logger.info("{} users: {} bytes ({} bytes/user), built in {} ms, {} ns per 10-level lookup ({} ancestors)",
+                graph.size(), graph.footprintBytes(), graph.footprintBytes() / users, buildNanos / 1_000_000,
+                lookupNanos / lookups, found);
+    }
+
+    /**
+     * Completes a fresh claimed job for the user and returns the statements Hibernate prepared.
+     */
+    private long completeAndCountStatements(User user) {
+        UUID jobId = new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = new SMSJob();
+            job.setUser(userRepository.getReferenceById(user.getId()));
+            job.setRecipientNumber("+15554100000");
+            job.setMessageContent("Graph message");
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(LocalDateTime.now());
+            // Accrual then costs one statement on every run, not three on the user's first of the day
+            userDailyEarningsRepository.insertIfAbsent(user.getId(), LocalDate.now());
+            return smsJobRepository.save(job).getId();
+        });
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        smsJobService.completeSmsJob(user.getId(), jobId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private void insertUser(UUID id, int index) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password_hash, phone_number, referral_code, referrer_id, "
+                        + "daily_sms_limit, daily_sms_sent_count, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                id, "streamed" + index, "streamed" + index + "@example.com", "hash", "+1000000010" + index,
+                "REFSTREAM" + index, null, 100, 0, LocalDateTime.now(), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,248 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.ReferralBonusAccrual;
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.ReferralBonusAccrualRepository;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.scheduler.ReferralBonusSettler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deferred referral settlement against an in-memory database: completions accrue bonuses per referrer and
+ * level, and the settler turns each accrual into one ledger row per run.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:referralsettlement;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "referral.settlement.deferred=true",
+        // Small chunks, so a run spans several of them
+        "referral.settlement.chunk-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserService.class, BCryptPasswordEncoder.class, SMSJobService.class, SmsJobDispatcher.class,
+        SmsJobPartitioner.class, ReferralGraph.class, ReferralBonusSettler.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferralSettlementTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferralSettlementTest.class);
+
+    private static final int COMPLETIONS = 5;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private ReferralBonusSettler referralBonusSettler;
+
+    @Autowired
+    private ReferralBonusAccrualRepository referralBonusAccrualRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<User> chain;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+        });
+
+        // chain.get(3) referred by chain.get(2), referred by chain.get(1), referred by chain.get(0)
+        User[] users = new User[4];
+        String referralCode = null;
+        for (int i = 0; i < users.length; i++) {
+            users[i] = userService.registerUser("settled" + i, "settled" + i + "@example.com", "password",
+                    "+1000000012" + i, referralCode);
+            referralCode = users[i].getReferralCode();
+        }
+        chain = List.of(users);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        jdbcTemplate.update("DELETE FROM wallet_balances");
+        jdbcTemplate.update("DELETE FROM referral_bonus_accruals");
+        jdbcTemplate.update("DELETE FROM user_daily_earnings");
+        jdbcTemplate.update("DELETE FROM referral_ancestors");
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("UPDATE users SET referrer_id = NULL");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testCompleteSmsJob_AccruesBonusesWithoutLedgerRows() {
+        User newest = chain.get(3);
+        for (int i = 0; i < COMPLETIONS; i++) {
+            smsJobService.completeSmsJob(newest.getId(), claimedJob(newest));
+        }
+
+        assertEquals(COMPLETIONS, ledgerRows());
+        assertEquals(COMPLETIONS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_ledger WHERE ledger_type = ?",
+                Integer.class, LedgerType.EARNINGS.name()));
+        assertEquals(new BigDecimal("5.00"), accrued(chain.get(2), 1));
+        assertEquals(new BigDecimal("1.00"), accrued(chain.get(1), 2));
+        assertEquals(new BigDecimal("0.50"), accrued(chain.get(0), 3));
+    }
+
+    @Test
+    void testSettle_OneRowPerReferrerAndLevel() {
+        User referred = chain.get(1);
+        User newest = chain.get(3);
+        for (int i = 0; i < COMPLETIONS; i++) {
+            smsJobService.completeSmsJob(newest.getId(), claimedJob(newest));
+        }
+        smsJobService.completeSmsJobs(referred.getId(), List.of(claimedJob(referred), claimedJob(referred)));
+        int immediateRows = COMPLETIONS * 4 + 2 * 2;
+
+        // chain.get(2) at level 1, chain.get(1) at level 2, chain.get(0) at levels 1 and 3
+        assertEquals(4, referralBonusSettler.settle());
+
+        List<UUID> batches = jdbcTemplate.queryForList(
+                "SELECT DISTINCT reference_id FROM wallet_ledger WHERE ledger_type LIKE 'REFERRAL_LEVEL_%'", UUID.class);
+        assertEquals(1, batches.size());
+        assertEquals(new BigDecimal("5.00"), settled(chain.get(2), LedgerType.REFERRAL_LEVEL_1));
+        assertEquals(new BigDecimal("1.00"), settled(chain.get(1), LedgerType.REFERRAL_LEVEL_2));
+        assertEquals(new BigDecimal("0.50"), settled(chain.get(0), LedgerType.REFERRAL_LEVEL_3));
+        assertEquals(new BigDecimal("2.00"), settled(chain.get(0), LedgerType.REFERRAL_LEVEL_1));
+        assertEquals(new BigDecimal("2.50"), balance(chain.get(0)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM referral_bonus_accruals WHERE amount <> 0", Integer.class));
+
+        int ledgerRows = ledgerRows();
+        logger.info("{} completions: {} ledger rows with deferred settlement, {} paid immediately",
+                COMPLETIONS + 2, ledgerRows, immediateRows);
+        assertEquals(COMPLETIONS + 2 + 4, ledgerRows);
+
+        // Nothing accrued since, so the next run settles nothing
+        assertEquals(0, referralBonusSettler.settle());
+        assertEquals(ledgerRows, ledgerRows());
+    }
+
+    @Test
+    void testCompleteSmsJob_ConcurrentCompletionsShareReferrer() throws Exception {
+        List<User> siblings = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            siblings.add(userService.registerUser("sibling" + i, "sibling" + i + "@example.com", "password",
+                    "+1000000013" + i, chain.get(3).getReferralCode()));
+        }
+        List<UUID> jobIds = new ArrayList<>();
+        for (User sibling : siblings) {
+            jobIds.add(claimedJob(sibling));
+            jobIds.add(claimedJob(sibling));
+        }
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(jobIds.size());
+
+        for (int i = 0; i < jobIds.size(); i++) {
+            UUID userId = siblings.get(i / 2).getId();
+            UUID jobId = jobIds.get(i);
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    smsJobService.completeSmsJob(userId, jobId);
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "Completions did not finish in time");
+
+        assertTrue(errors.isEmpty(), "Unexpected completion errors: " + errors);
+        assertEquals(new BigDecimal("8.00"), accrued(chain.get(3), 1));
+        assertEquals(new BigDecimal("1.60"), accrued(chain.get(2), 2));
+        assertEquals(new BigDecimal("0.80"), accrued(chain.get(1), 3));
+    }
+
+    private UUID claimedJob(User owner) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = new SMSJob();
+            job.setUser(userRepository.getReferenceById(owner.getId()));
+            job.setRecipientNumber("+15554200000");
+            job.setMessageContent("Settled message");
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(LocalDateTime.now());
+            return smsJobRepository.save(job).getId();
+        });
+    }
+
+    private BigDecimal accrued(User referrer, int level) {
+        return referralBonusAccrualRepository.findById(new ReferralBonusAccrual.Key(referrer.getId(), level))
+                .map(ReferralBonusAccrual::getAmount)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    private BigDecimal settled(User referrer, LedgerType ledgerType) {
+        return jdbcTemplate.queryForObject("SELECT amount FROM wallet_ledger WHERE user_id = ? AND ledger_type = ?",
+                BigDecimal.class, referrer.getId(), ledgerType.name());
+    }
+
+    private BigDecimal balance(User user) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM wallet_ledger WHERE user_id = ?",
+                BigDecimal.class, user.getId());
+    }
+
+    private int ledgerRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_ledger", Integer.class);
+    }
+}
@@ -0,0 +1,172 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.entity.User;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded claim test against an in-memory database.
+ * Verifies no job is handed to two claimers and logs claims/sec for
+ * the SKIP LOCKED path and the blocking FOR UPDATE path.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:claims;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SMSJobClaimConcurrencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SMSJobClaimConcurrencyTest.class);
+
+    private static final int JOB_COUNT = 400;
+    private static final int CLAIMER_THREADS = 8;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = new User();
+            user.setUsername("claimer");
+            user.setEmail("claimer@example.com");
+            user.setPasswordHash("hash");
+            user.setPhoneNumber("+10000000000");
+            user.setReferralCode("REFCLAIMER");
+            userId = userRepository.save(user).getId();
+
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                SMSJob job = new SMSJob();
+                job.setRecipientNumber("+1555000" + i);
+                job.setMessageContent("Message " + i);
+                jobs.add(job);
+            }
+            smsJobRepository.saveAll(jobs);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testClaimSmsJob_SkipLocked_NoJobClaimedTwice() throws Exception {
+        ReflectionTestUtils.setField(smsJobService, "skipLockedClaim", true);
+
+        List<UUID> claimed = claimAllConcurrently("skip-locked");
+
+        assertEquals(JOB_COUNT, claimed.size());
+        assertEquals(JOB_COUNT, new HashSet<>(claimed).size());
+    }
+
+    @Test
+    void testClaimSmsJob_ForUpdate_NoJobClaimedTwice() throws Exception {
+        ReflectionTestUtils.setField(smsJobService, "skipLockedClaim", false);
+
+        List<UUID> claimed = claimAllConcurrently("for-update");
+
+        assertEquals(JOB_COUNT, claimed.size());
+        assertEquals(JOB_COUNT, new HashSet<>(claimed).size());
+    }
+
+    @Test
+    void testReleaseSmsJobClaim_ReturnsOnlyOwnClaimToPool() {
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+
+        assertFalse(smsJobService.releaseSmsJobClaim(UUID.randomUUID(), claimed.getId()));
+        assertTrue(smsJobService.releaseSmsJobClaim(userId, claimed.getId()));
+        assertFalse(smsJobService.releaseSmsJobClaim(userId, claimed.getId()));
+
+        SMSJob released = smsJobRepository.findById(claimed.getId()).orElseThrow();
+        assertEquals(SMSJobStatus.PENDING, released.getStatus());
+        assertNull(released.getClaimedAt());
+        assertEquals(0, smsJobRepository.findAll().stream().filter(job -> job.getUser() != null).count());
+    }
+
+    /**
+     * Drains the queue from several threads and returns every claimed job ID.
+     */
+    private List<UUID> claimAllConcurrently(String mode) throws InterruptedException {
+        List<UUID> claimed = Collections.synchronizedList(new ArrayList<>());
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CLAIMER_THREADS);
+
+        for (int t = 0; t < CLAIMER_THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        try {
+                            claimed.add(smsJobService.claimSmsJob(userId).getId());
+                        } catch (IllegalStateException e) {
+                            // Queue drained
+                            return;
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "Claimers did not finish in time");
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        assertTrue(errors.isEmpty(), "Unexpected claim errors: " + errors);
+        logger.info("{}: {} claims by {} threads in {} ms ({} claims/sec)",
+                mode, claimed.size(), CLAIMER_THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(claimed.size() / (elapsedNanos / 1_000_000_000.0)));
+        return claimed;
+    }
+}
@@ -0,0 +1,178 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.User;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Claim latency benchmark: single queue against a partitioned queue at 1, 8 and 64 concurrent claimers.
+ * Run with {@code mvn test -Dtest=SMSJobPartitionedClaimBenchmarkTest -Dbenchmark=true}.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:partitions;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=70",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SMSJobPartitionedClaimBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SMSJobPartitionedClaimBenchmarkTest.class);
+
+    private static final int JOB_COUNT = 2000;
+    private static final int PARTITIONS = 8;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SmsJobPartitioner partitioner;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<UUID> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // One user per claimer so the partitioned run spreads claimers across home partitions
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < 64; i++) {
+                User user = new User();
+                user.setUsername("bench" + i);
+                user.setEmail("bench" + i + "@example.com");
+                user.setPasswordHash("hash");
+                user.setPhoneNumber("+1000000" + String.format("%04d", i));
+                user.setReferralCode("REFBENCH" + i);
+                userIds.add(userRepository.save(user).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void benchmarkClaimLatency_SingleQueueVsPartitioned() throws Exception {
+        for (int claimers : new int[]{1, 8, 64}) {
+            run(1, claimers);
+            run(PARTITIONS, claimers);
+        }
+    }
+
+    /**
+     * Seeds the queue, drains it with the given number of claimers and logs claim latency.
+     */
+    private void run(int partitions, int claimers) throws InterruptedException {
+        ReflectionTestUtils.setField(partitioner, "partitionCount", partitions);
+        seedJobs(partitions);
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<UUID> claimed = Collections.synchronizedList(new ArrayList<>());
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(claimers);
+
+        for (int t = 0; t < claimers; t++) {
+            UUID userId = userIds.get(t);
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        long startNanos = System.nanoTime();
+                        try {
+                            claimed.add(smsJobService.claimSmsJob(userId).getId());
+                        } catch (IllegalStateException e) {
+                            // Queue drained
+                            return;
+                        }
+                        latencies.add(System.nanoTime() - startNanos);
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Claimers did not finish in time");
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        assertTrue(errors.isEmpty(), "Unexpected claim errors: " + errors);
+        assertEquals(JOB_COUNT, claimed.size());
+        assertEquals(JOB_COUNT, new HashSet<>(claimed).size());
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        logger.info("partitions={} claimers={}: p50={} us, p99={} us, max={} us, {} claims/sec",
+                partitions, claimers,
+                TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.50)),
+                TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.99)),
+                TimeUnit.NANOSECONDS.toMicros(sorted.get(sorted.size() - 1)),
+                Math.round(claimed.size() / (elapsedNanos / 1_000_000_000.0)));
+
+        smsJobRepository.deleteAllInBatch();
+    }
+
+    private void seedJobs(int partitions) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                SMSJob job = new SMSJob();
+                job.setRecipientNumber("+1555400" + i);
+                job.setMessageContent("Message " + i);
+                job.setQueuePartition(i % partitions);
+                jobs.add(job);
+            }
+            smsJobRepository.saveAll(jobs);
+        });
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(percentile * sorted.size()) - 1));
+    }
+}
@@ -1,13 +1,19 @@
 package com.win777.backend.service;
 
+import com.win777.backend.entity.ReferralBonusAccrual;
+import com.win777.backend.entity.ReferralRewardLevel;
 import com.win777.backend.entity.SMSJob;
 import com.win777.backend.entity.SMSRateConfig;
 import com.win777.backend.entity.User;
 import com.win777.backend.entity.WalletLedger;
 import com.win777.backend.enums.LedgerType;
 import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.ReferralAncestorRepository;
+import com.win777.backend.repository.ReferralBonusAccrualRepository;
+import com.win777.backend.repository.ReferralRewardLevelRepository;
 import com.win777.backend.repository.SMSJobRepository;
 import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserDailyEarningsRepository;
 import com.win777.backend.repository.UserRepository;
 import com.win777.backend.repository.WalletLedgerRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,15 +23,22 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.SortedMap;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +56,27 @@ class SMSJobServiceTest {
     @Mock
     private SMSRateConfigRepository smsRateConfigRepository;
 
+    @Mock
+    private SmsJobDispatcher smsJobDispatcher;
+
+    @Mock
+    private SmsJobPartitioner smsJobPartitioner;
+
+    @Mock
+    private UserDailyEarningsRepository userDailyEarningsRepository;
+
+    @Mock
+    private ReferralAncestorRepository referralAncestorRepository;
+
+    @Mock
+    private ReferralRewardLevelRepository referralRewardLevelRepository;
+
+    @Mock
+    private ReferralGraph referralGraph;
+
+    @Mock
+    private ReferralBonusAccrualRepository referralBonusAccrualRepository;
+
     @InjectMocks
     private SMSJobService smsJobService;
 
@@ -75,17 +109,19 @@ class SMSJobServiceTest {
         rateConfig = new SMSRateConfig();
         rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
         rateConfig.setIsActive(true);
+
+        // Uncapped earnings accumulate into an existing row
+        lenient().when(userDailyEarningsRepository.addEarnings(any(), any(), any())).thenReturn(1);
     }
 
     @Test
     void testCompleteSmsJob_Success_NoReferrals() {
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
         when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
         when(smsJobRepository.save(any(SMSJob.class))).thenReturn(smsJob);
         when(userRepository.save(any(User.class))).thenReturn(user);
-        when(walletLedgerRepository.save(any(WalletLedger.class))).thenReturn(new WalletLedger());
 
         // Act
         smsJobService.completeSmsJob(userId, jobId);
@@ -100,12 +136,14 @@ class SMSJobServiceTest {
                 u.getDailySmsSentCount() == 1
         ));
 
-        verify(walletLedgerRepository, times(1)).save(argThat(ledger ->
-                ledger.getUser().equals(user) &&
-                ledger.getAmount().compareTo(new BigDecimal("10.00")) == 0 &&
-                ledger.getLedgerType() == LedgerType.EARNINGS &&
-                ledger.getReferenceId().equals(jobId)
+        verify(walletLedgerRepository, times(1)).insertAll(argThat((List<WalletLedger> ledgers) ->
+                ledgers.size() == 1 &&
+                ledgers.get(0).getUser().equals(user) &&
+                ledgers.get(0).getAmount().compareTo(new BigDecimal("10.00")) == 0 &&
+                ledgers.get(0).getLedgerType() == LedgerType.EARNINGS &&
+                ledgers.get(0).getReferenceId().equals(jobId)
         ));
+        verify(walletLedgerRepository, never()).save(any());
     }
 
     @Test
@@ -116,21 +154,22 @@ class SMSJobServiceTest {
         referrer1.setUsername("referrer1");
         user.setReferrer(referrer1);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
         when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
         when(smsJobRepository.save(any(SMSJob.class))).thenReturn(smsJob);
         when(userRepository.save(any(User.class))).thenReturn(user);
-        when(walletLedgerRepository.save(any(WalletLedger.class))).thenReturn(new WalletLedger());
 
         // Act
         smsJobService.completeSmsJob(userId, jobId);
 
         // Assert
-        ArgumentCaptor<WalletLedger> ledgerCaptor = ArgumentCaptor.forClass(WalletLedger.class);
-        verify(walletLedgerRepository, times(2)).save(ledgerCaptor.capture());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository, times(1)).insertAll(ledgerCaptor.capture());
 
-        List<WalletLedger> capturedLedgers = ledgerCaptor.getAllValues();
+        List<WalletLedger> capturedLedgers = ledgerCaptor.getValue();
+        assertEquals(2, capturedLedgers.size());
 
         // First entry: SMS earning for user
         WalletLedger smsEarning = capturedLedgers.get(0);
@@ -164,21 +203,22 @@ class SMSJobServiceTest {
         referrer1.setReferrer(referrer2);
         referrer2.setReferrer(referrer3);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
         when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
         when(smsJobRepository.save(any(SMSJob.class))).thenReturn(smsJob);
         when(userRepository.save(any(User.class))).thenReturn(user);
-        when(walletLedgerRepository.save(any(WalletLedger.class))).thenReturn(new WalletLedger());
 
         // Act
         smsJobService.completeSmsJob(userId, jobId);
 
         // Assert
-        ArgumentCaptor<WalletLedger> ledgerCaptor = ArgumentCaptor.forClass(WalletLedger.class);
-        verify(walletLedgerRepository, times(4)).save(ledgerCaptor.capture());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository, times(1)).insertAll(ledgerCaptor.capture());
 
-        List<WalletLedger> capturedLedgers = ledgerCaptor.getAllValues();
+        List<WalletLedger> capturedLedgers = ledgerCaptor.getValue();
+        assertEquals(4, capturedLedgers.size());
 
         // First entry: SMS earning
         assertEquals(LedgerType.EARNINGS, capturedLedgers.get(0).getLedgerType());
@@ -200,10 +240,206 @@ class SMSJobServiceTest {
         assertEquals(LedgerType.REFERRAL_LEVEL_3, capturedLedgers.get(3).getLedgerType());
     }
 
+    @Test
+    void testCompleteSmsJob_DeferredSettlementAccruesReferralBonuses() {
+        // Arrange
+        ReflectionTestUtils.setField(smsJobService, "deferReferralSettlement", true);
+        User referrer1 = new User();
+        referrer1.setId(UUID.randomUUID());
+        User referrer2 = new User();
+        referrer2.setId(UUID.randomUUID());
+        user.setReferrer(referrer1);
+        referrer1.setReferrer(referrer2);
+
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(smsJobRepository.save(any(SMSJob.class))).thenReturn(smsJob);
+        when(userRepository.save(any(User.class))).thenReturn(user);
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert: only the earning reaches the ledger, the bonuses accrue per referrer and level
+        verify(walletLedgerRepository).insertAll(argThat((List<WalletLedger> ledgers) ->
+                ledgers.size() == 1 && ledgers.get(0).getLedgerType() == LedgerType.EARNINGS));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<SortedMap<ReferralBonusAccrual.Key, BigDecimal>> accrualCaptor = ArgumentCaptor.forClass(SortedMap.class);
+        verify(referralBonusAccrualRepository).accrueAll(accrualCaptor.capture());
+        SortedMap<ReferralBonusAccrual.Key, BigDecimal> accrued = accrualCaptor.getValue();
+        assertEquals(2, accrued.size());
+        assertEquals(new BigDecimal("1.00"), accrued.get(new ReferralBonusAccrual.Key(referrer1.getId(), 1)));
+        assertEquals(new BigDecimal("0.20"), accrued.get(new ReferralBonusAccrual.Key(referrer2.getId(), 2)));
+    }
+
+    @Test
+    void testCompleteSmsJob_ReferrersResolvedFromAncestorTable() {
+        // Arrange
+        User referrer1 = new User();
+        referrer1.setId(UUID.randomUUID());
+        User referrer2 = new User();
+        referrer2.setId(UUID.randomUUID());
+        user.setReferrer(referrer1);
+
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(referralAncestorRepository.findAncestorIds(userId, 3)).thenReturn(List.of(referrer1.getId(), referrer2.getId()));
+        when(userRepository.getReferenceById(referrer1.getId())).thenReturn(referrer1);
+        when(userRepository.getReferenceById(referrer2.getId())).thenReturn(referrer2);
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert: level 2 comes from the ancestor table, not from referrer1's (unset) referrer
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository).insertAll(ledgerCaptor.capture());
+        List<WalletLedger> capturedLedgers = ledgerCaptor.getValue();
+        assertEquals(3, capturedLedgers.size());
+        assertEquals(referrer1, capturedLedgers.get(1).getUser());
+        assertEquals(referrer2, capturedLedgers.get(2).getUser());
+        assertEquals(LedgerType.REFERRAL_LEVEL_2, capturedLedgers.get(2).getLedgerType());
+        verify(referralGraph).addChain(userId, List.of(referrer1.getId(), referrer2.getId()));
+    }
+
+    @Test
+    void testCompleteSmsJob_ReferrersResolvedFromReferralGraph() {
+        // Arrange
+        User referrer1 = new User();
+        referrer1.setId(UUID.randomUUID());
+        user.setReferrer(referrer1);
+
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(referralGraph.findAncestors(userId, 3)).thenReturn(Optional.of(List.of(referrer1.getId())));
+        when(userRepository.getReferenceById(referrer1.getId())).thenReturn(referrer1);
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert: the graph answered, so referral_ancestors was not queried
+        verify(referralAncestorRepository, never()).findAncestorIds(any(), anyInt());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository).insertAll(ledgerCaptor.capture());
+        assertEquals(2, ledgerCaptor.getValue().size());
+        assertEquals(referrer1, ledgerCaptor.getValue().get(1).getUser());
+    }
+
+    @Test
+    void testCompleteSmsJob_ConfiguredRewardLevels() {
+        // Arrange: five levels, level 4 unconfigured
+        List<User> referrers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User referrer = new User();
+            referrer.setId(UUID.randomUUID());
+            referrers.add(referrer);
+            when(userRepository.getReferenceById(referrer.getId())).thenReturn(referrer);
+        }
+        user.setReferrer(referrers.get(0));
+
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(referralRewardLevelRepository.findAllByOrderByLevelAsc()).thenReturn(List.of(
+                new ReferralRewardLevel(1, new BigDecimal("0.0500")),
+                new ReferralRewardLevel(2, new BigDecimal("0.0300")),
+                new ReferralRewardLevel(3, new BigDecimal("0.0200")),
+                new ReferralRewardLevel(5, new BigDecimal("0.0100"))));
+        when(referralAncestorRepository.findAncestorIds(userId, 5))
+                .thenReturn(referrers.stream().map(User::getId).toList());
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert: earnings plus levels 1, 2, 3 and 5
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository).insertAll(ledgerCaptor.capture());
+        List<WalletLedger> capturedLedgers = ledgerCaptor.getValue();
+        assertEquals(5, capturedLedgers.size());
+        assertEquals(new BigDecimal("0.50"), capturedLedgers.get(1).getAmount());
+        assertEquals(new BigDecimal("0.30"), capturedLedgers.get(2).getAmount());
+        assertEquals(new BigDecimal("0.20"), capturedLedgers.get(3).getAmount());
+        assertEquals(referrers.get(4), capturedLedgers.get(4).getUser());
+        assertEquals(new BigDecimal("0.10"), capturedLedgers.get(4).getAmount());
+        assertEquals(LedgerType.REFERRAL_LEVEL_5, capturedLedgers.get(4).getLedgerType());
+        assertEquals("Referral bonus - Level 5 from user testuser", capturedLedgers.get(4).getDescription());
+    }
+
+    @Test
+    void testCompleteSmsJob_RewardLevelBeyondMaxDepth() {
+        // Arrange
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(referralRewardLevelRepository.findAllByOrderByLevelAsc())
+                .thenReturn(List.of(new ReferralRewardLevel(11, new BigDecimal("0.0100"))));
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                smsJobService.completeSmsJob(userId, jobId)
+        );
+
+        assertEquals("Referral reward levels must be between 1 and 10", exception.getMessage());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void testCompleteSmsJob_RewardLevelsLoadedOnce() {
+        // Arrange
+        SMSJob secondJob = new SMSJob();
+        secondJob.setId(UUID.randomUUID());
+        secondJob.setUser(user);
+        secondJob.setStatus(SMSJobStatus.CLAIMED);
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsJobRepository.findByIdAndUserIdWithLock(secondJob.getId(), userId)).thenReturn(Optional.of(secondJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+        smsJobService.completeSmsJob(userId, secondJob.getId());
+
+        // Assert
+        verify(referralRewardLevelRepository, times(1)).findAllByOrderByLevelAsc();
+        verify(walletLedgerRepository, times(2)).insertAll(anyList());
+    }
+
+    @Test
+    void testRefreshRewardLevels_InvalidLevelsKeepPreviousOnes() {
+        // Arrange
+        when(referralRewardLevelRepository.findAllByOrderByLevelAsc())
+                .thenReturn(List.of(new ReferralRewardLevel(1, new BigDecimal("0.0500"))))
+                .thenReturn(List.of(new ReferralRewardLevel(11, new BigDecimal("0.0100"))));
+        smsJobService.refreshRewardLevels();
+        User referrer = new User();
+        referrer.setId(UUID.randomUUID());
+        user.setReferrer(referrer);
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(userRepository.getReferenceById(referrer.getId())).thenReturn(referrer);
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(referralAncestorRepository.findAncestorIds(userId, 1)).thenReturn(List.of(referrer.getId()));
+
+        // Act: the invalid reload is logged, not thrown, and completions keep paying the loaded level
+        assertDoesNotThrow(() -> smsJobService.refreshRewardLevels());
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert
+        verify(walletLedgerRepository).insertAll(argThat((List<WalletLedger> ledgers) ->
+                ledgers.size() == 2 &&
+                ledgers.get(1).getAmount().compareTo(new BigDecimal("0.50")) == 0
+        ));
+    }
+
     @Test
     void testCompleteSmsJob_ThrowsException_UserNotFound() {
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.empty());
 
         // Act & Assert
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
@@ -213,12 +449,13 @@ class SMSJobServiceTest {
         assertEquals("User not found with id: " + userId, exception.getMessage());
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
     void testCompleteSmsJob_ThrowsException_JobNotFound() {
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.empty());
 
         // Act & Assert
@@ -229,12 +466,13 @@ class SMSJobServiceTest {
         assertEquals("SMS job not found or user does not own this job", exception.getMessage());
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
     void testCompleteSmsJob_ThrowsException_OwnershipValidationFails() {
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.empty());
 
         // Act & Assert
@@ -245,6 +483,7 @@ class SMSJobServiceTest {
         assertEquals("SMS job not found or user does not own this job", exception.getMessage());
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
@@ -252,7 +491,7 @@ class SMSJobServiceTest {
         // Arrange
         smsJob.setStatus(SMSJobStatus.PENDING);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
 
         // Act & Assert
@@ -263,12 +502,13 @@ class SMSJobServiceTest {
         assertTrue(exception.getMessage().contains("SMS job must be in CLAIMED status"));
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
     void testCompleteSmsJob_ThrowsException_NoActiveRateConfig() {
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
         when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.empty());
 
@@ -280,6 +520,7 @@ class SMSJobServiceTest {
         assertEquals("No active SMS rate configuration found", exception.getMessage());
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
@@ -288,7 +529,7 @@ class SMSJobServiceTest {
         user.setDailySmsSentCount(100);
         user.setDailySmsLimit(100);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
 
         // Act & Assert
         IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
@@ -298,13 +539,14 @@ class SMSJobServiceTest {
         assertTrue(exception.getMessage().contains("Daily SMS limit reached"));
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 
     @Test
     void testCompleteSmsJob_ThrowsException_JobUserIsNull() {
         // This test is no longer relevant as findByIdAndUserIdWithLock handles ownership
         // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
         when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.empty());
 
         // Act & Assert
@@ -315,5 +557,307 @@ class SMSJobServiceTest {
         assertEquals("SMS job not found or user does not own this job", exception.getMessage());
         verify(smsJobRepository, never()).save(any());
         verify(walletLedgerRepository, never()).save(any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void testClaimSmsJobs_CappedByRemainingDailyLimit() {
+        // Arrange
+        user.setDailySmsSentCount(97);
+        user.setDailySmsLimit(100);
+
+        SMSJob job1 = new SMSJob();
+        SMSJob job2 = new SMSJob();
+        SMSJob job3 = new SMSJob();
+        List<SMSJob> pendingJobs = List.of(job1, job2, job3);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByStatusSkipLocked(SMSJobStatus.PENDING, PageRequest.of(0, 3))).thenReturn(pendingJobs);
+        when(smsJobRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<SMSJob> claimed = smsJobService.claimSmsJobs(userId, 10);
+
+        // Assert
+        assertEquals(3, claimed.size());
+        for (SMSJob job : claimed) {
+            assertEquals(user, job.getUser());
+            assertEquals(SMSJobStatus.CLAIMED, job.getStatus());
+            assertNotNull(job.getClaimedAt());
+        }
+    }
+
+    @Test
+    void testClaimSmsJobs_CounterFromPreviousDayIsIgnored() {
+        // Arrange
+        user.setDailySmsSentCount(100);
+        user.setLastSmsResetDate(LocalDate.now().minusDays(1));
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByStatusSkipLocked(SMSJobStatus.PENDING, PageRequest.of(0, 5))).thenReturn(List.of(new SMSJob()));
+        when(smsJobRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<SMSJob> claimed = smsJobService.claimSmsJobs(userId, 5);
+
+        // Assert
+        assertEquals(1, claimed.size());
+    }
+
+    @Test
+    void testClaimSmsJobs_ThrowsException_DailyLimitReached() {
+        // Arrange
+        user.setDailySmsSentCount(100);
+        user.setDailySmsLimit(100);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                smsJobService.claimSmsJobs(userId, 10)
+        );
+
+        assertEquals("Daily SMS limit reached", exception.getMessage());
+        verify(smsJobRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testClaimSmsJobs_ThrowsException_NoPendingJobs() {
+        // Arrange
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByStatusSkipLocked(SMSJobStatus.PENDING, PageRequest.of(0, 10))).thenReturn(List.of());
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                smsJobService.claimSmsJobs(userId, 10)
+        );
+
+        assertEquals("No pending SMS jobs available", exception.getMessage());
+        verify(smsJobRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testClaimSmsJob_ServedFromDispatchBuffer() {
+        // Arrange
+        SMSJob buffered = new SMSJob();
+        buffered.setId(jobId);
+        buffered.setUser(user);
+        buffered.setStatus(SMSJobStatus.CLAIMED);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobDispatcher.isEnabled()).thenReturn(true);
+        when(smsJobDispatcher.claim(user)).thenReturn(Optional.of(buffered));
+
+        // Act
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+
+        // Assert
+        assertEquals(jobId, claimed.getId());
+        verify(smsJobRepository, never()).findByStatusSkipLocked(any(), any());
+        verify(smsJobRepository, never()).save(any());
+    }
+
+    @Test
+    void testClaimSmsJob_FallsBackToTable_WhenDispatchBufferDrained() {
+        // Arrange
+        SMSJob pending = new SMSJob();
+        pending.setStatus(SMSJobStatus.PENDING);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobDispatcher.isEnabled()).thenReturn(true);
+        when(smsJobDispatcher.claim(user)).thenReturn(Optional.empty());
+        when(smsJobRepository.findFirstPendingJobSkipLocked()).thenReturn(Optional.of(pending));
+        when(smsJobRepository.save(any(SMSJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+
+        // Assert
+        assertEquals(SMSJobStatus.CLAIMED, claimed.getStatus());
+        assertEquals(user, claimed.getUser());
+    }
+
+    @Test
+    void testCompleteSmsJobs_Success_SingleLedgerBatch() {
+        // Arrange
+        User referrer1 = new User();
+        referrer1.setId(UUID.randomUUID());
+        referrer1.setUsername("referrer1");
+        user.setReferrer(referrer1);
+        UUID secondJobId = UUID.randomUUID();
+
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(smsJobRepository.completeClaimedJobs(anyCollection(), eq(userId), any())).thenReturn(2);
+
+        // Act
+        int completed = smsJobService.completeSmsJobs(userId, List.of(jobId, secondJobId, jobId));
+
+        // Assert
+        assertEquals(2, completed);
+        verify(userRepository).save(argThat(u -> u.getDailySmsSentCount() == 2));
+
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository).insertAll(ledgerCaptor.capture());
+        verify(walletLedgerRepository, never()).save(any());
+
+        List<WalletLedger> entries = ledgerCaptor.getValue();
+        assertEquals(4, entries.size());
+        assertEquals(LedgerType.EARNINGS, entries.get(0).getLedgerType());
+        assertEquals(jobId, entries.get(0).getReferenceId());
+        assertEquals(referrer1, entries.get(1).getUser());
+        assertEquals(new BigDecimal("1.00"), entries.get(1).getAmount());
+        assertEquals(LedgerType.REFERRAL_LEVEL_1, entries.get(1).getLedgerType());
+        assertEquals(secondJobId, entries.get(2).getReferenceId());
+    }
+
+    @Test
+    void testCompleteSmsJobs_ThrowsException_JobNotClaimedByUser() {
+        // Arrange
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(smsJobRepository.completeClaimedJobs(anyCollection(), eq(userId), any())).thenReturn(1);
+
+        // Act & Assert
+        List<UUID> jobIds = List.of(jobId, UUID.randomUUID());
+        assertThrows(IllegalStateException.class, () -> smsJobService.completeSmsJobs(userId, jobIds));
+        verify(walletLedgerRepository, never()).insertAll(anyList());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void testCompleteSmsJobs_ThrowsException_BatchExceedsDailyLimit() {
+        // Arrange
+        user.setDailySmsSentCount(99);
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+
+        // Act & Assert
+        List<UUID> jobIds = List.of(jobId, UUID.randomUUID());
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> smsJobService.completeSmsJobs(userId, jobIds));
+        assertEquals("Daily SMS limit reached", exception.getMessage());
+        verify(smsJobRepository, never()).completeClaimedJobs(anyCollection(), any(), any());
+    }
+
+    @Test
+    void testClaimSmsJob_Partitioned_FallsBackToNextPartition() {
+        // Arrange
+        SMSJob pending = new SMSJob();
+        pending.setStatus(SMSJobStatus.PENDING);
+        pending.setQueuePartition(0);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(smsJobPartitioner.isPartitioned()).thenReturn(true);
+        when(smsJobPartitioner.claimOrder(userId)).thenReturn(new int[]{2, 0, 1});
+        when(smsJobRepository.findByPartitionSkipLocked(eq(2), eq(SMSJobStatus.PENDING), any())).thenReturn(List.of());
+        when(smsJobRepository.findByPartitionSkipLocked(eq(0), eq(SMSJobStatus.PENDING), any())).thenReturn(List.of(pending));
+        when(smsJobRepository.save(any(SMSJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+
+        // Assert
+        assertEquals(SMSJobStatus.CLAIMED, claimed.getStatus());
+        assertEquals(0, claimed.getQueuePartition());
+        verify(smsJobRepository, never()).findByPartitionSkipLocked(eq(1), any(), any());
+        verify(smsJobRepository, never()).findFirstPendingJobSkipLocked();
+    }
+
+    @Test
+    void testCompleteSmsJobGroup_RejectsInvalidCompletionsWithoutFailingGroup() {
+        // Arrange
+        user.setDailySmsSentCount(99);
+        SMSJob secondJob = new SMSJob();
+        secondJob.setId(UUID.randomUUID());
+        secondJob.setUser(user);
+        secondJob.setStatus(SMSJobStatus.CLAIMED);
+        SMSJob completedJob = new SMSJob();
+        completedJob.setId(UUID.randomUUID());
+        completedJob.setUser(user);
+        completedJob.setStatus(SMSJobStatus.COMPLETED);
+
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(userRepository.findAllByIdForUpdate(anyList())).thenReturn(List.of(user));
+        when(smsJobRepository.findAllByIdWithLock(anyCollection())).thenReturn(List.of(smsJob, secondJob, completedJob));
+
+        // Act
+        List<String> rejections = smsJobService.completeSmsJobGroup(List.of(
+                new SMSJobService.JobCompletion(userId, jobId),
+                new SMSJobService.JobCompletion(userId, completedJob.getId()),
+                new SMSJobService.JobCompletion(userId, secondJob.getId()),
+                new SMSJobService.JobCompletion(userId, UUID.randomUUID())));
+
+        // Assert
+        assertNull(rejections.get(0));
+        assertTrue(rejections.get(1).contains("CLAIMED status"));
+        assertEquals("Daily SMS limit reached", rejections.get(2));
+        assertEquals("SMS job not found or user does not own this job", rejections.get(3));
+        assertEquals(SMSJobStatus.COMPLETED, smsJob.getStatus());
+        assertEquals(SMSJobStatus.CLAIMED, secondJob.getStatus());
+        assertEquals(100, user.getDailySmsSentCount());
+
+        ArgumentCaptor<List<WalletLedger>> ledgerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(walletLedgerRepository).insertAll(ledgerCaptor.capture());
+        assertEquals(1, ledgerCaptor.getValue().size());
+        assertEquals(jobId, ledgerCaptor.getValue().get(0).getReferenceId());
+    }
+
+    @Test
+    void testCompleteSmsJob_ThrowsException_DailyEarningsLimitReached() {
+        // Arrange
+        rateConfig.setMaximumDailyEarnings(new BigDecimal("25.00"));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(userDailyEarningsRepository.addEarningsWithinCap(userId, LocalDate.now(), new BigDecimal("10.00"), new BigDecimal("25.00")))
+                .thenReturn(0);
+        when(userDailyEarningsRepository.insertIfAbsent(userId, LocalDate.now())).thenReturn(0);
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> smsJobService.completeSmsJob(userId, jobId));
+        assertEquals("Daily earnings limit reached", exception.getMessage());
+        assertEquals(SMSJobStatus.CLAIMED, smsJob.getStatus());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void testCompleteSmsJob_FirstEarningsOfDay_CreatesAccumulator() {
+        // Arrange
+        rateConfig.setMaximumDailyEarnings(new BigDecimal("25.00"));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsJobRepository.findByIdAndUserIdWithLock(jobId, userId)).thenReturn(Optional.of(smsJob));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(userDailyEarningsRepository.addEarningsWithinCap(userId, LocalDate.now(), new BigDecimal("10.00"), new BigDecimal("25.00")))
+                .thenReturn(0, 1);
+        when(userDailyEarningsRepository.insertIfAbsent(userId, LocalDate.now())).thenReturn(1);
+
+        // Act
+        smsJobService.completeSmsJob(userId, jobId);
+
+        // Assert
+        assertEquals(SMSJobStatus.COMPLETED, smsJob.getStatus());
+        verify(userDailyEarningsRepository, times(2)).addEarningsWithinCap(any(), any(), any(), any());
+        verify(walletLedgerRepository).insertAll(anyList());
+    }
+
+    @Test
+    void testCompleteSmsJobs_ThrowsException_BatchExceedsDailyEarningsLimit() {
+        // Arrange
+        rateConfig.setMaximumDailyEarnings(new BigDecimal("15.00"));
+        when(userRepository.findByIdForUpdate(userId)).thenReturn(Optional.of(user));
+        when(smsRateConfigRepository.findByIsActive(true)).thenReturn(Optional.of(rateConfig));
+        when(userDailyEarningsRepository.addEarningsWithinCap(userId, LocalDate.now(), new BigDecimal("20.00"), new BigDecimal("15.00")))
+                .thenReturn(0);
+        when(userDailyEarningsRepository.insertIfAbsent(userId, LocalDate.now())).thenReturn(1);
+
+        // Act & Assert
+        List<UUID> jobIds = List.of(jobId, UUID.randomUUID());
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> smsJobService.completeSmsJobs(userId, jobIds));
+        assertEquals("Daily earnings limit reached", exception.getMessage());
+        verify(smsJobRepository, never()).completeClaimedJobs(anyCollection(), any(), any());
+        verify(walletLedgerRepository, never()).insertAll(anyList());
     }
 }
@@ -0,0 +1,98 @@
+package com.win777.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Completions the writer stops before committing are failed rather than left waiting.
+ */
+@ExtendWith(MockitoExtension.class)
+class SmsCompletionPipelineShutdownTest {
+
+    @Mock
+    private SMSJobService smsJobService;
+
+    private SmsCompletionPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void testWriterInterruptedWhileGathering_FailsGroup() throws Exception {
+        // A long delay keeps the writer gathering after it takes the first completion
+        pipeline = new SmsCompletionPipeline(smsJobService, true, 10, Duration.ofSeconds(30), 10);
+        pipeline.start();
+
+        CompletableFuture<Void> result = pipeline.submit(UUID.randomUUID(), UUID.randomUUID());
+        awaitQueueDrained();
+        writerThread().interrupt();
+
+        assertStopped(result);
+        verify(smsJobService, never()).completeSmsJobGroup(anyList());
+        // The group fails before the writer exits and marks the pipeline stopped
+        writerThread().join(TimeUnit.SECONDS.toMillis(5));
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(UUID.randomUUID(), UUID.randomUUID()));
+    }
+
+    @Test
+    void testWriterInterruptedDuringCommit_FailsQueuedCompletions() throws Exception {
+        // One completion per group; the first commit waits until the second is queued, then the writer is interrupted
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch secondQueued = new CountDownLatch(1);
+        when(smsJobService.completeSmsJobGroup(anyList())).thenAnswer(invocation -> {
+            committing.countDown();
+            secondQueued.await(5, TimeUnit.SECONDS);
+            writerThread().interrupt();
+            return Collections.nCopies(invocation.<List<?>>getArgument(0).size(), null);
+        });
+        pipeline = new SmsCompletionPipeline(smsJobService, true, 1, Duration.ofMillis(5), 10);
+        pipeline.start();
+
+        CompletableFuture<Void> first = pipeline.submit(UUID.randomUUID(), UUID.randomUUID());
+        assertTrue(committing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = pipeline.submit(UUID.randomUUID(), UUID.randomUUID());
+        secondQueued.countDown();
+
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertStopped(second);
+        verify(smsJobService, times(1)).completeSmsJobGroup(anyList());
+    }
+
+    private static void assertStopped(CompletableFuture<Void> result) {
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals("Completion pipeline stopped", exception.getCause().getMessage());
+    }
+
+    private void awaitQueueDrained() throws InterruptedException {
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(pipeline, "queue");
+        for (int i = 0; i < 500 && !queue.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(queue.isEmpty(), "Writer did not take the completion");
+    }
+
+    private Thread writerThread() {
+        return (Thread) ReflectionTestUtils.getField(pipeline, "writerThread");
+    }
+}
@@ -0,0 +1,213 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Group-commit pipeline against an in-memory database.
+ * The benchmark compares completion throughput with the synchronous path and is
+ * skipped unless run with {@code -Dbenchmark=true}.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:groupcommit;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=40",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "sms.completion.group-commit.enabled=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class,
+        SmsCompletionPipeline.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SmsCompletionPipelineTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsCompletionPipelineTest.class);
+
+    @Autowired
+    private SmsCompletionPipeline pipeline;
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+        smsRateConfigRepository.deleteAll();
+    }
+
+    @Test
+    void testSubmit_CommitsGroupAndRejectsDuplicate() {
+        List<SMSJob> jobs = seed(3, 5);
+        SMSJob first = jobs.get(0);
+        UUID otherUserId = jobs.get(jobs.size() - 1).getUser().getId();
+
+        // Not owned by the submitter: rejected synchronously
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(otherUserId, first.getId()));
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (SMSJob job : jobs) {
+            results.add(pipeline.submit(job.getUser().getId(), job.getId()));
+        }
+        // Rejected synchronously if the first has committed, otherwise by the group that applies it
+        assertThrows(IllegalStateException.class, () -> {
+            try {
+                pipeline.submit(first.getUser().getId(), first.getId()).join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        });
+
+        results.forEach(CompletableFuture::join);
+
+        Map<SMSJobStatus, Long> counts = smsJobRepository.findAll().stream()
+                .collect(Collectors.groupingBy(SMSJob::getStatus, Collectors.counting()));
+        assertEquals(15L, counts.get(SMSJobStatus.COMPLETED));
+        assertEquals(15, walletLedgerRepository.count());
+        assertTrue(userRepository.findAll().stream().allMatch(user -> user.getDailySmsSentCount() == 5));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkCompletion_SynchronousVsGroupCommit() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            List<SMSJob> jobs = seed(40, 50);
+            run("synchronous", jobs, job -> smsJobService.completeSmsJob(job.getUser().getId(), job.getId()));
+            tearDown();
+
+            jobs = seed(40, 50);
+            run("group-commit", jobs, job -> pipeline.submit(job.getUser().getId(), job.getId()).join());
+            tearDown();
+        }
+    }
+
+    /**
+     * Completes every job from 32 threads and logs completions/sec.
+     */
+    private void run(String mode, List<SMSJob> jobs, Consumer<SMSJob> complete) throws InterruptedException {
+        List<SMSJob> remaining = Collections.synchronizedList(new ArrayList<>(jobs));
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        for (int t = 0; t < 32; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    SMSJob job;
+                    while ((job = poll(remaining)) != null) {
+                        complete.accept(job);
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Completers did not finish in time");
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        assertTrue(errors.isEmpty(), "Unexpected completion errors: " + errors);
+        assertEquals(jobs.size(), walletLedgerRepository.count());
+        logger.info("{}: {} completions in {} ms ({} completions/sec)", mode, jobs.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(jobs.size() / (elapsedNanos / 1_000_000_000.0)));
+    }
+
+    private static SMSJob poll(List<SMSJob> remaining) {
+        synchronized (remaining) {
+            return remaining.isEmpty() ? null : remaining.remove(remaining.size() - 1);
+        }
+    }
+
+    /**
+     * Seeds an active rate config and {@code jobsPerUser} CLAIMED jobs for each of {@code userCount} users.
+     */
+    private List<SMSJob> seed(int userCount, int jobsPerUser) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int u = 0; u < userCount; u++) {
+                User user = new User();
+                user.setUsername("completer" + u);
+                user.setEmail("completer" + u + "@example.com");
+                user.setPasswordHash("hash");
+                user.setPhoneNumber("+1000001" + String.format("%04d", u));
+                user.setReferralCode("REFCOMPLETE" + u);
+                user = userRepository.save(user);
+
+                for (int i = 0; i < jobsPerUser; i++) {
+                    SMSJob job = new SMSJob();
+                    job.setUser(user);
+                    job.setRecipientNumber("+1555500" + i);
+                    job.setMessageContent("Message " + i);
+                    job.setStatus(SMSJobStatus.CLAIMED);
+                    job.setClaimedAt(LocalDateTime.now());
+                    jobs.add(job);
+                }
+            }
+            return smsJobRepository.saveAll(jobs);
+        });
+    }
+}
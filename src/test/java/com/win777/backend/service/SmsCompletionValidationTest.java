@@ -0,0 +1,212 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Synchronous completion checks against claims still queued in the dispatch buffer.
+ * H2 ignores read-only connections, so the data source here rejects writes on them as PostgreSQL does.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:completionvalidation;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "sms.dispatch.enabled=true",
+        // Buffer maintenance runs only when the test calls it
+        "sms.dispatch.flush-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class,
+        SmsCompletionValidationTest.ReadOnlyConnections.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SmsCompletionValidationTest {
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SmsJobDispatcher smsJobDispatcher;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID userId;
+    private UUID otherUserId;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+
+            userId = saveUser("validator", "+10000000031");
+            otherUserId = saveUser("other", "+10000000032");
+
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                SMSJob job = new SMSJob();
+                job.setRecipientNumber("+1555310" + i);
+                job.setMessageContent("Validation message " + i);
+                jobs.add(job);
+            }
+            smsJobRepository.saveAll(jobs);
+        });
+        smsJobDispatcher.maintain();
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsJobDispatcher.shutdown();
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testValidateSmsJobCompletion_BufferedClaimCheckedWithoutWriting() {
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+        assertTrue(smsJobDispatcher.pendingOwner(claimed.getId()).isPresent());
+
+        assertDoesNotThrow(() -> smsJobService.validateSmsJobCompletion(userId, claimed.getId()));
+        assertThrows(IllegalStateException.class,
+                () -> smsJobService.validateSmsJobCompletion(otherUserId, claimed.getId()));
+
+        // Still queued, and the row still only leased
+        assertTrue(smsJobDispatcher.pendingOwner(claimed.getId()).isPresent());
+        assertEquals(SMSJobStatus.LEASED, smsJobRepository.findById(claimed.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testFlushIfPending_RejectedInReadOnlyTransaction() {
+        SMSJob claimed = smsJobService.claimSmsJob(userId);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // The data source enforces read-only transactions, so the check above means something
+        assertThrows(RuntimeException.class,
+                () -> readOnly.executeWithoutResult(status -> smsJobDispatcher.flushIfPending(claimed.getId())));
+    }
+
+    private UUID saveUser(String username, String phoneNumber) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phoneNumber);
+        user.setReferralCode("REF" + username.toUpperCase(Locale.ROOT));
+        return userRepository.save(user).getId();
+    }
+
+    /**
+     * Wraps the data source so connections in read-only mode reject data changes.
+     */
+    @TestConfiguration
+    static class ReadOnlyConnections {
+
+        @Bean
+        static BeanPostProcessor readOnlyEnforcingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)
+                            ? new ReadOnlyEnforcingDataSource(dataSource)
+                            : bean;
+                }
+            };
+        }
+    }
+
+    private static class ReadOnlyEnforcingDataSource extends DelegatingDataSource {
+
+        ReadOnlyEnforcingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return enforcing(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return enforcing(super.getConnection(username, password));
+        }
+
+        private static Connection enforcing(Connection target) {
+            boolean[] readOnly = {false};
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setReadOnly" -> readOnly[0] = (Boolean) args[0];
+                            case "isReadOnly" -> {
+                                return readOnly[0];
+                            }
+                            case "prepareStatement" -> {
+                                String sql = ((String) args[0]).trim().toLowerCase(Locale.ROOT);
+                                if (readOnly[0] && (sql.startsWith("update") || sql.startsWith("insert")
+                                        || sql.startsWith("delete") || sql.startsWith("merge"))) {
+                                    throw new SQLException("cannot execute UPDATE in a read-only transaction", "25006");
+                                }
+                            }
+                            default -> {
+                            }
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lease, claim, write-back and release cycle of the dispatch buffer against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dispatch;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        // One connection: a flush that took a second one inside a caller's transaction would time out
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=2000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SmsJobDispatcherTest {
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SmsJobDispatcher dispatcher;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new SmsJobDispatcher(smsJobRepository, jdbcTemplate, transactionManager,
+                true, 5, 1, Duration.ofMinutes(2));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            user = new User();
+            user.setUsername("dispatcher");
+            user.setEmail("dispatcher@example.com");
+            user.setPasswordHash("hash");
+            user.setPhoneNumber("+10000000001");
+            user.setReferralCode("REFDISPATCH");
+            user = userRepository.save(user);
+
+            List<SMSJob> jobs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                SMSJob job = new SMSJob();
+                job.setRecipientNumber("+1555100" + i);
+                job.setMessageContent("Message " + i);
+                jobs.add(job);
+            }
+            smsJobRepository.saveAll(jobs);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsJobRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testDispatchCycle_LeaseClaimWriteBackRelease() {
+        // Lease a block into the buffer
+        dispatcher.maintain();
+        assertEquals(5L, countByStatus().getOrDefault(SMSJobStatus.LEASED, 0L));
+
+        // Claim from memory and write back
+        List<SMSJob> claimed = dispatcher.claim(user, 3);
+        assertEquals(3, claimed.size());
+        dispatcher.flushIfPending(claimed.get(0).getId());
+
+        SMSJob persisted = smsJobRepository.findById(claimed.get(0).getId()).orElseThrow();
+        assertEquals(SMSJobStatus.CLAIMED, persisted.getStatus());
+        assertNull(persisted.getLeaseExpiresAt());
+        assertNotNull(persisted.getClaimedAt());
+
+        // Unclaimed leases go back to the pool on shutdown
+        dispatcher.shutdown();
+        Map<SMSJobStatus, Long> counts = countByStatus();
+        assertEquals(3L, counts.get(SMSJobStatus.CLAIMED));
+        assertEquals(7L, counts.get(SMSJobStatus.PENDING));
+        assertNull(counts.get(SMSJobStatus.LEASED));
+    }
+
+    @Test
+    void testClaim_AssignmentQueuedOnCommit() {
+        dispatcher.maintain();
+
+        SMSJob claimed = new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = dispatcher.claim(user).orElseThrow();
+            assertTrue(dispatcher.pendingOwner(job.getId()).isEmpty());
+            return job;
+        });
+
+        assertEquals(Optional.of(user.getId()), dispatcher.pendingOwner(claimed.getId()));
+    }
+
+    @Test
+    void testClaim_RolledBackClaimReturnsJobToBuffer() {
+        dispatcher.maintain();
+
+        SMSJob rolledBack = new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = dispatcher.claim(user).orElseThrow();
+            status.setRollbackOnly();
+            return job;
+        });
+
+        // Nothing queued, so a flush leaves the row leased
+        assertTrue(dispatcher.pendingOwner(rolledBack.getId()).isEmpty());
+        dispatcher.flushAssignments();
+        assertEquals(SMSJobStatus.LEASED, smsJobRepository.findById(rolledBack.getId()).orElseThrow().getStatus());
+
+        // And the job can be claimed again
+        List<UUID> reclaimed = dispatcher.claim(user, 5).stream().map(SMSJob::getId).toList();
+        assertEquals(5, reclaimed.size());
+        assertTrue(reclaimed.contains(rolledBack.getId()));
+    }
+
+    @Test
+    void testFlushIfPending_JoinsCallerTransaction() {
+        dispatcher.maintain();
+        SMSJob claimed = dispatcher.claim(user).orElseThrow();
+
+        SMSJobStatus seenByCaller = new TransactionTemplate(transactionManager).execute(status -> {
+            dispatcher.flushIfPending(claimed.getId());
+            return smsJobRepository.findById(claimed.getId()).orElseThrow().getStatus();
+        });
+
+        assertEquals(SMSJobStatus.CLAIMED, seenByCaller);
+        assertEquals(SMSJobStatus.CLAIMED, smsJobRepository.findById(claimed.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testFlushIfPending_CallerRollbackRequeuesAssignment() {
+        dispatcher.maintain();
+        SMSJob claimed = dispatcher.claim(user).orElseThrow();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            dispatcher.flushIfPending(claimed.getId());
+            status.setRollbackOnly();
+        });
+        assertEquals(SMSJobStatus.LEASED, smsJobRepository.findById(claimed.getId()).orElseThrow().getStatus());
+
+        // The next scheduled flush writes the assignment back
+        dispatcher.maintain();
+        SMSJob persisted = smsJobRepository.findById(claimed.getId()).orElseThrow();
+        assertEquals(SMSJobStatus.CLAIMED, persisted.getStatus());
+        assertEquals(user.getId(), persisted.getUser().getId());
+    }
+
+    private Map<SMSJobStatus, Long> countByStatus() {
+        return smsJobRepository.findAll().stream()
+                .collect(Collectors.groupingBy(SMSJob::getStatus, Collectors.counting()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.win777.backend.service;
+
+import com.win777.backend.dto.IngestionResponse;
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.repository.SMSJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bulk ingestion against an in-memory database, which exercises the JDBC batch path.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ingest;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        // Batch size below the row count so several batches are flushed
+        "sms.ingest.batch-size=3",
+        "sms.queue.partitions=4"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SmsJobIngestionService.class, SmsJobPartitioner.class, SmsJobAvailabilityNotifier.class,
+        JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SmsJobIngestionServiceTest {
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SmsJobIngestionService ingestionService;
+
+    @Autowired
+    private SmsJobPartitioner partitioner;
+
+    @AfterEach
+    void tearDown() {
+        smsJobRepository.deleteAll();
+    }
+
+    @Test
+    void testIngest_Ndjson() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{\"recipientNumber\":\"+1555300").append(i).append("\",\"messageContent\":\"Message ").append(i).append("\"}\n");
+        }
+
+        IngestionResponse response = ingestionService.ingest(stream(body.toString()), SmsJobIngestionService.Format.NDJSON);
+
+        assertEquals(10, response.getRowsIngested());
+        assertEquals("BATCH", response.getWriteMethod());
+        List<SMSJob> jobs = smsJobRepository.findAll();
+        assertEquals(10, jobs.size());
+        assertTrue(jobs.stream().allMatch(job -> job.getStatus() == SMSJobStatus.PENDING && job.getCreatedAt() != null));
+        assertTrue(jobs.stream().allMatch(job -> job.getQueuePartition() == partitioner.partitionFor(job.getId())));
+    }
+
+    @Test
+    void testIngest_CsvWithHeaderAndQuotedFields() {
+        String body = "recipient_number,message_content\r\n" +
+                "+15553001,\"Hello, \"\"world\"\"\"\r\n" +
+                "+15553002,\"Line one\nline two\"\r\n" +
+                "+15553003,Plain\r\n";
+
+        IngestionResponse response = ingestionService.ingest(stream(body), SmsJobIngestionService.Format.CSV);
+
+        assertEquals(3, response.getRowsIngested());
+        List<SMSJob> jobs = smsJobRepository.findAll();
+        jobs.sort(Comparator.comparing(SMSJob::getRecipientNumber));
+        assertEquals("Hello, \"world\"", jobs.get(0).getMessageContent());
+        assertEquals("Line one\nline two", jobs.get(1).getMessageContent());
+        assertEquals("Plain", jobs.get(2).getMessageContent());
+    }
+
+    @Test
+    void testIngest_MalformedRowRollsBackWholeUpload() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append("+1555300").append(i).append(",Message ").append(i).append('\n');
+        }
+        body.append("+15553009\n");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> ingestionService.ingest(stream(body.toString()), SmsJobIngestionService.Format.CSV));
+        assertTrue(exception.getMessage().contains("record 6"));
+        assertEquals(0, smsJobRepository.count());
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
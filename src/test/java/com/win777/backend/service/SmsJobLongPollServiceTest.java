@@ -0,0 +1,107 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SmsJobLongPollServiceTest {
+
+    @Mock
+    private SMSJobService smsJobService;
+
+    private SmsJobAvailabilityNotifier notifier;
+    private SmsJobLongPollService longPollService;
+    private UUID userId;
+    private SMSJob job;
+
+    @BeforeEach
+    void setUp() {
+        notifier = new SmsJobAvailabilityNotifier(null, false, 1);
+        longPollService = new SmsJobLongPollService(smsJobService, notifier);
+        userId = UUID.randomUUID();
+        job = new SMSJob();
+        job.setId(UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    void testClaimOrWait_JobAvailable_CompletesImmediately() {
+        when(smsJobService.tryClaimSmsJob(userId)).thenReturn(Optional.of(job));
+
+        CompletableFuture<Optional<SMSJob>> result = longPollService.claimOrWait(userId, Duration.ofSeconds(10));
+
+        assertTrue(result.isDone());
+        assertEquals(Optional.of(job), result.join());
+    }
+
+    @Test
+    void testClaimOrWait_WokenByPublish_ClaimsJob() throws Exception {
+        when(smsJobService.tryClaimSmsJob(userId)).thenReturn(Optional.empty(), Optional.of(job));
+
+        CompletableFuture<Optional<SMSJob>> result = longPollService.claimOrWait(userId, Duration.ofSeconds(10));
+        assertFalse(result.isDone());
+
+        notifier.publish(1);
+
+        assertEquals(Optional.of(job), result.get(5, TimeUnit.SECONDS));
+        verify(smsJobService, times(2)).tryClaimSmsJob(userId);
+    }
+
+    @Test
+    void testClaimOrWait_NoJobs_CompletesEmptyAfterWait() throws Exception {
+        when(smsJobService.tryClaimSmsJob(userId)).thenReturn(Optional.empty());
+
+        CompletableFuture<Optional<SMSJob>> result = longPollService.claimOrWait(userId, Duration.ofMillis(100));
+
+        assertEquals(Optional.empty(), result.get(5, TimeUnit.SECONDS));
+        // The timed-out waiter no longer consumes signals
+        notifier.publish(1);
+        verify(smsJobService, times(1)).tryClaimSmsJob(userId);
+    }
+
+    @Test
+    void testClaimOrWait_ClaimedAfterWaitRanOut_ReleasesJob() throws Exception {
+        // The claim commits only after the wait has already completed the result empty
+        when(smsJobService.tryClaimSmsJob(userId)).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return Optional.of(job);
+        });
+        when(smsJobService.releaseSmsJobClaim(userId, job.getId())).thenReturn(true);
+        long versionBefore = notifier.currentVersion();
+
+        CompletableFuture<Optional<SMSJob>> result = longPollService.claimOrWait(userId, Duration.ofMillis(50));
+
+        assertEquals(Optional.empty(), result.get(5, TimeUnit.SECONDS));
+        verify(smsJobService).releaseSmsJobClaim(userId, job.getId());
+        // The released job is announced to the next waiter
+        assertTrue(notifier.currentVersion() > versionBefore);
+    }
+
+    @Test
+    void testClaimOrWait_JobDelivered_NotReleased() {
+        when(smsJobService.tryClaimSmsJob(userId)).thenReturn(Optional.of(job));
+
+        longPollService.claimOrWait(userId, Duration.ofSeconds(10));
+
+        verify(smsJobService, never()).releaseSmsJobClaim(any(), any());
+    }
+}
@@ -0,0 +1,205 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.SMSJob;
+import com.win777.backend.entity.SMSRateConfig;
+import com.win777.backend.enums.SMSJobStatus;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.repository.SMSJobRepository;
+import com.win777.backend.repository.SMSRateConfigRepository;
+import com.win777.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * wallet_balances row locks taken by concurrent single and batch completions, against an in-memory database.
+ * The referrer's own referrer sorts first by ID but comes last in the chain, so locking in chain order
+ * on one path and ID order on the other would deadlock. A listener holds the single completion back just
+ * before it locks the grandreferrer's balance and lets the batch completion run meanwhile.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:balancelockorder;MODE=PostgreSQL;LOCK_TIMEOUT=3000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "referral.graph.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SMSJobService.class, SmsJobDispatcher.class, SmsJobPartitioner.class, ReferralGraph.class,
+        WalletBalanceService.class, WalletService.class, SimpleMeterRegistry.class,
+        WalletBalanceLockOrderTest.PausingLedgerListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WalletBalanceLockOrderTest {
+
+    private static final int ROUNDS = 10;
+
+    // ID order (signed or unsigned): grandReferrer < referrer < earner; chain order: earner, referrer, grandReferrer
+    private static final UUID GRAND_REFERRER = new UUID(0x1000000000000000L, 1L);
+    private static final UUID REFERRER = new UUID(0x4000000000000000L, 1L);
+    private static final UUID EARNER = new UUID(0x7000000000000000L, 1L);
+
+    @Autowired
+    private SMSJobService smsJobService;
+
+    @Autowired
+    private SMSJobRepository smsJobRepository;
+
+    @Autowired
+    private SMSRateConfigRepository smsRateConfigRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            SMSRateConfig rateConfig = new SMSRateConfig();
+            rateConfig.setSmsEarningRate(new BigDecimal("10.00"));
+            rateConfig.setIsActive(true);
+            smsRateConfigRepository.save(rateConfig);
+        });
+        insertUser(GRAND_REFERRER, "grand", null);
+        insertUser(REFERRER, "referrer", GRAND_REFERRER);
+        insertUser(EARNER, "earner", REFERRER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM wallet_ledger");
+        jdbcTemplate.update("DELETE FROM wallet_balances");
+        jdbcTemplate.update("DELETE FROM user_daily_earnings");
+        jdbcTemplate.update("DELETE FROM sms_jobs");
+        jdbcTemplate.update("DELETE FROM sms_rate_config");
+        jdbcTemplate.update("UPDATE users SET referrer_id = NULL");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testSingleAndBatchCompletions_OverlappingChainsDoNotDeadlock() throws Exception {
+        List<Throwable> errors = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            // Single: earner, then referrer (L1) and grandReferrer (L2); batch: referrer, then grandReferrer (L1).
+            // The batch starts once the single completion is about to lock grandReferrer's balance
+            UUID singleJob = claimedJob(EARNER);
+            List<UUID> batchJobs = List.of(claimedJob(REFERRER), claimedJob(REFERRER));
+            CountDownLatch singleReachedGrandReferrer = new CountDownLatch(1);
+            PausingLedgerListener.reachedGrandReferrer = singleReachedGrandReferrer;
+            List<Future<?>> futures = List.of(
+                    executor.submit(() -> complete(errors, () -> smsJobService.completeSmsJob(EARNER, singleJob))),
+                    executor.submit(() -> complete(errors, () -> {
+                        awaitQuietly(singleReachedGrandReferrer);
+                        smsJobService.completeSmsJobs(REFERRER, batchJobs);
+                    })));
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        }
+        executor.shutdown();
+
+        assertTrue(errors.isEmpty(), "Unexpected completion errors: " + errors);
+        // Per round: earner 10.00; referrer 1.00 + 20.00; grandReferrer 0.20 + 2.00
+        assertBalance(EARNER, new BigDecimal("10.00"));
+        assertBalance(REFERRER, new BigDecimal("21.00"));
+        assertBalance(GRAND_REFERRER, new BigDecimal("2.20"));
+    }
+
+    /**
+     * Runs before the balance update. When an append is about to lock grandReferrer's balance it lets the
+     * waiting batch completion start, then pauses so the batch gets ahead while the appender keeps its locks.
+     */
+    static class PausingLedgerListener {
+
+        static volatile CountDownLatch reachedGrandReferrer = new CountDownLatch(0);
+
+        @EventListener
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public void onLedgerAppended(WalletLedgerAppendedEvent event) throws InterruptedException {
+            CountDownLatch latch = reachedGrandReferrer;
+            boolean touchesGrandReferrer = event.entries().stream()
+                    .anyMatch(entry -> entry.getUser().getId().equals(GRAND_REFERRER));
+            if (touchesGrandReferrer && latch.getCount() > 0) {
+                latch.countDown();
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private static void complete(List<Throwable> errors, Runnable completion) {
+        try {
+            completion.run();
+        } catch (Throwable e) {
+            synchronized (errors) {
+                errors.add(e);
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void assertBalance(UUID userId, BigDecimal perRound) {
+        BigDecimal expected = perRound.multiply(BigDecimal.valueOf(ROUNDS));
+        BigDecimal balance = jdbcTemplate.queryForObject("SELECT balance FROM wallet_balances WHERE user_id = ?",
+                BigDecimal.class, userId);
+        assertEquals(0, expected.compareTo(balance), "Balance of " + userId + " was " + balance);
+    }
+
+    private UUID claimedJob(UUID ownerId) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SMSJob job = new SMSJob();
+            job.setUser(userRepository.getReferenceById(ownerId));
+            job.setRecipientNumber("+15554400000");
+            job.setMessageContent("Lock order message");
+            job.setStatus(SMSJobStatus.CLAIMED);
+            job.setClaimedAt(LocalDateTime.now());
+            return smsJobRepository.save(job).getId();
+        });
+    }
+
+    private void insertUser(UUID id, String username, UUID referrerId) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password_hash, phone_number, referral_code, referrer_id, "
+                        + "daily_sms_limit, daily_sms_sent_count, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                id, username, username + "@example.com", "hash", "+1" + Math.abs(username.hashCode()),
+                "REF" + username.toUpperCase(), referrerId, 1000, 0, LocalDateTime.now(), LocalDateTime.now());
+    }
+}
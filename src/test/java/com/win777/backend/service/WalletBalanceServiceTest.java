@@ -0,0 +1,193 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletBalanceRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import com.win777.backend.scheduler.WalletBalanceVerifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keeps wallet_balances in step with ledger appends and verifies it against the ledger,
+ * against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:balances;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({WalletBalanceService.class, WalletService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WalletBalanceServiceTest {
+
+    @Autowired
+    private WalletBalanceService walletBalanceService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletBalanceRepository walletBalanceRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        alice = transactionTemplate.execute(status -> userRepository.save(newUser("alice", "+10000000011")));
+        bob = transactionTemplate.execute(status -> userRepository.save(newUser("bob", "+10000000012")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        walletBalanceRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testSave_MaintainsBalanceInSameTransaction() {
+        transactionTemplate.executeWithoutResult(status -> {
+            walletLedgerRepository.save(entry(alice, "10.00"));
+            walletLedgerRepository.save(entry(alice, "2.50"));
+        });
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "-4.00")));
+
+        assertBalance(alice, "8.50");
+        assertTrue(walletLedgerRepository.findAll().stream().allMatch(entry -> entry.getId().version() == 7));
+    }
+
+    @Test
+    void testInsertAll_MaintainsBalancePerUser() {
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.insertAll(List.of(
+                entry(alice, "1.00"), entry(bob, "3.00"), entry(alice, "1.00"))));
+
+        assertBalance(alice, "2.00");
+        assertBalance(bob, "3.00");
+    }
+
+    @Test
+    void testRollback_LeavesBalanceUnchanged() {
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "5.00")));
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            walletLedgerRepository.save(entry(alice, "7.00"));
+            throw new IllegalStateException("rollback");
+        }));
+
+        assertBalance(alice, "5.00");
+    }
+
+    @Test
+    void testCachedBalance_InvalidatedAfterCommit() {
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "5.00")));
+        assertEquals(0, new BigDecimal("5.00").compareTo(walletService.getBalance(alice.getId())));
+
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "7.00")));
+
+        assertEquals(0, new BigDecimal("12.00").compareTo(walletService.getBalance(alice.getId())));
+    }
+
+    @Test
+    void testFirstAppend_InitializesFromExistingLedger() {
+        // History written before wallet_balances existed
+        insertLegacyEntry(alice, "20.00");
+        assertEquals(0, new BigDecimal("20.00").compareTo(walletBalanceService.getBalance(alice.getId())));
+
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "-5.00")));
+
+        assertBalance(alice, "15.00");
+    }
+
+    @Test
+    void testLockBalance_RequiresTransaction() {
+        assertThrows(Exception.class, () -> walletBalanceService.lockBalance(alice.getId()));
+
+        insertLegacyEntry(alice, "3.00");
+        BigDecimal locked = transactionTemplate.execute(status -> walletBalanceService.lockBalance(alice.getId()));
+        assertEquals(0, new BigDecimal("3.00").compareTo(locked));
+    }
+
+    @Test
+    void testVerifier_BackfillsAndReportsMismatches() {
+        WalletBalanceVerifier verifier = new WalletBalanceVerifier(walletBalanceRepository, walletBalanceService, transactionManager,
+                new SimpleMeterRegistry(), true, 1);
+        insertLegacyEntry(bob, "4.00");
+        transactionTemplate.executeWithoutResult(status -> walletLedgerRepository.save(entry(alice, "6.00")));
+
+        assertEquals(0, verifier.verifyBalances());
+        assertBalance(bob, "4.00");
+
+        jdbcTemplate.update("UPDATE wallet_balances SET balance = balance + 1 WHERE user_id = ?", alice.getId());
+        assertEquals(1, verifier.verifyBalances());
+    }
+
+    private void assertBalance(User user, String expected) {
+        BigDecimal balance = walletBalanceRepository.findBalance(user.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal(expected).compareTo(balance));
+        assertEquals(0, walletLedgerRepository.calculateBalance(user.getId()).compareTo(balance));
+    }
+
+    private void insertLegacyEntry(User user, String amount) {
+        jdbcTemplate.update("INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, created_at) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), user.getId(), new BigDecimal(amount), LedgerType.EARNINGS.name(),
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static WalletLedger entry(User user, String amount) {
+        WalletLedger entry = new WalletLedger();
+        entry.setUser(user);
+        entry.setAmount(new BigDecimal(amount));
+        entry.setLedgerType(LedgerType.EARNINGS);
+        return entry;
+    }
+
+    private static User newUser(String username, String phone) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phone);
+        user.setReferralCode("REF" + username.toUpperCase());
+        return user;
+    }
+}
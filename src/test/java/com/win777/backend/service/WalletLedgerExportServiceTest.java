@@ -0,0 +1,199 @@
+package com.win777.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.win777.backend.entity.User;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streaming ledger export against an in-memory database.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "wallet.export.fetch-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({WalletLedgerExportService.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WalletLedgerExportServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletLedgerExportServiceTest.class);
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private WalletLedgerExportService exportService;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+    private User otherUser;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        user = transactionTemplate.execute(status -> userRepository.save(newUser("exported", "+10000000041")));
+        otherUser = transactionTemplate.execute(status -> userRepository.save(newUser("bystander", "+10000000042")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testExport_NdjsonForUser() throws Exception {
+        insertEntry(user, "10.00", "SMS job completion earnings", BASE);
+        insertEntry(user, "-4.50", "Withdrawal request", BASE.plusHours(1));
+        insertEntry(otherUser, "1.00", "Not exported", BASE);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long rows = exportService.export(user.getId(), null, null, WalletLedgerExportService.Format.NDJSON, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, rows);
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals(user.getId().toString(), first.get("userId").asText());
+        assertEquals(0, new BigDecimal("10.00").compareTo(first.get("amount").decimalValue()));
+        assertEquals("EARNINGS", first.get("ledgerType").asText());
+        assertEquals(0, new BigDecimal("-4.50").compareTo(second.get("amount").decimalValue()));
+        assertEquals("Withdrawal request", second.get("description").asText());
+    }
+
+    @Test
+    void testExport_CsvForDateRangeQuotesFields() {
+        insertEntry(user, "1.00", "Before range", BASE.minusDays(1));
+        insertEntry(user, "2.00", "Bonus, \"level 1\"", BASE);
+        insertEntry(otherUser, "3.00", "Line one\nline two", BASE.plusHours(2));
+        insertEntry(user, "4.00", "After range", BASE.plusDays(1));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long rows = exportService.export(null, BASE, BASE.plusDays(1), WalletLedgerExportService.Format.CSV, output);
+
+        String csv = output.toString(StandardCharsets.UTF_8);
+        assertEquals(2, rows);
+        assertTrue(csv.startsWith("id,user_id,amount,ledger_type,description,reference_id,created_at\r\n"));
+        assertTrue(csv.contains(",2.00,EARNINGS,\"Bonus, \"\"level 1\"\"\",,2024-01-01T00:00\r\n"));
+        assertTrue(csv.contains(",3.00,EARNINGS,\"Line one\nline two\",,2024-01-01T02:00\r\n"));
+        assertFalse(csv.contains("Before range"));
+        assertFalse(csv.contains("After range"));
+    }
+
+    @Test
+    void testExport_EmptyRangeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> exportService.export(null, BASE, BASE,
+                WalletLedgerExportService.Format.CSV, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkExportHeap() {
+        int rows = 500_000;
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{UUID.randomUUID(), user.getId(), BigDecimal.ONE, LedgerType.EARNINGS.name(),
+                    "SMS job completion earnings", Timestamp.valueOf(BASE.plusSeconds(i))});
+            if (batch.size() == 10_000) {
+                insertBatch(batch);
+                batch.clear();
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long[] peak = {heapBefore};
+        long[] bytes = {0};
+        OutputStream counting = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes[0] += len;
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+            }
+        };
+
+        long start = System.nanoTime();
+        long exported = exportService.export(user.getId(), null, null, WalletLedgerExportService.Format.NDJSON, counting);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(rows, exported);
+        logger.info("Exported {} rows ({} MB) in {} ms ({} rows/sec); heap before {} MB, peak {} MB",
+                exported, bytes[0] / (1024 * 1024), elapsedMillis, exported * 1000 / Math.max(elapsedMillis, 1),
+                heapBefore / (1024 * 1024), peak[0] / (1024 * 1024));
+    }
+
+    private void insertEntry(User owner, String amount, String description, LocalDateTime createdAt) {
+        insertBatch(List.<Object[]>of(new Object[]{UUID.randomUUID(), owner.getId(), new BigDecimal(amount),
+                LedgerType.EARNINGS.name(), description, Timestamp.valueOf(createdAt)}));
+    }
+
+    private void insertBatch(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, description, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private static User newUser(String username, String phone) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phone);
+        user.setReferralCode("REF" + username.toUpperCase());
+        return user;
+    }
+}
@@ -0,0 +1,95 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.event.WalletLedgerAppendedEvent;
+import com.win777.backend.repository.WalletLedgerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletServiceTest {
+
+    @Mock
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Mock
+    private WalletBalanceService walletBalanceService;
+
+    private MeterRegistry meterRegistry;
+    private WalletService walletService;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        walletService = new WalletService(walletLedgerRepository, walletBalanceService, meterRegistry,
+                true, 100, Duration.ofMinutes(1));
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void testGetBalance_ServedFromCacheAfterFirstRead() {
+        when(walletBalanceService.getBalance(userId)).thenReturn(new BigDecimal("12.00"));
+
+        assertEquals(new BigDecimal("12.00"), walletService.getBalance(userId));
+        assertEquals(new BigDecimal("12.00"), walletService.getBalance(userId));
+
+        verify(walletBalanceService, times(1)).getBalance(userId);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "walletBalances").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "walletBalances").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testOnLedgerCommitted_InvalidatesAffectedUsers() {
+        UUID otherUserId = UUID.randomUUID();
+        when(walletBalanceService.getBalance(userId))
+                .thenReturn(new BigDecimal("12.00"), new BigDecimal("22.00"));
+        when(walletBalanceService.getBalance(otherUserId)).thenReturn(new BigDecimal("5.00"));
+        walletService.getBalance(userId);
+        walletService.getBalance(otherUserId);
+
+        walletService.onLedgerCommitted(new WalletLedgerAppendedEvent(List.of(entry(userId, "10.00"))));
+
+        assertEquals(new BigDecimal("22.00"), walletService.getBalance(userId));
+        assertEquals(new BigDecimal("5.00"), walletService.getBalance(otherUserId));
+        verify(walletBalanceService, times(2)).getBalance(userId);
+        verify(walletBalanceService, times(1)).getBalance(otherUserId);
+    }
+
+    @Test
+    void testGetBalance_CacheDisabled_ReadsThrough() {
+        walletService = new WalletService(walletLedgerRepository, walletBalanceService, meterRegistry,
+                false, 100, Duration.ofMinutes(1));
+        when(walletBalanceService.getBalance(userId)).thenReturn(BigDecimal.ONE);
+
+        walletService.getBalance(userId);
+        walletService.getBalance(userId);
+
+        verify(walletBalanceService, times(2)).getBalance(userId);
+    }
+
+    private static WalletLedger entry(UUID userId, String amount) {
+        User user = new User();
+        user.setId(userId);
+        WalletLedger entry = new WalletLedger();
+        entry.setUser(user);
+        entry.setAmount(new BigDecimal(amount));
+        return entry;
+    }
+}
@@ -0,0 +1,186 @@
+package com.win777.backend.service;
+
+import com.win777.backend.entity.User;
+import com.win777.backend.entity.WalletLedger;
+import com.win777.backend.enums.LedgerType;
+import com.win777.backend.repository.UserRepository;
+import com.win777.backend.repository.WalletLedgerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cursor pagination of transaction history against an in-memory database,
+ * with an opt-in benchmark of offset against keyset pagination at page 1 and page 500.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:history;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=com.win777.backend.H2SkipLockedDialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WalletTransactionHistoryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletTransactionHistoryTest.class);
+
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WalletService walletService;
+    private User user;
+    private User otherUser;
+
+    @BeforeEach
+    void setUp() {
+        walletService = new WalletService(walletLedgerRepository, null, new SimpleMeterRegistry(),
+                false, 0, Duration.ZERO);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        user = transactionTemplate.execute(status -> userRepository.save(newUser("historian", "+10000000031")));
+        otherUser = transactionTemplate.execute(status -> userRepository.save(newUser("neighbour", "+10000000032")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletLedgerRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testCursorPages_CoverHistoryOnceInOrder() {
+        // Groups of five entries share a timestamp, so the id tie-break decides page boundaries
+        LocalDateTime base = LocalDateTime.now().withNano(0);
+        insertEntries(user, 47, i -> base.minusSeconds(i / 5));
+        insertEntries(otherUser, 10, i -> base);
+
+        List<WalletLedger> walked = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            WalletService.TransactionSlice slice = walletService.getTransactionHistory(user.getId(), cursor, 10);
+            walked.addAll(slice.entries());
+            cursor = slice.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        List<UUID> expected = walletLedgerRepository.findFirstByUserIdKeyset(user.getId(), PageRequest.of(0, 100))
+                .stream().map(WalletLedger::getId).toList();
+        assertEquals(5, pages);
+        assertEquals(47, walked.size());
+        assertEquals(expected, walked.stream().map(WalletLedger::getId).toList());
+        for (int i = 1; i < walked.size(); i++) {
+            assertFalse(walked.get(i).getCreatedAt().isAfter(walked.get(i - 1).getCreatedAt()));
+        }
+    }
+
+    @Test
+    void testCursor_LastPageHasNoNextCursor() {
+        insertEntries(user, 10, i -> LocalDateTime.now().minusMinutes(i));
+
+        WalletService.TransactionSlice slice = walletService.getTransactionHistory(user.getId(), null, 10);
+
+        assertEquals(10, slice.entries().size());
+        assertNull(slice.nextCursor());
+    }
+
+    @Test
+    void testCursor_MalformedCursorRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.getTransactionHistory(user.getId(), "not-a-cursor", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.getTransactionHistory(user.getId(), "bm90fGE", 10));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkOffsetVersusKeyset() {
+        int rows = PAGE_SIZE * 500 + PAGE_SIZE;
+        LocalDateTime base = LocalDateTime.now();
+        insertEntries(user, rows, i -> base.minusSeconds(i));
+        insertEntries(otherUser, rows, i -> base.minusSeconds(i));
+
+        // Cursor of page 500, found by walking untimed
+        String cursor = "";
+        for (int page = 1; page < 500; page++) {
+            cursor = walletService.getTransactionHistory(user.getId(), cursor, PAGE_SIZE).nextCursor();
+        }
+        String page500Cursor = cursor;
+
+        logTiming("offset page 1", () -> walletService.getTransactionHistory(user.getId(), PageRequest.of(0, PAGE_SIZE)));
+        logTiming("offset page 500", () -> walletService.getTransactionHistory(user.getId(), PageRequest.of(499, PAGE_SIZE)));
+        logTiming("keyset page 1", () -> walletService.getTransactionHistory(user.getId(), "", PAGE_SIZE));
+        logTiming("keyset page 500", () -> walletService.getTransactionHistory(user.getId(), page500Cursor, PAGE_SIZE));
+    }
+
+    private void logTiming(String label, Supplier<?> query) {
+        int warmup = 20;
+        int iterations = 200;
+        for (int i = 0; i < warmup; i++) {
+            query.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            query.get();
+        }
+        long micros = (System.nanoTime() - start) / 1_000 / iterations;
+        logger.info("{}: {} us/query", label, micros);
+    }
+
+    private void insertEntries(User owner, int count, IntFunction<LocalDateTime> createdAt) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), owner.getId(), BigDecimal.ONE, LedgerType.EARNINGS.name(),
+                    Timestamp.valueOf(createdAt.apply(i))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO wallet_ledger (id, user_id, amount, ledger_type, created_at) VALUES (?, ?, ?, ?, ?)",
+                rows);
+    }
+
+    private static User newUser(String username, String phone) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        user.setPhoneNumber(phone);
+        user.setReferralCode("REF" + username.toUpperCase());
+        return user;
+    }
+}
@@ -0,0 +1,105 @@
+package com.win777.backend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Layout and ordering of generated UUIDv7s, with an opt-in benchmark of
+ * random against time-ordered primary keys.
+ */
+class UuidV7Test {
+
+    private static final Logger logger = LoggerFactory.getLogger(UuidV7Test.class);
+
+    @Test
+    void testGenerate_VersionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.generate();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= after + 1, "timestamp " + millis + " outside " + before + ".." + after);
+    }
+
+    @Test
+    void testGenerate_StrictlyIncreasingAndUnique() {
+        UUID previous = UuidV7.generate();
+        Set<UUID> seen = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = UuidV7.generate();
+            // Unsigned order of the most significant half, as databases compare UUIDs
+            assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()) > 0);
+            assertTrue(seen.add(next));
+            previous = next;
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkRandomVersusTimeOrderedKeys() throws Exception {
+        run("v4 random", UUID::randomUUID);
+        run("v7 time-ordered", UuidV7::generate);
+    }
+
+    private void run(String label, Supplier<UUID> ids) throws Exception {
+        int rows = 1_000_000;
+        int batchSize = 1_000;
+        Path dir = Files.createTempDirectory("uuid-bench");
+        String url = "jdbc:h2:file:" + dir.resolve("db") + ";MODE=PostgreSQL";
+        try (Connection connection = DriverManager.getConnection(url)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE ledger (id UUID PRIMARY KEY, user_id UUID NOT NULL, " +
+                        "amount NUMERIC(19,2) NOT NULL, created_at TIMESTAMP NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            UUID userId = UUID.randomUUID();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            long start = System.nanoTime();
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO ledger VALUES (?, ?, ?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    ps.setObject(1, ids.get());
+                    ps.setObject(2, userId);
+                    ps.setBigDecimal(3, BigDecimal.TEN);
+                    ps.setTimestamp(4, now);
+                    ps.addBatch();
+                    if (i % batchSize == 0) {
+                        ps.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CHECKPOINT SYNC");
+            }
+            long fileBytes;
+            try (var files = Files.list(dir)) {
+                fileBytes = files.mapToLong(path -> path.toFile().length()).sum();
+            }
+            logger.info("{}: {} rows in {} ms ({} rows/sec), database file {} MB",
+                    label, rows, elapsedMillis, rows * 1000L / Math.max(elapsedMillis, 1), fileBytes / (1024 * 1024));
+        }
+    }
+}